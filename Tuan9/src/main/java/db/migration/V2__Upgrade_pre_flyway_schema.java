@@ -0,0 +1,103 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Đưa schema ban đầu (V1) lên schema mà entity và các migration sau cần: cột task.version, bảng id_generator và
+ * các index của task. Database cũ được baseline ở version 1 nên không chạy V1, và tùy lúc nó được tạo mà Hibernate
+ * (ddl-auto=update, trước khi chuyển sang Flyway) có thể đã tạo một phần các object này với đúng tên đó.
+ * MySQL không có ADD COLUMN / CREATE INDEX IF NOT EXISTS nên kiểm tra qua metadata JDBC rồi mới tạo.
+ */
+public class V2__Upgrade_pre_flyway_schema extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (Statement statement = connection.createStatement()) {
+            if (!hasColumn(connection, metaData, "task", "version")) {
+                statement.execute("alter table task add column version bigint default 0 not null");
+            }
+
+            // TableGenerator của Task.id; dòng 'task' do TaskIdGeneratorInitializer tạo khi khởi động.
+            // task.id vẫn giữ AUTO_INCREMENT của schema cũ, Hibernate luôn ghi id tường minh
+            if (!hasTable(connection, metaData, "id_generator")) {
+                statement.execute("create table id_generator ("
+                        + "next_val bigint, "
+                        + "sequence_name varchar(255) not null, "
+                        + "primary key (sequence_name)"
+                        + ") engine=InnoDB");
+            }
+
+            // Index cho các truy vấn nóng trên task. InnoDB tự gắn khóa chính vào cuối mọi secondary index,
+            // nhưng khai báo id tường minh để ORDER BY created_at, id và điều kiện keyset dùng trọn index (không filesort).
+
+            // Danh sách/đếm/xóa hàng loạt của một user theo trạng thái: WHERE assigned_to_user_id = ? AND status = ? ORDER BY created_at, id
+            createTaskIndex(connection, metaData, statement, "idx_task_assignee_status_created",
+                    "assigned_to_user_id, status, created_at, id");
+            // Danh sách/đếm của một user không lọc trạng thái, reassign: WHERE assigned_to_user_id = ? ORDER BY created_at, id
+            createTaskIndex(connection, metaData, statement, "idx_task_assignee_created",
+                    "assigned_to_user_id, created_at, id");
+            // Admin lọc theo trạng thái, countByStatus, xóa task COMPLETED cũ: WHERE status = ? [AND created_at < ?]
+            createTaskIndex(connection, metaData, statement, "idx_task_status_created",
+                    "status, created_at, id");
+            // Admin xem toàn bộ task: ORDER BY created_at, id
+            createTaskIndex(connection, metaData, statement, "idx_task_created",
+                    "created_at, id");
+        }
+    }
+
+    // Index cùng tên do @Index của Task tạo trước đây có đúng các cột này nên giữ nguyên
+    private static void createTaskIndex(Connection connection, DatabaseMetaData metaData, Statement statement,
+                                        String name, String columns) throws SQLException {
+        if (!hasIndex(connection, metaData, "task", name)) {
+            statement.execute("create index " + name + " on task (" + columns + ")");
+        }
+    }
+
+    private static boolean hasTable(Connection connection, DatabaseMetaData metaData, String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(connection.getCatalog(), connection.getSchema(),
+                identifier(metaData, table), new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, DatabaseMetaData metaData, String table, String column)
+            throws SQLException {
+        try (ResultSet rs = metaData.getColumns(connection.getCatalog(), connection.getSchema(),
+                identifier(metaData, table), identifier(metaData, column))) {
+            return rs.next();
+        }
+    }
+
+    private static boolean hasIndex(Connection connection, DatabaseMetaData metaData, String table, String index)
+            throws SQLException {
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                identifier(metaData, table), false, true)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // H2 lưu tên không đặt trong ngoặc kép ở dạng chữ hoa, MySQL giữ nguyên
+    private static String identifier(DatabaseMetaData metaData, String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase();
+        }
+        if (metaData.storesLowerCaseIdentifiers()) {
+            return name.toLowerCase();
+        }
+        return name;
+    }
+}
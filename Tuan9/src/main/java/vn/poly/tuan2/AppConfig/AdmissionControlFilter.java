@@ -0,0 +1,179 @@
+package vn.poly.tuan2.AppConfig;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import vn.poly.tuan2.response.ErrorResponse;
+import vn.poly.tuan2.util.AdaptiveLimit;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Giới hạn số request chạy đồng thời theo từng nhóm route, mỗi nhóm một AdaptiveLimit riêng: login (BCrypt ăn CPU)
+ * và admin không chiếm được chỗ của /api/tasks, còn export/import (giữ connection suốt lúc stream) có giới hạn cố định.
+ * Request vượt limit bị trả 503 kèm Retry-After ngay, thay vì xếp hàng chờ connection tới hết connection-timeout.
+ * Chạy trước Spring Security để request bị từ chối không tốn công kiểm tra JWT.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 10)
+@ConditionalOnProperty(name = "application.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    public enum RouteGroup {
+        AUTH, TASKS, ADMIN, BULK
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${application.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${application.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${application.admission.pool-wait-threshold:50}")
+    private long poolWaitThresholdMs;
+
+    @Value("${application.admission.auth.max-limit:8}")
+    private int authMaxLimit;
+
+    @Value("${application.admission.tasks.max-limit:200}")
+    private int tasksMaxLimit;
+
+    @Value("${application.admission.admin.max-limit:20}")
+    private int adminMaxLimit;
+
+    @Value("${application.admission.bulk.limit:2}")
+    private int bulkLimit;
+
+    private final Map<RouteGroup, AdaptiveLimit> limits = new EnumMap<>(RouteGroup.class);
+    private final Map<RouteGroup, Counter> rejections = new EnumMap<>(RouteGroup.class);
+
+    @PostConstruct
+    public void init() {
+        limits.put(RouteGroup.AUTH, adaptive(authMaxLimit));
+        limits.put(RouteGroup.TASKS, adaptive(tasksMaxLimit));
+        limits.put(RouteGroup.ADMIN, adaptive(adminMaxLimit));
+        limits.put(RouteGroup.BULK, AdaptiveLimit.fixed(bulkLimit));
+        if (meterRegistry == null) {
+            return;
+        }
+        limits.forEach((group, limit) -> {
+            String tag = group.name().toLowerCase();
+            Gauge.builder("http.admission.limit", limit, AdaptiveLimit::getLimit)
+                    .description("Current concurrency limit of the route group")
+                    .tag("group", tag)
+                    .register(meterRegistry);
+            Gauge.builder("http.admission.inflight", limit, AdaptiveLimit::getInFlight)
+                    .description("Requests of the route group currently being processed")
+                    .tag("group", tag)
+                    .register(meterRegistry);
+            rejections.put(group, Counter.builder("http.admission.rejected")
+                    .description("Requests rejected with 503 because the route group was at its limit")
+                    .tag("group", tag)
+                    .register(meterRegistry));
+        });
+    }
+
+    private AdaptiveLimit adaptive(int maxLimit) {
+        int min = Math.min(minLimit, maxLimit);
+        return new AdaptiveLimit(Math.min(initialLimit, maxLimit), min, maxLimit, poolWaitThresholdMs);
+    }
+
+    public AdaptiveLimit getLimit(RouteGroup group) {
+        return limits.get(group);
+    }
+
+    static RouteGroup classify(String path) {
+        if (path.startsWith("/api/auth/")) {
+            return RouteGroup.AUTH;
+        }
+        if (path.startsWith("/api/") && (path.endsWith("/export") || path.endsWith("/import"))) {
+            return RouteGroup.BULK;
+        }
+        if (path.startsWith("/api/admin/")) {
+            return RouteGroup.ADMIN;
+        }
+        if (path.equals("/api/tasks") || path.startsWith("/api/tasks/")) {
+            return RouteGroup.TASKS;
+        }
+        return null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RouteGroup group = classify(request.getRequestURI().substring(request.getContextPath().length()));
+        if (group == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        AdaptiveLimit limit = limits.get(group);
+        if (!limit.tryAcquire()) {
+            reject(group, limit, request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        ConnectionLimiter.trackWait();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            long poolWait = ConnectionLimiter.takeTrackedWaitNanos();
+            // Lỗi bay ra tới đây (thường là client ngắt giữa chừng) thì thời gian xử lý không phản ánh tải
+            if (completed) {
+                limit.release(System.nanoTime() - start, poolWait);
+            } else {
+                limit.release();
+            }
+        }
+    }
+
+    private void reject(RouteGroup group, AdaptiveLimit limit, HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        Counter counter = rejections.get(group);
+        if (counter != null) {
+            counter.increment();
+        }
+        logger.debug("Rejected {} {}: {} limit {} reached", request.getMethod(), request.getRequestURI(), group,
+                limit.getLimit());
+        ErrorResponse errorResponse = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.SERVICE_UNAVAILABLE.value(),
+                HttpStatus.SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "Server is busy, please retry later",
+                "uri=" + request.getRequestURI()
+        );
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(limit.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+}
@@ -0,0 +1,224 @@
+package vn.poly.tuan2.AppConfig;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bọc DataSource bằng một Semaphore công bằng có số permit bằng maximum-pool-size của Hikari: mỗi connection
+ * đang mở giữ một permit đến khi close(). Khi chạy virtual thread, hàng nghìn request chờ ở đây (park, gần như
+ * không tốn gì) theo thứ tự đến thay vì cùng dồn vào hàng chờ của Hikari; hết acquire-timeout thì ném
+ * SQLTransientConnectionException như khi Hikari hết hạn chờ. Spring, Hibernate và JdbcTemplate đều lấy connection
+ * qua đây nên mọi truy cập repository đều bị giới hạn.
+ * Thời gian giữ mỗi connection được ghi vào datasource.connection.hold theo tên transaction đang dùng nó
+ * (Lớp.phương thức có @Transactional), "none" nếu connection dùng ngoài transaction.
+ */
+public class ConnectionLimiter extends DelegatingDataSource implements MeterBinder, AutoCloseable {
+
+    // Tổng thời gian chờ permit của request đang chạy trên thread, chỉ ghi khi đã gọi trackWait()
+    private static final ThreadLocal<long[]> trackedWait = new ThreadLocal<>();
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxConnections;
+    private final long acquireTimeoutMs;
+    private volatile Timer waitTimer;
+    private volatile MeterRegistry registry;
+    private final Map<String, Timer> holdTimers = new ConcurrentHashMap<>();
+
+    public ConnectionLimiter(String name, DataSource target, int maxConnections, long acquireTimeoutMs) {
+        super(target);
+        this.name = name;
+        this.permits = new Semaphore(maxConnections, true);
+        this.maxConnections = maxConnections;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        try {
+            return limited(obtainTargetDataSource().getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(waited, TimeUnit.NANOSECONDS);
+        }
+        long[] tracked = trackedWait.get();
+        if (tracked != null) {
+            tracked[0] += waited;
+        }
+        if (!acquired) {
+            throw new SQLTransientConnectionException("Connection is not available, request timed out after "
+                    + acquireTimeoutMs + "ms (" + permits.getQueueLength() + " waiting)");
+        }
+    }
+
+    // Trả permit đúng một lần, kể cả khi close() bị gọi nhiều lần
+    private Connection limited(Connection target) {
+        AtomicBoolean closed = new AtomicBoolean();
+        long acquiredAt = System.nanoTime();
+        // Transaction lấy connection ngay trong lúc begin, trước khi Spring đặt tên: đọc tên ở các lần gọi sau
+        String[] holder = new String[1];
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (holder[0] == null) {
+                holder[0] = TransactionSynchronizationManager.getCurrentTransactionName();
+            }
+            switch (method.getName()) {
+                case "close" -> {
+                    if (closed.compareAndSet(false, true)) {
+                        try {
+                            target.close();
+                        } finally {
+                            permits.release();
+                            recordHold(holder[0], System.nanoTime() - acquiredAt);
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed.get() || target.isClosed();
+                }
+                case "getTargetConnection" -> {
+                    return target;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Limited connection: " + target;
+                }
+                default -> {
+                    return invoke(target, method, args);
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class}, handler);
+    }
+
+    private void recordHold(String transactionName, long nanos) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        String holder = shortName(transactionName);
+        holdTimers.computeIfAbsent(holder, key -> Timer.builder("datasource.connection.hold")
+                        .description("Time a connection was held, by the transaction that used it")
+                        .tag("pool", name)
+                        .tag("method", key)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // vn.poly.tuan2.service.TaskService.getTaskById -> TaskService.getTaskById
+    private static String shortName(String transactionName) {
+        if (transactionName == null) {
+            return "none";
+        }
+        int methodDot = transactionName.lastIndexOf('.');
+        int classDot = methodDot > 0 ? transactionName.lastIndexOf('.', methodDot - 1) : -1;
+        return transactionName.substring(classDot + 1);
+    }
+
+    private static Object invoke(Connection target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    /**
+     * Bắt đầu cộng dồn thời gian chờ connection của thread hiện tại; lấy kết quả bằng takeTrackedWaitNanos().
+     */
+    public static void trackWait() {
+        trackedWait.set(new long[1]);
+    }
+
+    public static long takeTrackedWaitNanos() {
+        long[] tracked = trackedWait.get();
+        trackedWait.remove();
+        return tracked != null ? tracked[0] : 0;
+    }
+
+    public int getActive() {
+        return maxConnections - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("datasource.limiter.active", this, ConnectionLimiter::getActive)
+                .description("Connections currently held through the limiter")
+                .tag("pool", name)
+                .register(registry);
+        Gauge.builder("datasource.limiter.waiting", this, ConnectionLimiter::getWaiting)
+                .description("Threads waiting for a connection permit")
+                .tag("pool", name)
+                .register(registry);
+        this.registry = registry;
+        waitTimer = Timer.builder("datasource.limiter.wait")
+                .description("Time spent waiting for a connection permit")
+                .tag("pool", name)
+                .register(registry);
+    }
+
+    // Bean DataSource giờ là limiter nên Spring gọi close() ở đây khi tắt context: đóng luôn pool bên trong
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable target) {
+            target.close();
+        }
+    }
+}
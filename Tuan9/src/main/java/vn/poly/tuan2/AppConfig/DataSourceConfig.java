@@ -0,0 +1,76 @@
+package vn.poly.tuan2.AppConfig;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bọc pool Hikari mà Spring Boot tạo từ spring.datasource: ConnectionLimiter cho mỗi pool, và khi có
+ * application.datasource.replica.urls thì thêm các pool replica (cùng cấu hình Hikari, khác URL) sau
+ * ReplicaRoutingDataSource. Mọi thứ làm trong một BeanPostProcessor để thứ tự bọc luôn cố định.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    // static: BeanPostProcessor phải có trước khi các bean khác (kể cả DataSource) được tạo
+    @Bean
+    public static BeanPostProcessor dataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                // ConnectionLimiter và ReplicaRoutingDataSource là MeterBinder: Spring Boot tự đăng ký metric
+                String poolName = hikari.getPoolName() != null ? hikari.getPoolName() : beanName;
+                DataSource primary = limited(poolName, hikari, environment);
+                String[] urls = StringUtils.tokenizeToStringArray(
+                        environment.getProperty("application.datasource.replica.urls", ""), ",");
+                if (urls.length == 0) {
+                    return primary;
+                }
+                List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+                for (int i = 0; i < urls.length; i++) {
+                    String name = "replica-" + (i + 1);
+                    String replicaPoolName = poolName + "-" + name;
+                    replicas.add(new ReplicaRoutingDataSource.Replica(name, limited(replicaPoolName,
+                            replicaPool(hikari, replicaPoolName, urls[i], environment), environment)));
+                }
+                return new ReplicaRoutingDataSource(primary, replicas,
+                        environment.getProperty("application.datasource.replica.max-lag", Long.class, 1000L),
+                        environment.getProperty("application.datasource.replica.lag-query", ""),
+                        environment.getProperty("application.datasource.replica.health-check-interval", Long.class, 1000L),
+                        environment.getProperty("application.datasource.replica.sticky-window", Long.class, 5000L));
+            }
+        };
+    }
+
+    private static DataSource limited(String poolName, HikariDataSource hikari, Environment environment) {
+        if (!environment.getProperty("application.datasource.limiter.enabled", Boolean.class, true)) {
+            return hikari;
+        }
+        long acquireTimeout = environment.getProperty("application.datasource.limiter.acquire-timeout",
+                Long.class, hikari.getConnectionTimeout());
+        return new ConnectionLimiter(poolName, hikari, hikari.getMaximumPoolSize(), acquireTimeout);
+    }
+
+    private static HikariDataSource replicaPool(HikariDataSource primary, String poolName, String url,
+                                                Environment environment) {
+        HikariConfig config = new HikariConfig();
+        primary.copyStateTo(config);
+        config.setJdbcUrl(url);
+        config.setPoolName(poolName);
+        config.setUsername(environment.getProperty("application.datasource.replica.username", primary.getUsername()));
+        config.setPassword(environment.getProperty("application.datasource.replica.password", primary.getPassword()));
+        config.setReadOnly(true);
+        return new HikariDataSource(config);
+    }
+}
@@ -0,0 +1,95 @@
+package vn.poly.tuan2.AppConfig;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.TaskRepository;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache cấp 2 của Hibernate (hibernate.cache.* trong application.properties) trên Caffeine qua JCache. Các region
+ * được tạo sẵn ở đây với kích thước và TTL riêng; missing_cache_strategy=fail nên region đặt sai tên làm app không
+ * khởi động được, thay vì chạy với một cache mặc định không giới hạn.
+ * Cache nằm trong bộ nhớ của từng instance: READ_WRITE giữ đúng dữ liệu cho các lần ghi trên chính instance đó, còn
+ * user bị sửa/xóa trên instance khác được xóa khỏi region user khi instance này đọc bảng user_change
+ * (UserDetailsServiceImpl.pollUserChanges); TTL chỉ còn là giới hạn trên khi việc đọc đó lỗi.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    @Value("${application.hibernate-cache.user.max-size:10000}")
+    private long userMaxSize;
+
+    @Value("${application.hibernate-cache.user.ttl:300000}")
+    private long userTtlMs;
+
+    @Value("${application.hibernate-cache.task-counts.max-size:10000}")
+    private long taskCountsMaxSize;
+
+    @Value("${application.hibernate-cache.task-counts.ttl:60000}")
+    private long taskCountsTtlMs;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        // Mỗi ApplicationContext một CacheManager: CacheManager theo URI mặc định dùng chung cho cả JVM
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(User.CACHE_REGION, region(userMaxSize, userTtlMs));
+        cacheManager.createCache(User.ROLES_CACHE_REGION, region(userMaxSize, userTtlMs));
+        cacheManager.createCache(TaskRepository.COUNT_QUERY_CACHE_REGION, region(taskCountsMaxSize, taskCountsTtlMs));
+        // Hibernate luôn tạo region query mặc định khi bật query cache, dù không query nào dùng tới
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(taskCountsMaxSize, taskCountsTtlMs));
+        // Mỗi bảng một entry; không được hết hạn trước kết quả query dựa vào nó
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, region(0, 0));
+        return cacheManager;
+    }
+
+    // maxSize/ttl = 0: không giới hạn
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long ttlMs) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        // Hibernate chỉ đưa vào cache các entry bất biến (trạng thái đã tách khỏi entity), không cần sao chép
+        configuration.setStoreByValue(false);
+        configuration.setNativeStatisticsEnabled(true);
+        configuration.setMaximumSize(maxSize > 0 ? OptionalLong.of(maxSize) : OptionalLong.empty());
+        configuration.setExpireAfterWrite(ttlMs > 0
+                ? OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)) : OptionalLong.empty());
+        return configuration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    // cache.gets/puts/evictions như các cache Caffeine khác, thêm tỉ lệ hit của từng region
+    @Bean
+    public MeterBinder hibernateCacheMetrics(CacheManager hibernateCacheManager) {
+        return registry -> {
+            for (String name : hibernateCacheManager.getCacheNames()) {
+                com.github.benmanes.caffeine.cache.Cache<?, ?> cache = hibernateCacheManager.getCache(name)
+                        .unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+                CaffeineCacheMetrics.monitor(registry, cache, "hibernate." + name);
+                Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+                        .description("Fraction of lookups served from the Hibernate second-level cache region")
+                        .tag("cache", "hibernate." + name)
+                        .register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,373 @@
+package vn.poly.tuan2.AppConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tách đọc/ghi: transaction readOnly (@Transactional(readOnly = true), cả các phương thức đọc có sẵn của Spring Data)
+ * lấy connection từ một replica, còn lại đi primary. Connection được lấy lười (LazyConnectionDataSourceProxy) nên
+ * lúc câu SQL đầu tiên chạy đã biết transaction có readOnly hay không.
+ * Replica bị bỏ qua khi health check lỗi hoặc độ trễ đo bằng lag-query vượt max-lag; không còn replica dùng được
+ * thì đọc từ primary.
+ * Đọc thấy thay đổi của chính mình: request có transaction ghi commit được trả về cookie last_write_at (thời điểm
+ * commit, sống sticky-window). Client gửi lại cookie đó tới bất kỳ instance nào; replica chỉ được dùng cho request
+ * khi lần health check gần nhất cho thấy nó đã nhận mọi thay đổi tới thời điểm đó (lúc check trừ lag), nếu không
+ * thì đọc primary. Không cần session affinity; chỉ giả định đồng hồ các instance lệch nhau ít hơn nhiều so với
+ * sticky-window.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    public static final String LAST_WRITE_COOKIE = "last_write_at";
+    // Thời điểm commit của lần ghi trong chính request này, cho các lần đọc sau đó cùng request
+    private static final String LAST_WRITE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".lastWriteAt";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMs;
+    private final String lagQuery;
+    private final long stickyWindowMs;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile Counter stickyReads;
+    private volatile Counter fallbackReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, long maxLagMs, String lagQuery,
+                                    long healthCheckIntervalMs, long stickyWindowMs) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLagMs = maxLagMs;
+        this.lagQuery = lagQuery;
+        this.stickyWindowMs = stickyWindowMs;
+        setTargetDataSource(new WriteTracking(primary));
+        setReadOnlyDataSource(new ReadRouting());
+        afterPropertiesSet();
+
+        checkReplicas();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("replica-health-check").daemon().factory());
+        healthChecker.scheduleWithFixedDelay(this::checkReplicas, healthCheckIntervalMs, healthCheckIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Kiểm tra mọi replica một lượt; chạy định kỳ theo health-check-interval.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            replica.check(lagQuery);
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    private DataSource chooseForRead() {
+        long lastWriteAt = lastWriteAt();
+        boolean behindWrite = false;
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (!replica.isUsable(maxLagMs)) {
+                continue;
+            }
+            if (replica.hasApplied(lastWriteAt)) {
+                return replica;
+            }
+            behindWrite = true;
+        }
+        increment(behindWrite ? stickyReads : fallbackReads);
+        return primary;
+    }
+
+    private void markWrite() {
+        ServletRequestAttributes request = currentRequest();
+        // Ngoài transaction chỉ có truy vấn đọc (JPA không cho ghi khi không có transaction); ngoài request (job
+        // định kỳ) không có client nào để nhận cookie
+        if (request == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        // Tính từ lúc commit, không phải lúc bắt đầu ghi
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    rememberWrite(request, System.currentTimeMillis());
+                }
+            }
+        });
+    }
+
+    private void rememberWrite(ServletRequestAttributes attributes, long committedAt) {
+        attributes.getRequest().setAttribute(LAST_WRITE_ATTRIBUTE, committedAt);
+        HttpServletResponse response = attributes.getResponse();
+        // Response đã gửi header (ví dụ import NDJSON đang stream) thì không gắn cookie được nữa
+        if (response == null || response.isCommitted()) {
+            return;
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(LAST_WRITE_COOKIE, Long.toString(committedAt))
+                .path("/")
+                .httpOnly(true)
+                .sameSite("Lax")
+                .maxAge(Duration.ofMillis(stickyWindowMs))
+                .build()
+                .toString());
+    }
+
+    // 0 nếu request không ghi gần đây; cookie hỏng, quá sticky-window hoặc ở tương lai xa bị bỏ qua
+    private long lastWriteAt() {
+        ServletRequestAttributes attributes = currentRequest();
+        if (attributes == null) {
+            return 0;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        if (request.getAttribute(LAST_WRITE_ATTRIBUTE) instanceof Long committedAt) {
+            return committedAt;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (LAST_WRITE_COOKIE.equals(cookie.getName())) {
+                long now = System.currentTimeMillis();
+                try {
+                    long committedAt = Long.parseLong(cookie.getValue());
+                    return Math.abs(now - committedAt) <= stickyWindowMs ? Math.min(committedAt, now) : 0;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes : null;
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (primary instanceof MeterBinder binder) {
+            binder.bindTo(registry);
+        }
+        for (Replica replica : replicas) {
+            replica.bindTo(registry);
+        }
+        stickyReads = Counter.builder("datasource.replica.primary-reads")
+                .description("Read-only transactions sent to the primary instead of a replica")
+                .tag("reason", "sticky")
+                .register(registry);
+        fallbackReads = Counter.builder("datasource.replica.primary-reads")
+                .description("Read-only transactions sent to the primary instead of a replica")
+                .tag("reason", "no-replica-available")
+                .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.close();
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    // Connection ghi lấy thẳng từ primary; ghi nhận lần ghi để các lần đọc ngay sau đó không rơi vào replica còn trễ
+    private class WriteTracking extends DelegatingDataSource {
+
+        WriteTracking(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            markWrite();
+            return super.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            markWrite();
+            return super.getConnection(username, password);
+        }
+    }
+
+    private class ReadRouting extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            DataSource target = chooseForRead();
+            if (target instanceof Replica replica) {
+                try {
+                    return replica.getConnection();
+                } catch (SQLException e) {
+                    // Replica vừa chết giữa hai lần check: đánh dấu hỏng rồi đọc từ primary
+                    replica.markDown(e);
+                    increment(fallbackReads);
+                    return primary.getConnection();
+                }
+            }
+            return target.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            throw new SQLException("Replica routing does not support explicit credentials");
+        }
+    }
+
+    /**
+     * Một pool replica cùng trạng thái health check gần nhất.
+     */
+    public static class Replica extends DelegatingDataSource implements AutoCloseable {
+        private final String name;
+        private volatile boolean healthy = true;
+        private volatile long lagMs = -1;
+        // Replica đã nhận mọi thay đổi commit trên primary trước thời điểm này (lúc bắt đầu check trừ lag)
+        private volatile long appliedUntil;
+        private volatile Counter reads;
+
+        public Replica(String name, DataSource target) {
+            super(target);
+            this.name = name;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            increment(reads);
+            return super.getConnection();
+        }
+
+        void check(String lagQuery) {
+            long startedAt = System.currentTimeMillis();
+            try (Connection connection = super.getConnection()) {
+                if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    markDown(null);
+                    return;
+                }
+                long lag = lagQuery == null || lagQuery.isBlank() ? 0 : queryLag(connection, lagQuery);
+                if (lag < 0) {
+                    markDown(null);
+                    return;
+                }
+                if (!healthy) {
+                    logger.info("Replica {} is available (lag {} ms)", name, lag);
+                }
+                lagMs = lag;
+                appliedUntil = startedAt - lag;
+                healthy = true;
+            } catch (SQLException | RuntimeException e) {
+                markDown(e);
+            }
+        }
+
+        // lag-query trả về số giây trễ (như Seconds_Behind_Source); NULL nghĩa là replication đang dừng
+        private static long queryLag(Connection connection, String lagQuery) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(lagQuery)) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                double seconds = rs.getDouble(1);
+                return rs.wasNull() ? -1 : Math.round(seconds * 1000);
+            }
+        }
+
+        void markDown(Exception cause) {
+            if (healthy) {
+                logger.warn("Replica {} is unavailable, reading from the primary: {}", name,
+                        cause != null ? cause.getMessage() : "replication is not running");
+            }
+            healthy = false;
+            lagMs = -1;
+        }
+
+        boolean isUsable(long maxLagMs) {
+            return healthy && lagMs <= maxLagMs;
+        }
+
+        boolean hasApplied(long committedAt) {
+            return committedAt == 0 || appliedUntil > committedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public long getLagMs() {
+            return lagMs;
+        }
+
+        void bindTo(MeterRegistry registry) {
+            if (getTargetDataSource() instanceof MeterBinder binder) {
+                binder.bindTo(registry);
+            }
+            Gauge.builder("datasource.replica.healthy", this, replica -> replica.isHealthy() ? 1 : 0)
+                    .description("Whether the replica passed its last health check")
+                    .tag("replica", name)
+                    .register(registry);
+            Gauge.builder("datasource.replica.lag", this, replica -> replica.getLagMs() < 0 ? Double.NaN : replica.getLagMs())
+                    .description("Replication lag measured by the last health check")
+                    .tag("replica", name)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+            reads = Counter.builder("datasource.replica.reads")
+                    .description("Read-only transactions served by the replica")
+                    .tag("replica", name)
+                    .register(registry);
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (getTargetDataSource() instanceof AutoCloseable target) {
+                target.close();
+            }
+        }
+    }
+}
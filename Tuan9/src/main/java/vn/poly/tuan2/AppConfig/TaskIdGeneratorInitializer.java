@@ -0,0 +1,48 @@
+package vn.poly.tuan2.AppConfig;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import vn.poly.tuan2.entity.Task;
+
+/**
+ * Bảng task cũ được đánh id bằng AUTO_INCREMENT. Khi khởi động, đẩy giá trị của generator
+ * lên trên MAX(id) hiện có để các khối id mới không đụng vào dòng đã tồn tại.
+ */
+@Component
+public class TaskIdGeneratorInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(TaskIdGeneratorInitializer.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Chờ schema sẵn sàng: Flyway migrate xong trước khi EntityManagerFactory được tạo
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM task", Long.class);
+        // Pooled optimizer cấp các id (next_val - allocationSize, next_val], nên cộng thêm một khối
+        long floor = maxId + Task.ID_ALLOCATION_SIZE;
+        int updated = jdbcTemplate.update("UPDATE " + Task.ID_GENERATOR_TABLE
+                        + " SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+                floor, Task.ID_GENERATOR_KEY, floor);
+        if (updated == 0) {
+            Integer rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + Task.ID_GENERATOR_TABLE
+                    + " WHERE sequence_name = ?", Integer.class, Task.ID_GENERATOR_KEY);
+            if (rows == null || rows == 0) {
+                jdbcTemplate.update("INSERT INTO " + Task.ID_GENERATOR_TABLE + " (sequence_name, next_val) VALUES (?, ?)",
+                        Task.ID_GENERATOR_KEY, floor);
+                updated = 1;
+            }
+        }
+        if (updated > 0) {
+            logger.info("Task id generator moved to {} (max existing id {})", floor, maxId);
+        }
+    }
+}
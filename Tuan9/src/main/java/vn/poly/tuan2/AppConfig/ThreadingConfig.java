@@ -0,0 +1,21 @@
+package vn.poly.tuan2.AppConfig;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+
+/**
+ * Cấu hình cho chế độ virtual thread (spring.threads.virtual.enabled): Tomcat, @Async và scheduler chạy trên
+ * virtual thread, DataSource được bọc bởi ConnectionLimiter (xem DataSourceConfig), và task chuyển sang executor
+ * mang theo SecurityContext của thread gửi (SecurityContextHolder giữ theo ThreadLocal, thread mới không tự có).
+ */
+@Configuration
+public class ThreadingConfig {
+
+    // Spring Boot gắn TaskDecorator này vào applicationTaskExecutor (@Async, request async của MVC)
+    @Bean
+    public TaskDecorator securityContextTaskDecorator() {
+        return DelegatingSecurityContextRunnable::new;
+    }
+}
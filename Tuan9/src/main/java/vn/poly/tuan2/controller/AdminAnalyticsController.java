@@ -0,0 +1,43 @@
+package vn.poly.tuan2.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import vn.poly.tuan2.dto.CursorPage;
+import vn.poly.tuan2.dto.TaskStatsSummary;
+import vn.poly.tuan2.dto.UserTaskStatsDto;
+import vn.poly.tuan2.service.TaskAnalyticsService;
+import vn.poly.tuan2.util.TaskCursor;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/analytics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminAnalyticsController {
+
+    @Autowired
+    private TaskAnalyticsService taskAnalyticsService;
+
+    // Tổng số task theo trạng thái và tỉ lệ hoàn thành trên toàn hệ thống
+    @GetMapping("/summary")
+    public ResponseEntity<TaskStatsSummary> getSummary() {
+        return ResponseEntity.ok(taskAnalyticsService.getSummary());
+    }
+
+    // Số task theo trạng thái của từng user, phân trang keyset theo userId
+    @GetMapping("/users")
+    public ResponseEntity<CursorPage<UserTaskStatsDto>> getUserStats(@RequestParam(required = false) String cursor,
+                                                                     @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(taskAnalyticsService.getUserStats(cursor, TaskCursor.clampSize(size)));
+    }
+
+    @GetMapping("/top-overdue")
+    public ResponseEntity<List<UserTaskStatsDto>> getTopOverdue(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(taskAnalyticsService.getTopOverdue(limit));
+    }
+}
@@ -1,18 +1,40 @@
 package vn.poly.tuan2.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import vn.poly.tuan2.dto.CursorPage;
+import vn.poly.tuan2.dto.SliceResponse;
 import vn.poly.tuan2.dto.TaskDto;
 import vn.poly.tuan2.entity.Task;
-import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.request.TaskBatchItemRequest;
+import vn.poly.tuan2.request.TaskFilter;
 import vn.poly.tuan2.response.ApiResponse;
+import vn.poly.tuan2.response.BulkOperationResponse;
+import vn.poly.tuan2.response.TaskStatsResponse;
+import vn.poly.tuan2.response.TaskBatchResponse;
+import vn.poly.tuan2.service.TaskBatchService;
+import vn.poly.tuan2.service.TaskBulkService;
+import vn.poly.tuan2.service.TaskChangeCounter;
+import vn.poly.tuan2.service.TaskExporter;
+import vn.poly.tuan2.service.TaskImporter;
+import vn.poly.tuan2.service.TaskSearchIndex;
 import vn.poly.tuan2.service.TaskService;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskETags;
+import vn.poly.tuan2.util.TaskExportFormat;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -23,27 +45,161 @@ public class AdminTaskController {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TaskBatchService taskBatchService;
+
+    @Autowired
+    private TaskBulkService taskBulkService;
+
+    @Autowired
+    private TaskChangeCounter taskChangeCounter;
+
+    @Autowired
+    private TaskExporter taskExporter;
+
+    @Autowired
+    private TaskSearchIndex taskSearchIndex;
+
+    // Giống /api/tasks/batch nhưng mỗi item có thể giao cho assignedToId bất kỳ
+    @PostMapping("/batch")
+    public ResponseEntity<ApiResponse> createTasksByAdmin(@RequestBody List<TaskBatchItemRequest> tasks) {
+        TaskBatchResponse result = taskBatchService.createTasksByAdmin(tasks);
+        return ResponseEntity.ok(new ApiResponse(true, "Batch processed: " + result.getCreated() + " created, "
+                + result.getFailed() + " failed", result));
+    }
+
+    /**
+     * Nhập task từ body NDJSON hoặc CSV (cột title, description, status, dueDate, assignee là username).
+     * Response là NDJSON ghi dần: progress sau mỗi khối đã commit, error cho từng dòng bị bỏ qua, done ở cuối.
+     */
+    @PostMapping("/import")
+    public void importTasks(@RequestParam(defaultValue = "ndjson") String format, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        TaskImporter.Rows rows = taskBatchService.openImport(TaskExportFormat.parse(format), request.getInputStream());
+        response.setContentType(TaskExportFormat.NDJSON.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        taskBatchService.importTasks(rows, response.getOutputStream());
+    }
+
+    @PostMapping("/bulk/complete-overdue")
+    public ResponseEntity<ApiResponse> completeOverdueTasks(@RequestParam Long userId) {
+        BulkOperationResponse result = taskBulkService.completeOverdueTasks(userId);
+        return ResponseEntity.ok(new ApiResponse(true, result.getAffected() + " overdue tasks completed", result));
+    }
+
+    @DeleteMapping("/bulk/completed")
+    public ResponseEntity<ApiResponse> deleteCompletedTasks(@RequestParam(defaultValue = "30") int olderThanDays) {
+        BulkOperationResponse result = taskBulkService.deleteCompletedTasks(olderThanDays);
+        return ResponseEntity.ok(new ApiResponse(true, result.getAffected() + " completed tasks deleted", result));
+    }
+
+    @PostMapping("/bulk/reassign")
+    public ResponseEntity<ApiResponse> reassignTasks(@RequestParam Long fromUserId, @RequestParam Long toUserId) {
+        BulkOperationResponse result = taskBulkService.reassignTasks(fromUserId, toUserId);
+        return ResponseEntity.ok(new ApiResponse(true, result.getAffected() + " tasks reassigned", result));
+    }
+
     @GetMapping("/all")
     public ResponseEntity<Page<TaskDto>> getAllTasksForAdmin(
-                                                              @RequestParam(required = false) TaskStatus status,
-                                                              @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable) {
-        Page<TaskDto> tasks = taskService.getAllTasksForAdmin(status, pageable);
+                                                              TaskFilter filter,
+                                                              @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable,
+                                                              WebRequest webRequest) {
+        if (webRequest.checkNotModified(taskChangeCounter.globalListETag())) {
+            return null;
+        }
+        Page<TaskDto> tasks = taskService.getAllTasksForAdmin(filter, pageable);
+        return ResponseEntity.ok(tasks);
+    }
+
+    @GetMapping("/all/slice")
+    public ResponseEntity<SliceResponse<TaskDto>> getAllTaskSliceForAdmin(
+                                                                           TaskFilter filter,
+                                                                           @RequestParam(defaultValue = "false") boolean withTotal,
+                                                                           @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable,
+                                                                           WebRequest webRequest) {
+        if (webRequest.checkNotModified(taskChangeCounter.globalListETag())) {
+            return null;
+        }
+        SliceResponse<TaskDto> tasks = taskService.getAllTaskSliceForAdmin(filter, pageable, withTotal);
         return ResponseEntity.ok(tasks);
     }
 
+    @GetMapping("/all/cursor")
+    public ResponseEntity<CursorPage<TaskDto>> getAllTasksForAdminByCursor(
+                                                                            TaskFilter filter,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(defaultValue = "10") int size,
+                                                                            WebRequest webRequest) {
+        if (webRequest.checkNotModified(taskChangeCounter.globalListETag())) {
+            return null;
+        }
+        CursorPage<TaskDto> tasks = taskService.getAllTasksForAdmin(filter, cursor, TaskCursor.clampSize(size));
+        return ResponseEntity.ok(tasks);
+    }
+
+    // Tải toàn bộ task khớp bộ lọc (mới nhất trước) thành NDJSON hoặc CSV, ghi dần ra response thay vì dựng cả danh sách
+    @GetMapping("/export")
+    public void exportAllTasks(TaskFilter filter, @RequestParam(defaultValue = "ndjson") String format,
+                               HttpServletResponse response) throws IOException {
+        TaskExportFormat exportFormat = TaskExportFormat.parse(format);
+        // Kiểm tra trước khi đặt header: lỗi 400 vẫn trả JSON bình thường
+        filter.validate();
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + exportFormat.getFileName() + "\"");
+        taskExporter.export(filter, exportFormat, response.getOutputStream());
+    }
+
+    // userId bỏ trống: tìm trên task của mọi user
+    @GetMapping("/search")
+    public ResponseEntity<SliceResponse<TaskDto>> searchTasks(@RequestParam("q") String query,
+                                                              @RequestParam(required = false) Long userId,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(taskService.searchTasksForAdmin(query, userId, page, TaskCursor.clampSize(size)));
+    }
+
+    // Dựng lại chỉ mục tìm kiếm từ DB (sau khi mất thư mục chỉ mục hoặc sửa dữ liệu trực tiếp trên DB)
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<ApiResponse> rebuildSearchIndex() {
+        boolean started = taskSearchIndex.rebuildAsync();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(new ApiResponse(true,
+                started ? "Search index rebuild started" : "Search index rebuild already running"));
+    }
+
+    // Chạy reconcile ngay (bình thường chạy theo lịch application.tasks.stats.reconcile-cron)
+    @PostMapping("/stats/reconcile")
+    public ResponseEntity<ApiResponse> reconcileStats() {
+        BulkOperationResponse result = taskService.reconcileStats();
+        return ResponseEntity.ok(new ApiResponse(true, "Task stats repaired for " + result.getAffected() + " users",
+                result));
+    }
+
+    @GetMapping("/user/{userId}/stats")
+    public ResponseEntity<TaskStatsResponse> getStatsForUser(@PathVariable Long userId) {
+        return ResponseEntity.ok(taskService.getStatsForUser(userId));
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<Page<TaskDto>> getTasksByUserIdForAdmin(
                                                                    @PathVariable Long userId,
-                                                                   @RequestParam(required = false) TaskStatus status,
-                                                                   @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable) {
-        Page<TaskDto> tasks = taskService.getTasksByUserIdForAdmin(userId, status, pageable);
+                                                                   TaskFilter filter,
+                                                                   @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable,
+                                                                   WebRequest webRequest) {
+        Page<TaskDto> tasks = taskService.getTasksByUserIdForAdmin(userId, filter, pageable, webRequest::checkNotModified);
+        if (tasks == null) {
+            return null;
+        }
         return ResponseEntity.ok(tasks);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ApiResponse> updateTaskByAdmin(@PathVariable Long id, @RequestBody Task taskDetails) {
-        Task updatedTask = taskService.updateTaskByAdmin(id, taskDetails);
-        return ResponseEntity.ok(new ApiResponse(true, "Task updated by admin successfully!", updatedTask));
+    public ResponseEntity<ApiResponse> updateTaskByAdmin(@PathVariable Long id, @RequestBody Task taskDetails,
+                                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Task updatedTask = taskService.updateTaskByAdmin(id, taskDetails, TaskETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(TaskETags.strong(updatedTask.getVersion()))
+                .body(new ApiResponse(true, "Task updated by admin successfully!", updatedTask));
     }
 
     @DeleteMapping("/{id}")
@@ -53,10 +209,13 @@ public class AdminTaskController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse> getTaskByIdForAdmin(@PathVariable Long id) {
-        Optional<Task> task = taskService.getTaskById(id);
+    public ResponseEntity<ApiResponse> getTaskByIdForAdmin(@PathVariable Long id, WebRequest webRequest) {
+        Optional<TaskDto> task = taskService.getTaskById(id);
         if (task.isPresent()) {
-            return ResponseEntity.ok(new ApiResponse(true, "Task found!", taskService.convertToDto(task.get()))); // Chuyển đổi sang TaskDto
+            if (webRequest.checkNotModified(TaskETags.strong(task.get().getVersion()))) {
+                return null;
+            }
+            return ResponseEntity.ok(new ApiResponse(true, "Task found!", task.get()));
         } else {
             return ResponseEntity.notFound().build();
         }
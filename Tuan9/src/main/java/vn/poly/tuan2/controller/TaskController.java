@@ -1,21 +1,42 @@
 package vn.poly.tuan2.controller;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import vn.poly.tuan2.dto.CursorPage;
+import vn.poly.tuan2.dto.SliceResponse;
 import vn.poly.tuan2.dto.TaskDto;
 import vn.poly.tuan2.entity.Task;
 import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.request.TaskBatchItemRequest;
+import vn.poly.tuan2.request.TaskStatusRequest;
+import vn.poly.tuan2.request.TaskFilter;
 import vn.poly.tuan2.response.ApiResponse;
+import vn.poly.tuan2.response.BulkOperationResponse;
+import vn.poly.tuan2.response.TaskBatchResponse;
+import vn.poly.tuan2.response.TaskStatsResponse;
+import vn.poly.tuan2.response.TaskTimeseriesResponse;
 
 import jakarta.validation.Valid;
+import vn.poly.tuan2.service.TaskBatchService;
+import vn.poly.tuan2.service.TaskBulkService;
 import vn.poly.tuan2.service.TaskService;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskETags;
+import vn.poly.tuan2.util.TaskExportFormat;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -25,27 +46,133 @@ public class TaskController {
     @Autowired
     private TaskService taskService;
 
+    @Autowired
+    private TaskBatchService taskBatchService;
+
+    @Autowired
+    private TaskBulkService taskBulkService;
+
     @PostMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<ApiResponse> createTask(@Valid @RequestBody Task task) {
-        Task createdTask = taskService.createTask(task);
+        TaskDto createdTask = taskService.createTask(task);
         return new ResponseEntity<>(new ApiResponse(true, "Task created successfully!", createdTask), HttpStatus.CREATED);
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> createTasks(@RequestBody List<TaskBatchItemRequest> tasks) {
+        TaskBatchResponse result = taskBatchService.createTasks(tasks);
+        return ResponseEntity.ok(new ApiResponse(true, "Batch processed: " + result.getCreated() + " created, "
+                + result.getFailed() + " failed", result));
+    }
+
     @GetMapping
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<Page<TaskDto>> getTasksForCurrentUser(
-                                                                 @RequestParam(required = false) TaskStatus status,
-                                                                 @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable) {
-        Page<TaskDto> tasks = taskService.getTasksForCurrentUser(status, pageable);
+                                                                 TaskFilter filter,
+                                                                 @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable,
+                                                                 WebRequest webRequest) {
+        // Danh sách không đổi kể từ lần poll trước: 304 mà không chạy truy vấn trang
+        Page<TaskDto> tasks = taskService.getTasksForCurrentUser(filter, pageable, webRequest::checkNotModified);
+        if (tasks == null) {
+            return null;
+        }
+        return ResponseEntity.ok(tasks);
+    }
+
+    @GetMapping("/slice")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<TaskDto>> getTaskSliceForCurrentUser(
+                                                                              TaskFilter filter,
+                                                                              @RequestParam(defaultValue = "false") boolean withTotal,
+                                                                              @PageableDefault(size = 10, sort = "createdAt", direction = org.springframework.data.domain.Sort.Direction.DESC) Pageable pageable,
+                                                                              WebRequest webRequest) {
+        SliceResponse<TaskDto> tasks = taskService.getTaskSliceForCurrentUser(filter, pageable, withTotal,
+                webRequest::checkNotModified);
+        if (tasks == null) {
+            return null;
+        }
+        return ResponseEntity.ok(tasks);
+    }
+
+    @GetMapping("/cursor")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<CursorPage<TaskDto>> getTasksForCurrentUserByCursor(
+                                                                               TaskFilter filter,
+                                                                               @RequestParam(required = false) String cursor,
+                                                                               @RequestParam(defaultValue = "10") int size,
+                                                                               WebRequest webRequest) {
+        CursorPage<TaskDto> tasks = taskService.getTasksForCurrentUser(filter, cursor, TaskCursor.clampSize(size),
+                webRequest::checkNotModified);
+        if (tasks == null) {
+            return null;
+        }
         return ResponseEntity.ok(tasks);
     }
 
+    // Tải toàn bộ task khớp bộ lọc (mới nhất trước) thành NDJSON hoặc CSV, ghi dần ra response thay vì dựng cả danh sách
+    @GetMapping("/export")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public void exportTasks(TaskFilter filter, @RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        TaskExportFormat exportFormat = TaskExportFormat.parse(format);
+        // Kiểm tra trước khi đặt header: lỗi 400 vẫn trả JSON bình thường
+        filter.validate();
+        response.setContentType(exportFormat.getContentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + exportFormat.getFileName() + "\"");
+        taskService.exportTasksForCurrentUser(filter, exportFormat, response.getOutputStream());
+    }
+
+    // Tìm full-text trên title/description của task thuộc user hiện tại, xếp theo độ liên quan
+    @GetMapping("/search")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<SliceResponse<TaskDto>> searchTasks(@RequestParam("q") String query,
+                                                              @RequestParam(defaultValue = "0") int page,
+                                                              @RequestParam(defaultValue = "10") int size) {
+        return ResponseEntity.ok(taskService.searchTasksForCurrentUser(query, page, TaskCursor.clampSize(size)));
+    }
+
+    // Số task theo trạng thái và số quá hạn, đọc từ bộ đếm task_stats (một dòng theo khóa chính)
+    @GetMapping("/stats")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<TaskStatsResponse> getStats() {
+        return ResponseEntity.ok(taskService.getStatsForCurrentUser());
+    }
+
+    // Số task tạo mới/hoàn thành theo ngày, tuần hoặc tháng; chỉ đọc bảng tổng hợp task_daily_stats
+    @GetMapping("/timeseries")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<TaskTimeseriesResponse> getTimeseries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity) {
+        return ResponseEntity.ok(taskService.getTimeseriesForCurrentUser(from, to, granularity));
+    }
+
+    @PostMapping("/bulk/complete-overdue")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> completeOverdueTasks() {
+        BulkOperationResponse result = taskBulkService.completeOverdueTasksForCurrentUser();
+        return ResponseEntity.ok(new ApiResponse(true, result.getAffected() + " overdue tasks completed", result));
+    }
+
+    @DeleteMapping("/bulk/completed")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> deleteCompletedTasks(@RequestParam(defaultValue = "30") int olderThanDays) {
+        BulkOperationResponse result = taskBulkService.deleteCompletedTasksForCurrentUser(olderThanDays);
+        return ResponseEntity.ok(new ApiResponse(true, result.getAffected() + " completed tasks deleted", result));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<ApiResponse> getTaskById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse> getTaskById(@PathVariable Long id, WebRequest webRequest) {
         Optional<TaskDto> task = taskService.getTaskByIdForCurrentUser(id);
         if (task.isPresent()) {
+            if (webRequest.checkNotModified(TaskETags.strong(task.get().getVersion()))) {
+                return null;
+            }
             return ResponseEntity.ok(new ApiResponse(true, "Task found!", task.get()));
         } else {
             return ResponseEntity.notFound().build();
@@ -54,9 +181,21 @@ public class TaskController {
 
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<ApiResponse> updateTask(@PathVariable Long id, @Valid @RequestBody Task taskDetails) {
-        Task updatedTask = taskService.updateTaskForCurrentUser(id, taskDetails);
-        return ResponseEntity.ok(new ApiResponse(true, "Task updated successfully!", updatedTask));
+    public ResponseEntity<ApiResponse> updateTask(@PathVariable Long id, @Valid @RequestBody Task taskDetails,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TaskDto updatedTask = taskService.updateTaskForCurrentUser(id, taskDetails, TaskETags.parseIfMatch(ifMatch));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (updatedTask.getVersion() != null) {
+            response.eTag(TaskETags.strong(updatedTask.getVersion()));
+        }
+        return response.body(new ApiResponse(true, "Task updated successfully!", updatedTask));
+    }
+
+    @PatchMapping("/{id}/status")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<ApiResponse> updateTaskStatus(@PathVariable Long id, @Valid @RequestBody TaskStatusRequest request) {
+        taskService.updateTaskStatusForCurrentUser(id, request.getStatus());
+        return ResponseEntity.ok(new ApiResponse(true, "Task status updated successfully!"));
     }
 
     @DeleteMapping("/{id}")
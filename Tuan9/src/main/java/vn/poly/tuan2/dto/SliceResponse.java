@@ -0,0 +1,20 @@
+package vn.poly.tuan2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SliceResponse<T> {
+    private List<T> content;
+    private int number;
+    private int size;
+    private boolean hasNext;
+    // Chỉ có khi client yêu cầu withTotal=true
+    private Long totalElements;
+    private Boolean totalExact;
+}
@@ -22,4 +22,5 @@ public class TaskDto {
     private LocalDateTime createdAt;
     private Long assignedToId;
     private String assignedToUsername;
+    private Long version;
 }
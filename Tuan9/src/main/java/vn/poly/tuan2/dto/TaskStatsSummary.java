@@ -0,0 +1,24 @@
+package vn.poly.tuan2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Tổng trên mọi dòng task_stats; users là số user có dòng bộ đếm
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskStatsSummary {
+    private long users;
+    private long pending;
+    private long completed;
+    private long overdue;
+
+    public long getTotal() {
+        return pending + completed;
+    }
+
+    public double getCompletionRatio() {
+        return getTotal() == 0 ? 0 : (double) completed / getTotal();
+    }
+}
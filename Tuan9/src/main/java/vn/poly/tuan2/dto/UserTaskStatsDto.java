@@ -0,0 +1,24 @@
+package vn.poly.tuan2.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserTaskStatsDto {
+    private Long userId;
+    private String username;
+    private long pending;
+    private long completed;
+    private long overdue;
+
+    public long getTotal() {
+        return pending + completed;
+    }
+
+    public double getCompletionRatio() {
+        return getTotal() == 0 ? 0 : (double) completed / getTotal();
+    }
+}
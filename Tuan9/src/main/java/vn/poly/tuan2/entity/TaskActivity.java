@@ -0,0 +1,46 @@
+package vn.poly.tuan2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Delta hoạt động task của một user trong một ngày, ghi cùng transaction với câu ghi task và chờ được gom vào
+ * {@link TaskDailyStats}. openDelta là thay đổi số task PENDING.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "task_activity")
+public class TaskActivity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "stat_date", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "created", nullable = false)
+    private int created;
+
+    @Column(name = "completed", nullable = false)
+    private int completed;
+
+    @Column(name = "open_delta", nullable = false)
+    private int openDelta;
+}
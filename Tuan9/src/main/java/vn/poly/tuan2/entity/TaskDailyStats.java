@@ -0,0 +1,53 @@
+package vn.poly.tuan2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Số task tạo mới, hoàn thành và thay đổi số task PENDING của một user trong một ngày.
+ * Chỉ có ngày có hoạt động mới có dòng.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "task_daily_stats")
+@IdClass(TaskDailyStats.Key.class)
+public class TaskDailyStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate day;
+
+    @Column(name = "created", nullable = false)
+    private long created;
+
+    @Column(name = "completed", nullable = false)
+    private long completed;
+
+    @Column(name = "open_delta", nullable = false)
+    private long openDelta;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private LocalDate day;
+    }
+}
@@ -0,0 +1,45 @@
+package vn.poly.tuan2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Số task của một user theo trạng thái, cộng dồn trong cùng transaction với các câu ghi task.
+ * overdue đếm task PENDING có due_date trước overdueAsOf, không phải trước "hôm nay".
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "task_stats")
+public class TaskStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "pending", nullable = false)
+    private long pending;
+
+    @Column(name = "completed", nullable = false)
+    private long completed;
+
+    @Column(name = "overdue", nullable = false)
+    private long overdue;
+
+    @Column(name = "overdue_as_of", nullable = false)
+    private LocalDate overdueAsOf;
+
+    // Tăng mỗi khi danh sách task của user đổi, làm ETag cho danh sách đó
+    @Column(name = "list_version", nullable = false)
+    private long listVersion;
+}
@@ -0,0 +1,40 @@
+package vn.poly.tuan2.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một lần sửa/xóa user, ghi cùng transaction với câu ghi user. Mọi instance đọc các dòng mới để xóa user đó khỏi
+ * cache của mình (UserDetailsServiceImpl); username là username trước thay đổi, null khi user bị xóa.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "user_change")
+public class UserChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+}
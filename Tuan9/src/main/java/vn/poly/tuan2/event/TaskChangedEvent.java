@@ -0,0 +1,39 @@
+package vn.poly.tuan2.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import vn.poly.tuan2.entity.TaskStatus;
+
+/**
+ * Phát ra sau mỗi thay đổi một task. Trạng thái "old" là null khi tạo mới, "new" là null khi xóa.
+ * Câu ghi nào không đọc dòng cũ thì có oldUserId nhưng oldStatus = null (xem isOldStatusKnown).
+ */
+@Getter
+@AllArgsConstructor
+public class TaskChangedEvent {
+    private final Long taskId;
+    private final Long oldUserId;
+    private final TaskStatus oldStatus;
+    private final Long newUserId;
+    private final TaskStatus newStatus;
+
+    public static TaskChangedEvent created(Long taskId, Long userId, TaskStatus status) {
+        return new TaskChangedEvent(taskId, null, null, userId, status);
+    }
+
+    public static TaskChangedEvent deleted(Long taskId, Long userId, TaskStatus status) {
+        return new TaskChangedEvent(taskId, userId, status, null, null);
+    }
+
+    public boolean isCreated() {
+        return oldStatus == null && oldUserId == null;
+    }
+
+    public boolean isDeleted() {
+        return newStatus == null && newUserId == null;
+    }
+
+    public boolean isOldStatusKnown() {
+        return isCreated() || oldStatus != null;
+    }
+}
@@ -0,0 +1,29 @@
+package vn.poly.tuan2.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Phát ra khi title/description hoặc người được giao của một task thay đổi, cho chỉ mục tìm kiếm.
+ * Đổi trạng thái không phát event này vì chỉ mục không chứa status. version là task.version sau lần ghi,
+ * để chỉ mục không ghi đè bản mới hơn bằng bản cũ.
+ */
+@Getter
+@AllArgsConstructor
+public class TaskContentChangedEvent {
+    private final Long taskId;
+    private final Long userId;
+    private final String title;
+    private final String description;
+    private final Long version;
+    private final boolean deleted;
+
+    public static TaskContentChangedEvent saved(Long taskId, Long userId, String title, String description,
+                                                Long version) {
+        return new TaskContentChangedEvent(taskId, userId, title, description, version, false);
+    }
+
+    public static TaskContentChangedEvent deleted(Long taskId) {
+        return new TaskContentChangedEvent(taskId, null, null, null, null, true);
+    }
+}
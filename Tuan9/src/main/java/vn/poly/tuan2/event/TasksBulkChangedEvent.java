@@ -0,0 +1,23 @@
+package vn.poly.tuan2.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * Phát ra sau một câu UPDATE/DELETE hàng loạt hoặc sau mỗi khối import. Không biết từng task bị ảnh hưởng nên chỉ mang
+ * danh sách user có thể bị ảnh hưởng; userIds null nghĩa là có thể là bất kỳ user nào.
+ */
+@Getter
+@AllArgsConstructor
+public class TasksBulkChangedEvent {
+    public static final String COMPLETE_OVERDUE = "complete-overdue";
+    public static final String DELETE_COMPLETED = "delete-completed";
+    public static final String REASSIGN = "reassign";
+    public static final String IMPORT = "import";
+
+    private final String operation;
+    private final int affected;
+    private final Set<Long> userIds;
+}
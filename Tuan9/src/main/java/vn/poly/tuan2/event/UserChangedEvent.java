@@ -0,0 +1,11 @@
+package vn.poly.tuan2.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+    private final Long userId;
+    private final String username;
+}
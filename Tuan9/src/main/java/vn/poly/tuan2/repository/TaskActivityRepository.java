@@ -0,0 +1,25 @@
+package vn.poly.tuan2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.poly.tuan2.entity.TaskActivity;
+
+import java.time.LocalDate;
+
+@Repository
+public interface TaskActivityRepository extends JpaRepository<TaskActivity, Long> {
+
+    // Chỉ INSERT, không giữ entity trong persistence context; TaskTimeseriesService đọc/xóa bằng JDBC
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into task_activity (user_id, stat_date, created, completed, open_delta) "
+            + "values (:userId, :day, :created, :completed, :openDelta)")
+    int append(@Param("userId") Long userId, @Param("day") LocalDate day, @Param("created") int created,
+               @Param("completed") int completed, @Param("openDelta") int openDelta);
+
+    @Modifying
+    @Query("delete from TaskActivity a where a.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
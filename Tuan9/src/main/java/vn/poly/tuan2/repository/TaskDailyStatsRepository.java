@@ -0,0 +1,24 @@
+package vn.poly.tuan2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.poly.tuan2.entity.TaskDailyStats;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TaskDailyStatsRepository extends JpaRepository<TaskDailyStats, TaskDailyStats.Key> {
+
+    // Quét một khoảng của khóa chính (user_id, stat_date)
+    @Query("select d from TaskDailyStats d where d.userId = :userId and d.day between :from and :to order by d.day")
+    List<TaskDailyStats> findRange(@Param("userId") Long userId, @Param("from") LocalDate from,
+                                   @Param("to") LocalDate to);
+
+    @Modifying
+    @Query("delete from TaskDailyStats d where d.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
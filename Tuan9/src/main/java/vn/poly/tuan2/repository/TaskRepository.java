@@ -1,17 +1,141 @@
 package vn.poly.tuan2.repository;
 
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import vn.poly.tuan2.dto.TaskDto;
 import vn.poly.tuan2.entity.Task;
 import vn.poly.tuan2.entity.TaskStatus; // Import TaskStatus
+import vn.poly.tuan2.entity.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task> {
-    Page<Task> findByAssignedToId(Long assignedToId, Pageable pageable);
-    Page<Task> findByAssignedToIdAndStatus(Long assignedToId, TaskStatus status, Pageable pageable);
-    Page<Task> findByStatus(TaskStatus status, Pageable pageable);
+public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task>, TaskRepositoryCustom {
+
+    // Query cache chỉ dùng cho các câu đếm của TaskCountCache, nơi tổng số vốn đã là xấp xỉ: ghi vào bảng task trên
+    // instance này làm kết quả mất hiệu lực ngay, ghi từ instance khác thì chờ hết TTL của region.
+    // Các câu đếm dùng để sửa task_stats (countByAssigneeStatusDueBetween, ...GroupByAssignee) phải luôn đọc DB.
+    String COUNT_QUERY_CACHE_REGION = "task-count-queries";
+
+    @Query("select new vn.poly.tuan2.dto.TaskDto(t.id, t.title, t.description, t.status, t.dueDate, t.createdAt, u.id, u.username, t.version) " +
+            "from Task t left join t.assignedTo u where t.id = :id")
+    Optional<TaskDto> findDtoById(@Param("id") Long id);
+
+    // Kết quả tìm kiếm full-text: một câu IN cho cả trang, thứ tự xếp hạng do caller sắp lại
+    @Query("select new vn.poly.tuan2.dto.TaskDto(t.id, t.title, t.description, t.status, t.dueDate, t.createdAt, u.id, u.username, t.version) " +
+            "from Task t left join t.assignedTo u where t.id in :ids")
+    List<TaskDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // === Câu lệnh hàng loạt: chạy thẳng trên DB, không nạp entity nào vào persistence context ===
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Task t set t.status = :newStatus, t.completedAt = :completedAt, t.version = t.version + 1 " +
+            "where t.assignedTo.id = :userId and t.status = :oldStatus and t.dueDate < :today")
+    int updateOverdueStatus(@Param("userId") Long userId, @Param("oldStatus") TaskStatus oldStatus,
+                            @Param("newStatus") TaskStatus newStatus, @Param("today") LocalDate today,
+                            @Param("completedAt") LocalDateTime completedAt);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Task t where t.status = :status and t.completedAt < :before")
+    int deleteByStatusCompletedBefore(@Param("status") TaskStatus status, @Param("before") LocalDateTime before);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Task t where t.assignedTo.id = :userId and t.status = :status and t.completedAt < :before")
+    int deleteByAssigneeStatusCompletedBefore(@Param("userId") Long userId, @Param("status") TaskStatus status,
+                                              @Param("before") LocalDateTime before);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Task t set t.assignedTo = :toUser, t.version = t.version + 1 where t.assignedTo.id = :fromUserId")
+    int reassignAll(@Param("fromUserId") Long fromUserId, @Param("toUser") User toUser);
+
+    // === Ghi của chủ sở hữu ===
+
+    // Chỉ ghi khi status thật sự đổi, nên 1 dòng nghĩa là status cũ là giá trị còn lại và không cần đọc task trước;
+    // 0 dòng: task không tồn tại, không thuộc user, hoặc đã ở status đó
+    @Modifying(clearAutomatically = true)
+    @Query("update Task t set t.completedAt = :completedAt, t.status = :status, t.version = t.version + 1 " +
+            "where t.id = :id and t.assignedTo.id = :userId and t.status <> :status")
+    int changeStatusOwned(@Param("id") Long id, @Param("userId") Long userId, @Param("status") TaskStatus status,
+                          @Param("completedAt") LocalDateTime completedAt);
+
+    @Query("select count(t) > 0 from Task t where t.id = :id and t.assignedTo.id = :userId")
+    boolean existsOwned(@Param("id") Long id, @Param("userId") Long userId);
+
+    interface LockedTask {
+        TaskStatus getStatus();
+
+        LocalDate getDueDate();
+
+        LocalDateTime getCompletedAt();
+
+        LocalDateTime getCreatedAt();
+
+        Long getVersion();
+    }
+
+    // Khóa dòng (SELECT ... FOR UPDATE) và đọc trạng thái cũ trước khi ghi, để cập nhật task_stats trong cùng
+    // transaction; chỉ đọc các cột cần, không nạp entity vào persistence context
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t.status as status, t.dueDate as dueDate, t.completedAt as completedAt, t.createdAt as createdAt, " +
+            "t.version as version from Task t where t.id = :id and t.assignedTo.id = :userId")
+    Optional<LockedTask> lockOwned(@Param("id") Long id, @Param("userId") Long userId);
+
+    // Chỉ gọi sau lockOwned trong cùng transaction: dòng đã bị khóa và đã kiểm tra chủ sở hữu
+    @Modifying(clearAutomatically = true)
+    @Query("update Task t set t.title = :title, t.description = :description, t.dueDate = :dueDate, t.status = :status, " +
+            "t.completedAt = :completedAt, t.version = t.version + 1 where t.id = :id")
+    int updateLocked(@Param("id") Long id, @Param("title") String title, @Param("description") String description,
+                     @Param("dueDate") LocalDate dueDate, @Param("status") TaskStatus status,
+                     @Param("completedAt") LocalDateTime completedAt);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Task t where t.id = :id")
+    int deleteLocked(@Param("id") Long id);
+
+    interface UserCount {
+        Long getUserId();
+
+        long getCount();
+    }
+
+    // Số task sẽ bị deleteByStatusCompletedBefore xóa, theo từng user
+    @Query("select t.assignedTo.id as userId, count(t) as count from Task t " +
+            "where t.status = :status and t.completedAt < :before and t.assignedTo.id is not null group by t.assignedTo.id")
+    List<UserCount> countByStatusCompletedBeforeGroupByAssignee(@Param("status") TaskStatus status,
+                                                                @Param("before") LocalDateTime before);
+
+    @Query("select count(t) from Task t where t.assignedTo.id = :userId and t.status = :status " +
+            "and t.dueDate >= :from and t.dueDate < :to")
+    long countByAssigneeStatusDueBetween(@Param("userId") Long userId, @Param("status") TaskStatus status,
+                                         @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Viết tay thay cho countByAssignedToId...: query dẫn xuất LEFT JOIN sang user và lọc trên user.id,
+    // khiến DB không dùng được index (assigned_to_user_id, status, ...) của task
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNT_QUERY_CACHE_REGION)})
+    @Query("select count(t) from Task t where t.assignedTo.id = :userId")
+    long countByAssignedToId(@Param("userId") Long assignedToId);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNT_QUERY_CACHE_REGION)})
+    @Query("select count(t) from Task t where t.assignedTo.id = :userId and t.status = :status")
+    long countByAssignedToIdAndStatus(@Param("userId") Long assignedToId, @Param("status") TaskStatus status);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = COUNT_QUERY_CACHE_REGION)})
+    long countByStatus(TaskStatus status);
 
-}
\ No newline at end of file
+}
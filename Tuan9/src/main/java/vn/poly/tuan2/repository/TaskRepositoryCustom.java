@@ -0,0 +1,42 @@
+package vn.poly.tuan2.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Các truy vấn đọc chiếu thẳng vào TaskDto: một câu SELECT có LEFT JOIN user,
+ * chỉ lấy đúng các cột cần trả về, không tạo entity managed nào.
+ */
+public interface TaskRepositoryCustom {
+
+    List<TaskDto> findDtos(TaskFilter filter, TaskCursor after, Sort sort, int limit);
+
+    Page<TaskDto> findDtoPage(TaskFilter filter, Pageable pageable);
+
+    // Đọc size + 1 dòng để biết hasNext, không chạy COUNT(*)
+    Slice<TaskDto> findDtoSlice(TaskFilter filter, Pageable pageable);
+
+    long countMatching(TaskFilter filter);
+
+    /**
+     * Đọc mọi dòng khớp bộ lọc qua một con trỏ chỉ-đi-tới, mỗi lần lấy fetchSize dòng từ DB.
+     * Phải đóng luồng và đọc hết trong transaction đang mở.
+     */
+    Stream<TaskDto> streamDtos(TaskFilter filter, Sort sort, int fetchSize);
+
+    /**
+     * INSERT hàng loạt qua StatelessSession trên connection của transaction đang mở: không đưa entity vào
+     * persistence context, không dirty-check, và không chạy entity listener nên createdAt phải được gán sẵn.
+     * Id vẫn lấy từ generator của Task; các task được gán id sau khi trả về.
+     */
+    void insertAll(List<Task> tasks, int jdbcBatchSize);
+}
@@ -0,0 +1,209 @@
+package vn.poly.tuan2.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskSorts;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Cây criteria được dựng một lần cho mỗi (hình dạng bộ lọc, sort) rồi cache lại; mỗi request chỉ
+ * createQuery trên cây có sẵn và bind tham số. Cây đã cache không bao giờ được sửa sau khi dựng.
+ */
+class TaskRepositoryImpl implements TaskRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // 0 = tắt cache, dựng lại criteria ở mỗi request
+    @Value("${application.tasks.query-plan-cache.max-size:1000}")
+    private long planCacheMaxSize;
+
+    private Cache<PlanKey, CriteriaQuery<?>> plans;
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class PlanKey {
+        private final boolean count;
+        private final Set<TaskSpecifications.Criterion> shape;
+        private final Sort sort;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (planCacheMaxSize > 0) {
+            plans = Caffeine.newBuilder()
+                    .maximumSize(planCacheMaxSize)
+                    .recordStats()
+                    .build();
+            if (meterRegistry != null) {
+                CaffeineCacheMetrics.monitor(meterRegistry, plans, "task-query-plans");
+            }
+        }
+    }
+
+    @Override
+    public List<TaskDto> findDtos(TaskFilter filter, TaskCursor after, Sort sort, int limit) {
+        return selectQuery(filter, after, sort).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Page<TaskDto> findDtoPage(TaskFilter filter, Pageable pageable) {
+        List<TaskDto> content = selectQuery(filter, null, pageable.getSort())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+        // Trang đầu chưa đầy (hoặc trang cuối) thì tự suy ra total, bỏ qua COUNT(*)
+        return PageableExecutionUtils.getPage(content, pageable, () -> countMatching(filter));
+    }
+
+    @Override
+    public Slice<TaskDto> findDtoSlice(TaskFilter filter, Pageable pageable) {
+        List<TaskDto> rows = selectQuery(filter, null, pageable.getSort())
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+
+    @Override
+    public long countMatching(TaskFilter filter) {
+        Set<TaskSpecifications.Criterion> shape = TaskSpecifications.shapeOf(filter, null);
+        if (shape.isEmpty()) {
+            // count(t.id) buộc quét hết index; COUNT(*) không điều kiện thì DB có đường tắt riêng
+            return entityManager.createQuery("select count(*) from Task t", Long.class).getSingleResult();
+        }
+        @SuppressWarnings("unchecked")
+        CriteriaQuery<Long> criteria = (CriteriaQuery<Long>) plan(new PlanKey(true, shape, Sort.unsorted()),
+                key -> buildCount(shape));
+        return bind(entityManager.createQuery(criteria), filter, null).getSingleResult();
+    }
+
+    @Override
+    public Stream<TaskDto> streamDtos(TaskFilter filter, Sort sort, int fetchSize) {
+        return selectQuery(filter, null, sort)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public void insertAll(List<Task> tasks, int jdbcBatchSize) {
+        Session session = entityManager.unwrap(Session.class);
+        session.doWork(connection -> {
+            try (StatelessSession stateless = session.getSessionFactory().withStatelessOptions()
+                    .connection(connection)
+                    .openStatelessSession()) {
+                stateless.setJdbcBatchSize(jdbcBatchSize);
+                tasks.forEach(stateless::insert);
+            }
+        });
+    }
+
+    private TypedQuery<TaskDto> selectQuery(TaskFilter filter, TaskCursor after, Sort requested) {
+        Set<TaskSpecifications.Criterion> shape = TaskSpecifications.shapeOf(filter, after);
+        Sort sort = TaskSorts.pinned(filter, requested);
+        @SuppressWarnings("unchecked")
+        CriteriaQuery<TaskDto> criteria = (CriteriaQuery<TaskDto>) plan(new PlanKey(false, shape, sort),
+                key -> buildSelect(shape, sort));
+        return bind(entityManager.createQuery(criteria), filter, after);
+    }
+
+    private CriteriaQuery<?> plan(PlanKey key, Function<PlanKey, CriteriaQuery<?>> builder) {
+        return plans != null ? plans.get(key, builder) : builder.apply(key);
+    }
+
+    private static <T> TypedQuery<T> bind(TypedQuery<T> query, TaskFilter filter, TaskCursor after) {
+        for (Map.Entry<String, Object> param : TaskSpecifications.parameters(filter, after, LocalDate.now()).entrySet()) {
+            query.setParameter(param.getKey(), param.getValue());
+        }
+        return query;
+    }
+
+    private CriteriaQuery<TaskDto> buildSelect(Set<TaskSpecifications.Criterion> shape, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TaskDto> query = cb.createQuery(TaskDto.class);
+        Root<Task> task = query.from(Task.class);
+        Join<Task, User> user = task.join("assignedTo", JoinType.LEFT);
+        query.select(cb.construct(TaskDto.class,
+                task.get("id"),
+                task.get("title"),
+                task.get("description"),
+                task.get("status"),
+                task.get("dueDate"),
+                task.get("createdAt"),
+                user.get("id"),
+                user.get("username"),
+                task.get("version")));
+        Predicate predicate = TaskSpecifications.of(shape).toPredicate(task, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(sort.stream().map(order -> toOrder(order, task, cb)).toList());
+        }
+        return query;
+    }
+
+    // Theo đường dẫn trên chính task: "assignedTo.id" là cột khóa ngoại, không tạo thêm join tới user
+    private static Order toOrder(Sort.Order order, Root<Task> task, CriteriaBuilder cb) {
+        Path<?> path = task;
+        for (String attribute : order.getProperty().split("\\.")) {
+            path = path.get(attribute);
+        }
+        return order.isAscending() ? cb.asc(path) : cb.desc(path);
+    }
+
+    private CriteriaQuery<Long> buildCount(Set<TaskSpecifications.Criterion> shape) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Task> task = query.from(Task.class);
+        query.select(cb.count(task));
+        Predicate predicate = TaskSpecifications.of(shape).toPredicate(task, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return query;
+    }
+}
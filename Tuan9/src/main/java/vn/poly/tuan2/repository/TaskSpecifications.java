@@ -0,0 +1,135 @@
+package vn.poly.tuan2.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.ParameterExpression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mỗi điều kiện lọc là một Specification dùng tham số có tên thay vì giá trị, nên cây criteria
+ * chỉ phụ thuộc vào "hình dạng" bộ lọc (điều kiện nào có mặt) và được cache theo hình dạng đó.
+ * Giá trị được bind vào query ở mỗi request bằng {@link #parameters(TaskFilter, TaskCursor, LocalDate)}.
+ */
+public final class TaskSpecifications {
+
+    private TaskSpecifications() {
+    }
+
+    public enum Criterion {
+        ASSIGNEE, STATUSES, DUE_FROM, DUE_TO, CREATED_FROM, CREATED_TO, OVERDUE, TITLE_PREFIX, AFTER_CURSOR
+    }
+
+    public static Set<Criterion> shapeOf(TaskFilter filter, TaskCursor after) {
+        Set<Criterion> shape = EnumSet.noneOf(Criterion.class);
+        if (filter.getAssigneeId() != null) {
+            shape.add(Criterion.ASSIGNEE);
+        }
+        if (filter.effectiveStatuses() != null) {
+            shape.add(Criterion.STATUSES);
+        }
+        if (filter.getDueFrom() != null) {
+            shape.add(Criterion.DUE_FROM);
+        }
+        if (filter.getDueTo() != null) {
+            shape.add(Criterion.DUE_TO);
+        }
+        if (filter.getCreatedFrom() != null) {
+            shape.add(Criterion.CREATED_FROM);
+        }
+        if (filter.getCreatedTo() != null) {
+            shape.add(Criterion.CREATED_TO);
+        }
+        if (filter.isOverdue()) {
+            shape.add(Criterion.OVERDUE);
+        }
+        if (filter.getTitlePrefix() != null && !filter.getTitlePrefix().isEmpty()) {
+            shape.add(Criterion.TITLE_PREFIX);
+        }
+        if (after != null) {
+            shape.add(Criterion.AFTER_CURSOR);
+        }
+        return shape;
+    }
+
+    public static Specification<Task> of(Set<Criterion> shape) {
+        return Specification.allOf(shape.stream().map(TaskSpecifications::of).toList());
+    }
+
+    private static Specification<Task> of(Criterion criterion) {
+        return switch (criterion) {
+            case ASSIGNEE -> (root, query, cb) ->
+                    cb.equal(root.get("assignedTo").get("id"), cb.parameter(Long.class, "assigneeId"));
+            case STATUSES -> (root, query, cb) ->
+                    root.get("status").in(cb.parameter(Collection.class, "statuses"));
+            case DUE_FROM -> (root, query, cb) ->
+                    cb.greaterThanOrEqualTo(root.get("dueDate"), cb.parameter(LocalDate.class, "dueFrom"));
+            case DUE_TO -> (root, query, cb) ->
+                    cb.lessThanOrEqualTo(root.get("dueDate"), cb.parameter(LocalDate.class, "dueTo"));
+            case CREATED_FROM -> (root, query, cb) ->
+                    cb.greaterThanOrEqualTo(root.get("createdAt"), cb.parameter(LocalDateTime.class, "createdFrom"));
+            case CREATED_TO -> (root, query, cb) ->
+                    cb.lessThanOrEqualTo(root.get("createdAt"), cb.parameter(LocalDateTime.class, "createdTo"));
+            case OVERDUE -> (root, query, cb) -> cb.and(
+                    cb.equal(root.get("status"), cb.parameter(TaskStatus.class, "overdueStatus")),
+                    cb.lessThan(root.get("dueDate"), cb.parameter(LocalDate.class, "today")));
+            case TITLE_PREFIX -> (root, query, cb) ->
+                    cb.like(root.get("title"), cb.parameter(String.class, "titlePrefix"), '\\');
+            case AFTER_CURSOR -> TaskSpecifications::after;
+        };
+    }
+
+    /**
+     * Các dòng đứng sau cursor theo thứ tự created_at DESC, id DESC.
+     * Viết dạng created_at <= ? AND (created_at < ? OR id < ?) để DB dùng được range scan
+     * trên index (..., created_at, id) thay vì lọc từng dòng như dạng OR thuần.
+     */
+    private static Predicate after(Root<Task> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        ParameterExpression<LocalDateTime> createdAt = cb.parameter(LocalDateTime.class, "cursorCreatedAt");
+        return cb.and(
+                cb.lessThanOrEqualTo(root.get("createdAt"), createdAt),
+                cb.or(cb.lessThan(root.get("createdAt"), createdAt),
+                        cb.lessThan(root.get("id"), cb.parameter(Long.class, "cursorId"))));
+    }
+
+    public static Map<String, Object> parameters(TaskFilter filter, TaskCursor after, LocalDate today) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (Criterion criterion : shapeOf(filter, after)) {
+            switch (criterion) {
+                case ASSIGNEE -> params.put("assigneeId", filter.getAssigneeId());
+                case STATUSES -> params.put("statuses", filter.effectiveStatuses());
+                case DUE_FROM -> params.put("dueFrom", filter.getDueFrom());
+                case DUE_TO -> params.put("dueTo", filter.getDueTo());
+                case CREATED_FROM -> params.put("createdFrom", filter.getCreatedFrom());
+                case CREATED_TO -> params.put("createdTo", filter.getCreatedTo());
+                case OVERDUE -> {
+                    params.put("overdueStatus", TaskStatus.PENDING);
+                    params.put("today", today);
+                }
+                case TITLE_PREFIX -> params.put("titlePrefix", escapeLike(filter.getTitlePrefix()) + "%");
+                case AFTER_CURSOR -> {
+                    params.put("cursorCreatedAt", after.getCreatedAt());
+                    params.put("cursorId", after.getId());
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,113 @@
+package vn.poly.tuan2.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.poly.tuan2.dto.TaskStatsSummary;
+import vn.poly.tuan2.dto.UserTaskStatsDto;
+import vn.poly.tuan2.entity.TaskStats;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TaskStatsRepository extends JpaRepository<TaskStats, Long> {
+
+    /**
+     * Cộng delta vào dòng của user, tạo dòng nếu chưa có. removedDue/addedDue là due_date của task PENDING vừa
+     * rời/vào bộ đếm (null nếu không có): chúng chỉ được tính vào overdue khi trước overdue_as_of của chính dòng đó,
+     * nên câu ghi vẫn đúng cả khi job rollover chưa chạy tới dòng này. insertOverdue là giá trị khi tạo dòng mới.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+            + "values (:userId, :pending, :completed, :insertOverdue, :today) "
+            + "on duplicate key update pending = pending + values(pending), completed = completed + values(completed), "
+            + "overdue = overdue - case when :removedDue < overdue_as_of then 1 else 0 end "
+            + "+ case when :addedDue < overdue_as_of then 1 else 0 end, list_version = list_version + 1")
+    int addDelta(@Param("userId") Long userId, @Param("pending") long pending, @Param("completed") long completed,
+                 @Param("removedDue") LocalDate removedDue, @Param("addedDue") LocalDate addedDue,
+                 @Param("insertOverdue") long insertOverdue, @Param("today") LocalDate today);
+
+    /**
+     * Task vừa đổi status (changeStatusOwned trả về 1): pending là +1 khi sang PENDING, -1 khi sang COMPLETED.
+     * due_date đọc từ chính dòng task mà câu ghi đó đang khóa, nên không cần đọc task trước khi ghi.
+     * 0 dòng nghĩa là user chưa có dòng bộ đếm, khi đó dùng insertStatusChange.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "update task_stats set pending = pending + :pending, "
+            + "completed = completed - :pending, overdue = overdue + case when "
+            + "(select t.due_date from task t where t.id = :taskId) < overdue_as_of then :pending else 0 end, "
+            + "list_version = list_version + 1 where user_id = :userId")
+    int addStatusChange(@Param("userId") Long userId, @Param("taskId") Long taskId, @Param("pending") long pending);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+            + "select :userId, :pending, -:pending, case when t.due_date < :today then :pending else 0 end, :today "
+            + "from task t where t.id = :taskId "
+            + "on duplicate key update pending = pending + values(pending), completed = completed + values(completed), "
+            + "overdue = overdue + values(overdue), list_version = list_version + 1")
+    int insertStatusChange(@Param("userId") Long userId, @Param("taskId") Long taskId, @Param("pending") long pending,
+                           @Param("today") LocalDate today);
+
+    // Cộng nguyên số đếm (gom theo user khi tạo hàng loạt, chuyển cả dòng khi reassign)
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+            + "values (:userId, :pending, :completed, :overdue, :today) "
+            + "on duplicate key update pending = pending + values(pending), completed = completed + values(completed), "
+            + "overdue = overdue + values(overdue), list_version = list_version + 1")
+    int addCounts(@Param("userId") Long userId, @Param("pending") long pending, @Param("completed") long completed,
+                  @Param("overdue") long overdue, @Param("today") LocalDate today);
+
+    // Danh sách task của user đổi mà số đếm không đổi (sửa tiêu đề, đổi username...)
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+            + "values (:userId, 0, 0, 0, :today) on duplicate key update list_version = list_version + 1")
+    int touch(@Param("userId") Long userId, @Param("today") LocalDate today);
+
+    @Query("select s.listVersion from TaskStats s where s.userId = :userId")
+    Optional<Long> findListVersion(@Param("userId") Long userId);
+
+    // Đọc có khóa (current read) để không lấy nhầm snapshot cũ khi chuyển số đếm sang user khác
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from TaskStats s where s.userId = :userId")
+    Optional<TaskStats> lockByUserId(@Param("userId") Long userId);
+
+    // Sau khi hoàn thành mọi task PENDING có due_date < hôm nay thì không còn task nào quá hạn theo overdue_as_of <= hôm nay
+    @Modifying
+    @Query("update TaskStats s set s.pending = s.pending - :count, s.completed = s.completed + :count, s.overdue = 0, " +
+            "s.listVersion = s.listVersion + 1 where s.userId = :userId")
+    int completeOverdue(@Param("userId") Long userId, @Param("count") long count);
+
+    @Modifying
+    @Query("update TaskStats s set s.completed = s.completed - :count, s.listVersion = s.listVersion + 1 " +
+            "where s.userId = :userId")
+    int removeCompleted(@Param("userId") Long userId, @Param("count") long count);
+
+    // === Analytics: chỉ đọc bảng bộ đếm (một dòng mỗi user), không đụng tới bảng task ===
+
+    // Đọc cả bảng task_stats có chủ đích; TaskAnalyticsService cache kết quả
+    @Query("select new vn.poly.tuan2.dto.TaskStatsSummary(count(s), coalesce(sum(s.pending), 0L), " +
+            "coalesce(sum(s.completed), 0L), coalesce(sum(s.overdue), 0L)) from TaskStats s")
+    TaskStatsSummary summarize();
+
+    // Keyset theo khóa chính, mỗi dòng một lần dò PK của user để lấy username
+    @Query("select new vn.poly.tuan2.dto.UserTaskStatsDto(s.userId, u.username, s.pending, s.completed, s.overdue) " +
+            "from TaskStats s join User u on u.id = s.userId where s.userId > :after order by s.userId")
+    List<UserTaskStatsDto> findUserStatsAfter(@Param("after") long after, Pageable limit);
+
+    @Query("select new vn.poly.tuan2.dto.UserTaskStatsDto(s.userId, u.username, s.pending, s.completed, s.overdue) " +
+            "from TaskStats s join User u on u.id = s.userId where s.overdue > 0 " +
+            "order by s.overdue desc, s.userId desc")
+    List<UserTaskStatsDto> findTopOverdue(Pageable limit);
+
+    @Modifying
+    @Query("update TaskStats s set s.pending = 0, s.completed = 0, s.overdue = 0, s.listVersion = s.listVersion + 1 " +
+            "where s.userId = :userId")
+    int clear(@Param("userId") Long userId);
+}
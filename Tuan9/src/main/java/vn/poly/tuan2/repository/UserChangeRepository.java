@@ -0,0 +1,18 @@
+package vn.poly.tuan2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import vn.poly.tuan2.entity.UserChange;
+
+@Repository
+public interface UserChangeRepository extends JpaRepository<UserChange, Long> {
+
+    // Chỉ INSERT; changed_at lấy giờ của DB để mọi instance so cùng một đồng hồ. UserDetailsServiceImpl đọc/xóa bằng JDBC
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into user_change (user_id, username, changed_at) "
+            + "values (:userId, :username, current_timestamp(6))")
+    int append(@Param("userId") Long userId, @Param("username") String username);
+}
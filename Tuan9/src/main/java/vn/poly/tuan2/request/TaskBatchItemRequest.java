@@ -0,0 +1,30 @@
+package vn.poly.tuan2.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.poly.tuan2.entity.TaskStatus;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TaskBatchItemRequest {
+    @NotBlank(message = "Title cannot be empty")
+    @Size(max = 255, message = "Title cannot exceed 255 characters")
+    private String title;
+
+    @Size(max = 255, message = "Description cannot exceed 255 characters")
+    private String description;
+
+    private TaskStatus status;
+    private LocalDate dueDate;
+
+    // Chỉ admin được giao cho user khác; user thường bỏ trống hoặc truyền id của chính mình
+    private Long assignedToId;
+}
@@ -0,0 +1,86 @@
+package vn.poly.tuan2.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.exception.BadRequestException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Bộ lọc cho các endpoint danh sách task, bind từ query string:
+ * ?statuses=PENDING,COMPLETED&dueFrom=2025-01-01&overdue=true&titlePrefix=Fix...
+ * assigneeId chỉ có tác dụng ở endpoint admin; endpoint của user luôn lọc theo chính user đó.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class TaskFilter {
+
+    // Tham số status cũ, được gộp vào statuses
+    private TaskStatus status;
+    private Set<TaskStatus> statuses;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueTo;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    // PENDING và dueDate đã qua
+    private boolean overdue;
+
+    private String titlePrefix;
+
+    private Long assigneeId;
+
+    public static TaskFilter empty() {
+        return new TaskFilter();
+    }
+
+    public Set<TaskStatus> effectiveStatuses() {
+        if (status == null) {
+            return statuses == null || statuses.isEmpty() ? null : statuses;
+        }
+        Set<TaskStatus> merged = EnumSet.of(status);
+        if (statuses != null) {
+            merged.addAll(statuses);
+        }
+        return merged;
+    }
+
+    // Trạng thái duy nhất nếu bộ lọc chỉ gồm assignee + tối đa một status, dùng được TaskCountCache
+    public boolean isStatusOnly() {
+        Set<TaskStatus> effective = effectiveStatuses();
+        return (effective == null || effective.size() == 1) && dueFrom == null && dueTo == null
+                && createdFrom == null && createdTo == null && !overdue
+                && (titlePrefix == null || titlePrefix.isEmpty());
+    }
+
+    public TaskStatus singleStatus() {
+        Set<TaskStatus> effective = effectiveStatuses();
+        return effective == null ? null : effective.iterator().next();
+    }
+
+    public void validate() {
+        if (dueFrom != null && dueTo != null && dueFrom.isAfter(dueTo)) {
+            throw new BadRequestException("dueFrom must not be after dueTo");
+        }
+        if (createdFrom != null && createdTo != null && createdFrom.isAfter(createdTo)) {
+            throw new BadRequestException("createdFrom must not be after createdTo");
+        }
+    }
+}
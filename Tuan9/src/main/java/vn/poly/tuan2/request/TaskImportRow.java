@@ -0,0 +1,36 @@
+package vn.poly.tuan2.request;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.poly.tuan2.entity.TaskStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Một dòng của file import. Giao task theo username thay vì id để nạp được dữ liệu từ hệ thống khác;
+ * assignedToUsername được chấp nhận để file export của chính ứng dụng nạp lại được.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TaskImportRow {
+    @NotBlank(message = "Title cannot be empty")
+    @Size(max = 255, message = "Title cannot exceed 255 characters")
+    private String title;
+
+    @Size(max = 255, message = "Description cannot exceed 255 characters")
+    private String description;
+
+    private TaskStatus status;
+    private LocalDate dueDate;
+
+    // Bỏ trống: task không giao cho ai
+    @JsonAlias("assignedToUsername")
+    private String assignee;
+}
@@ -0,0 +1,11 @@
+package vn.poly.tuan2.request;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import vn.poly.tuan2.entity.TaskStatus;
+
+@Data
+public class TaskStatusRequest {
+    @NotNull(message = "Status cannot be null")
+    private TaskStatus status;
+}
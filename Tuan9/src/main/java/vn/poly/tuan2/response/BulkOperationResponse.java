@@ -0,0 +1,13 @@
+package vn.poly.tuan2.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkOperationResponse {
+    private String operation;
+    private int affected;
+}
@@ -0,0 +1,28 @@
+package vn.poly.tuan2.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import vn.poly.tuan2.dto.TaskDto;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchResponse {
+    private int created;
+    private int failed;
+    private List<Item> items;
+
+    // Kết quả theo đúng thứ tự phần tử trong request
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private int index;
+        private boolean success;
+        private String message;
+        private TaskDto task;
+    }
+}
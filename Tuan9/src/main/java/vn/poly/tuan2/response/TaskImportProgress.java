@@ -0,0 +1,35 @@
+package vn.poly.tuan2.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một dòng trong response NDJSON của import: "progress" sau mỗi khối đã commit, "error" cho từng dòng bị bỏ qua
+ * (line là số dòng trong file), "done" ở cuối. Các số đếm là cộng dồn từ đầu file.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskImportProgress {
+    public static final String PROGRESS = "progress";
+    public static final String ERROR = "error";
+    public static final String DONE = "done";
+
+    private String type;
+    private Long line;
+    private String message;
+    private Long rows;
+    private Long imported;
+    private Long failed;
+
+    public static TaskImportProgress error(long line, String message) {
+        return new TaskImportProgress(ERROR, line, message, null, null, null);
+    }
+
+    public static TaskImportProgress totals(String type, long rows, long imported, long failed) {
+        return new TaskImportProgress(type, null, null, rows, imported, failed);
+    }
+}
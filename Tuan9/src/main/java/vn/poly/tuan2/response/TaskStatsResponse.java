@@ -0,0 +1,16 @@
+package vn.poly.tuan2.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskStatsResponse {
+    private Long userId;
+    private long pending;
+    private long completed;
+    private long overdue;
+    private long total;
+}
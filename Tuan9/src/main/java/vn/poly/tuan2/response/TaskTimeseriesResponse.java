@@ -0,0 +1,30 @@
+package vn.poly.tuan2.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskTimeseriesResponse {
+    private Long userId;
+    private String granularity;
+    private LocalDate from;
+    private LocalDate to;
+    private List<Point> points;
+
+    // Một điểm cho mỗi ngày/tuần/tháng trong khoảng, kể cả khi không có hoạt động
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Point {
+        private LocalDate start;
+        private long created;
+        private long completed;
+        private long openDelta;
+    }
+}
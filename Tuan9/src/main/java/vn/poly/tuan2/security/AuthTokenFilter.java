@@ -1,4 +1,7 @@
 package vn.poly.tuan2.security;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,32 +18,90 @@ import org.springframework.web.filter.OncePerRequestFilter;
 import vn.poly.tuan2.service.UserDetailsServiceImpl;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter xác thực JWT duy nhất của ứng dụng. Chỉ được đăng ký trong SecurityFilterChain
+ * (xem SecurityConfig), bỏ qua các route permitAll và ghi thời gian từng bước
+ * (parse header, verify token, dựng principal) vào metric auth.filter.stage.
+ */
 public class AuthTokenFilter extends OncePerRequestFilter {
+    private static final String[] PUBLIC_PATH_PREFIXES = {"/api/auth/", "/v3/api-docs", "/swagger-ui"};
+
+    private static final WebAuthenticationDetailsSource DETAILS_SOURCE = new WebAuthenticationDetailsSource();
+
     @Autowired
     private JwtUtils jwtUtils;
 
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
 
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Timer parseTimer;
+    private Timer verifyTimer;
+    private Timer principalTimer;
+
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+    @Override
+    protected void initFilterBean() {
+        if (meterRegistry != null) {
+            parseTimer = stageTimer("parse");
+            verifyTimer = stageTimer("verify");
+            principalTimer = stageTimer("principal");
+        }
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("auth.filter.stage")
+                .description("Time spent in each step of JWT authentication")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String prefix : PUBLIC_PATH_PREFIXES) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
+            long start = System.nanoTime();
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null,
-                                userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            start = record(parseTimer, start);
+            if (jwt != null) {
+                Claims claims = jwtUtils.verifyAndExtract(jwt);
+                start = record(verifyTimer, start);
+                if (claims != null) {
+                    UserDetails userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+                    // User bị sửa/xóa sau khi token được cấp (trên instance này hoặc instance khác): nạp lại từ DB
+                    if (userDetails instanceof UserDetailsImpl fromClaims
+                            && userDetailsService.changedSince(fromClaims.getId(), claims.getIssuedAt())) {
+                        userDetails = null;
+                    }
+                    if (userDetails == null) {
+                        userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                    }
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(
+                                    userDetails,
+                                    null,
+                                    userDetails.getAuthorities());
+                    authentication.setDetails(DETAILS_SOURCE.buildDetails(request));
+
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    record(principalTimer, start);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e.getMessage());
@@ -49,6 +110,14 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private static long record(Timer timer, long start) {
+        long now = System.nanoTime();
+        if (timer != null) {
+            timer.record(now - start, TimeUnit.NANOSECONDS);
+        }
+        return now;
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
 
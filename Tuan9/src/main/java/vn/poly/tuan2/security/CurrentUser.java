@@ -0,0 +1,49 @@
+package vn.poly.tuan2.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.exception.ResourceNotFoundException;
+import vn.poly.tuan2.repository.UserRepository;
+
+/**
+ * Truy cập user đang đăng nhập của request hiện tại. Đọc từ principal mà AuthTokenFilter
+ * đã đặt vào SecurityContext nên không cần truy vấn lại bảng user.
+ */
+@Component
+public class CurrentUser {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    public UserDetailsImpl getPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = authentication != null ? authentication.getPrincipal() : null;
+        if (principal instanceof UserDetailsImpl userDetails) {
+            return userDetails;
+        }
+        if (principal instanceof UserDetails userDetails) {
+            String username = userDetails.getUsername();
+            User currentUser = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new ResourceNotFoundException("Current user not found with username: " + username));
+            return UserDetailsImpl.build(currentUser);
+        }
+        throw new RuntimeException("User not authenticated or user ID not found.");
+    }
+
+    public Long getId() {
+        return getPrincipal().getId();
+    }
+
+    public String getUsername() {
+        return getPrincipal().getUsername();
+    }
+
+    // Proxy chưa khởi tạo, chỉ dùng để gán khóa ngoại assigned_to_user_id
+    public User getReference() {
+        return userRepository.getReferenceById(getId());
+    }
+}
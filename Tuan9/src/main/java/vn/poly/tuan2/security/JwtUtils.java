@@ -1,56 +1,115 @@
 package vn.poly.tuan2.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.crypto.SecretKey;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_EMAIL = "email";
+    public static final String CLAIM_ROLES = "roles";
+
     @Value("${application.security.jwt.secret-key}")
     private String jwtSecret;
 
     @Value("${application.security.jwt.expiration}")
     private int jwtExpirationMs;
 
+    @Value("${application.security.jwt.claims-auth.enabled:true}")
+    private boolean claimsAuthEnabled;
+
+    // Sau khoảng thời gian này kể từ lúc cấp token, filter sẽ đọc lại user từ DB để nhận thay đổi role
+    @Value("${application.security.jwt.claims-auth.max-staleness:300000}")
+    private long claimsMaxStalenessMs;
+
+    @Value("${application.security.jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    @Value("${application.security.jwt.verified-cache.ttl:600000}")
+    private long verifiedCacheTtlMs;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private SecretKey key;
+    private JwtParser parser;
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
+        parser = Jwts.parser().verifyWith(key).build();
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new VerifiedTokenExpiry())
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt.verified-tokens");
+        }
+    }
+
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+        List<String> roles = userPrincipal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList();
+        Date now = new Date();
         return Jwts.builder()
                 .subject((userPrincipal.getUsername()))
-                .issuedAt(new Date())
-                .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key())
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_EMAIL, userPrincipal.getEmail())
+                .claim(CLAIM_ROLES, roles)
+                .issuedAt(now)
+                .expiration(new Date(now.getTime() + jwtExpirationMs))
+                .signWith(key)
                 .compact();
     }
 
-    private SecretKey key() {
-        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecret));
-    }
-
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith(key())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload().getSubject();
-    }
-
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Kiểm tra chữ ký, hạn dùng và trả về claims của token trong một lần parse.
+     * Token đã verify được cache theo SHA-256 digest cho tới khi hết hạn, nên client gửi lại
+     * cùng một token sẽ không phải tính lại HMAC và parse JSON. Trả về null nếu token không hợp lệ.
+     */
+    public Claims verifyAndExtract(String token) {
+        if (token == null || token.isEmpty()) {
+            logger.error("JWT claims string is empty");
+            return null;
+        }
+        String digest = digest(token);
+        Claims cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return cached;
+        }
         try {
-            Jwts.parser()
-                    .verifyWith(key())
-                    .build()
-                    .parse(authToken);
-            return true;
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            verifiedTokens.put(digest, claims);
+            return claims;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
         } catch (ExpiredJwtException e) {
@@ -59,7 +118,85 @@ public class JwtUtils {
             logger.error("JWT token is unsupported: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            logger.error("Invalid JWT signature: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    public String getUserNameFromJwtToken(String token) {
+        Claims claims = verifyAndExtract(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    public UserDetailsImpl getUserDetailsFromJwtToken(String token) {
+        Claims claims = verifyAndExtract(token);
+        return claims != null ? getUserDetailsFromClaims(claims) : null;
+    }
+
+    /**
+     * Dựng principal trực tiếp từ claims đã verify, không truy vấn DB.
+     * Trả về null khi chế độ claims bị tắt, token cũ hơn max-staleness hoặc thiếu claims
+     * (token cấp trước khi có chế độ này) - khi đó filter phải tự load user từ DB.
+     */
+    public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+        if (!claimsAuthEnabled) {
+            return null;
+        }
+        Date issuedAt = claims.getIssuedAt();
+        if (issuedAt == null || System.currentTimeMillis() - issuedAt.getTime() > claimsMaxStalenessMs) {
+            return null;
+        }
+        Long id = claims.get(CLAIM_USER_ID, Long.class);
+        List<?> roles = claims.get(CLAIM_ROLES, List.class);
+        if (id == null || roles == null) {
+            return null;
+        }
+        return UserDetailsImpl.build(id, claims.getSubject(), claims.get(CLAIM_EMAIL, String.class),
+                roles.stream().map(String::valueOf).toList());
+    }
+
+    public boolean validateJwtToken(String authToken) {
+        return verifyAndExtract(authToken) != null;
+    }
+
+    public long getVerifiedCacheHitCount() {
+        return verifiedTokens.stats().hitCount();
+    }
+
+    public long getVerifiedCacheMissCount() {
+        return verifiedTokens.stats().missCount();
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] hash = sha256.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private class VerifiedTokenExpiry implements Expiry<String, Claims> {
+        @Override
+        public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+            long ttlMs = verifiedCacheTtlMs;
+            Date expiration = claims.getExpiration();
+            if (expiration != null) {
+                ttlMs = Math.min(ttlMs, expiration.getTime() - System.currentTimeMillis());
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(ttlMs, 0));
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
-}
\ No newline at end of file
+}
@@ -2,7 +2,6 @@ package vn.poly.tuan2.security;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
-import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -10,22 +9,25 @@ import vn.poly.tuan2.entity.User;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Getter
-@Setter
 public class UserDetailsImpl implements UserDetails {
     private static final long serialVersionUID = 1L;
 
-    private Long id;
-    private String username;
-    private String email;
+    // Số tổ hợp role rất nhỏ nên mỗi danh sách authority chỉ được tạo một lần và dùng chung
+    private static final Map<List<String>, List<GrantedAuthority>> AUTHORITY_LISTS = new ConcurrentHashMap<>();
+
+    private final Long id;
+    private final String username;
+    private final String email;
 
     @JsonIgnore
-    private String password;
+    private final String password;
 
-    private Collection<? extends GrantedAuthority> authorities;
+    private final Collection<? extends GrantedAuthority> authorities;
     public UserDetailsImpl(Long id, String username, String email, String password,
                            Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
@@ -35,9 +37,9 @@ public class UserDetailsImpl implements UserDetails {
         this.authorities = authorities;
     }
     public static UserDetailsImpl build(User user) {
-        List<GrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
-                .collect(Collectors.toList());
+        List<GrantedAuthority> authorities = authoritiesOf(user.getRoles().stream()
+                .map(role -> "ROLE_" + role.name())
+                .toList());
 
         return new UserDetailsImpl(
                 user.getId(),
@@ -47,6 +49,17 @@ public class UserDetailsImpl implements UserDetails {
                 authorities);
     }
 
+    public static UserDetailsImpl build(Long id, String username, String email, Collection<String> authorityNames) {
+        return new UserDetailsImpl(id, username, email, null, authoritiesOf(authorityNames));
+    }
+
+    static List<GrantedAuthority> authoritiesOf(Collection<String> authorityNames) {
+        List<String> key = authorityNames.stream().sorted().toList();
+        return AUTHORITY_LISTS.computeIfAbsent(key, names -> names.stream()
+                .map(name -> (GrantedAuthority) new SimpleGrantedAuthority(name))
+                .toList());
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return authorities;
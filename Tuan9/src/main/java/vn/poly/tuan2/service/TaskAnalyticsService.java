@@ -0,0 +1,155 @@
+package vn.poly.tuan2.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.poly.tuan2.dto.CursorPage;
+import vn.poly.tuan2.dto.TaskStatsSummary;
+import vn.poly.tuan2.dto.UserTaskStatsDto;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.event.TaskChangedEvent;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+import vn.poly.tuan2.util.CacheLoads;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Số liệu cho admin, đọc từ bảng bộ đếm task_stats (một dòng mỗi user) thay vì GROUP BY trên bảng task.
+ * Tổng toàn hệ thống được cộng/trừ theo sự kiện thay đổi task và chỉ đọc lại cả bảng bộ đếm sau refresh-after;
+ * top quá hạn được cache theo TTL ngắn.
+ */
+@Service
+public class TaskAnalyticsService {
+
+    public static final int MAX_TOP = 100;
+
+    private static final String SUMMARY_KEY = "all";
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${application.tasks.analytics.summary-refresh-after:30000}")
+    private long summaryRefreshAfterMs;
+
+    @Value("${application.tasks.analytics.top-overdue-ttl:30000}")
+    private long topOverdueTtlMs;
+
+    // Lần nạp đầu chạy trên thread gọi (xem CacheLoads), loader của summary chỉ dùng cho refresh
+    private AsyncLoadingCache<String, TaskStatsSummary> summary;
+    private AsyncCache<Integer, List<UserTaskStatsDto>> topOverdue;
+
+    @PostConstruct
+    public void init() {
+        summary = Caffeine.newBuilder()
+                .maximumSize(1)
+                .refreshAfterWrite(Duration.ofMillis(summaryRefreshAfterMs))
+                .recordStats()
+                .buildAsync(key -> taskStatsRepository.summarize());
+        topOverdue = Caffeine.newBuilder()
+                .maximumSize(MAX_TOP)
+                .expireAfterWrite(Duration.ofMillis(topOverdueTtlMs))
+                .recordStats()
+                .buildAsync();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, summary, "task-analytics-summary");
+            CaffeineCacheMetrics.monitor(meterRegistry, topOverdue, "task-analytics-top-overdue");
+        }
+    }
+
+    public TaskStatsSummary getSummary() {
+        return CacheLoads.get(summary, SUMMARY_KEY, key -> taskStatsRepository.summarize());
+    }
+
+    public List<UserTaskStatsDto> getTopOverdue(int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_TOP));
+        return CacheLoads.get(topOverdue, size, key -> taskStatsRepository.findTopOverdue(PageRequest.of(0, key)));
+    }
+
+    // Cursor là userId cuối của trang trước
+    public CursorPage<UserTaskStatsDto> getUserStats(String cursor, int size) {
+        long after = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                after = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+        }
+        List<UserTaskStatsDto> rows = taskStatsRepository.findUserStatsAfter(after, PageRequest.of(0, size + 1));
+        boolean hasNext = rows.size() > size;
+        List<UserTaskStatsDto> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? String.valueOf(pageRows.get(pageRows.size() - 1).getUserId()) : null;
+        return new CursorPage<>(pageRows, size, hasNext, nextCursor);
+    }
+
+    // overdue không đổi theo sự kiện đơn lẻ (sự kiện không mang due_date): chờ lần refresh kế tiếp
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChanged(TaskChangedEvent event) {
+        if (!event.isOldStatusKnown()) {
+            summary.synchronous().invalidate(SUMMARY_KEY);
+            return;
+        }
+        long pending = 0;
+        long completed = 0;
+        if (!event.isCreated() && event.getOldUserId() != null) {
+            pending -= event.getOldStatus() == TaskStatus.PENDING ? 1 : 0;
+            completed -= event.getOldStatus() == TaskStatus.COMPLETED ? 1 : 0;
+        }
+        if (!event.isDeleted() && event.getNewUserId() != null) {
+            pending += event.getNewStatus() == TaskStatus.PENDING ? 1 : 0;
+            completed += event.getNewStatus() == TaskStatus.COMPLETED ? 1 : 0;
+        }
+        adjust(pending, completed, 0);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTasksBulkChanged(TasksBulkChangedEvent event) {
+        int affected = event.getAffected();
+        switch (event.getOperation()) {
+            case TasksBulkChangedEvent.COMPLETE_OVERDUE -> adjust(-affected, affected, -affected);
+            case TasksBulkChangedEvent.DELETE_COMPLETED -> {
+                // Bản toàn hệ thống xóa cả task chưa giao cho ai, không có trong task_stats: đọc lại thay vì trừ sai
+                if (event.getUserIds() != null) {
+                    adjust(0, -affected, 0);
+                } else {
+                    summary.synchronous().invalidate(SUMMARY_KEY);
+                }
+            }
+            // Sự kiện không mang số task theo status: đọc lại sau khối import
+            case TasksBulkChangedEvent.IMPORT -> summary.synchronous().invalidate(SUMMARY_KEY);
+            default -> {
+                // reassign chỉ chuyển số đếm giữa các user
+            }
+        }
+    }
+
+    // Sau khi sửa bộ đếm ngoài luồng sự kiện (reconcile)
+    public void invalidateAll() {
+        summary.synchronous().invalidateAll();
+        topOverdue.synchronous().invalidateAll();
+    }
+
+    // Chỉ sửa giá trị đã có trong cache; chưa có thì lần đọc tới sẽ tính từ bảng
+    private void adjust(long pending, long completed, long overdue) {
+        if (pending == 0 && completed == 0 && overdue == 0) {
+            return;
+        }
+        CacheLoads.computeIfPresent(summary, SUMMARY_KEY, (key, value) -> new TaskStatsSummary(value.getUsers(),
+                value.getPending() + pending, value.getCompleted() + completed,
+                Math.max(0, value.getOverdue() + overdue)));
+    }
+}
@@ -0,0 +1,401 @@
+package vn.poly.tuan2.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.event.TaskChangedEvent;
+import vn.poly.tuan2.event.TaskContentChangedEvent;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.exception.ResourceNotFoundException;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.request.TaskBatchItemRequest;
+import vn.poly.tuan2.request.TaskImportRow;
+import vn.poly.tuan2.response.TaskBatchResponse;
+import vn.poly.tuan2.response.TaskImportProgress;
+import vn.poly.tuan2.security.CurrentUser;
+import vn.poly.tuan2.security.UserDetailsImpl;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Tạo task hàng loạt: batch JSON của /batch (một transaction, persist theo khối JDBC batch) và import file của admin
+ * (mỗi khối một transaction, chèn bằng TaskRepository.insertAll). Cả hai validate từng item, ghi bộ đếm task_stats
+ * một lần cho cả khối và phát sự kiện cho chỉ mục tìm kiếm như khi tạo từng task.
+ */
+@Service
+public class TaskBatchService {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatsService taskStatsService;
+
+    @Autowired
+    private TaskImporter taskImporter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private Validator validator;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${application.tasks.batch.max-items:10000}")
+    private int batchMaxItems;
+
+    @Value("${application.tasks.import.batch-size:5000}")
+    private int importBatchSize;
+
+    @Value("${application.tasks.import.assignee-cache-size:10000}")
+    private int importAssigneeCacheSize;
+
+    @Transactional
+    public TaskBatchResponse createTasks(List<TaskBatchItemRequest> items) {
+        checkBatchSize(items);
+        UserDetailsImpl owner = currentUser.getPrincipal();
+        User ownerRef = userRepository.getReferenceById(owner.getId());
+        return createInBatches(items, item -> {
+            if (item.getAssignedToId() != null && !item.getAssignedToId().equals(owner.getId())) {
+                throw new ResourceNotFoundException("You can only assign tasks to yourself.");
+            }
+            return ownerRef;
+        }, user -> owner.getUsername());
+    }
+
+    @Transactional
+    public TaskBatchResponse createTasksByAdmin(List<TaskBatchItemRequest> items) {
+        checkBatchSize(items);
+        Set<Long> assigneeIds = items.stream()
+                .filter(Objects::nonNull)
+                .map(TaskBatchItemRequest::getAssignedToId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // Một câu SELECT cho tất cả assignee thay vì findById từng item
+        Map<Long, User> assignees = userRepository.findAllById(assigneeIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return createInBatches(items, item -> {
+            if (item.getAssignedToId() == null) {
+                return null;
+            }
+            User user = assignees.get(item.getAssignedToId());
+            if (user == null) {
+                throw new ResourceNotFoundException("Assigned user not found with ID: " + item.getAssignedToId());
+            }
+            return user;
+        }, User::getUsername);
+    }
+
+    private void checkBatchSize(List<TaskBatchItemRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BadRequestException("Batch must contain at least one task");
+        }
+        if (items.size() > batchMaxItems) {
+            throw new BadRequestException("Batch cannot exceed " + batchMaxItems + " tasks");
+        }
+    }
+
+    /**
+     * Item lỗi validate được ghi lại theo index, item hợp lệ được persist theo từng khối jdbcBatchSize
+     * rồi flush + clear để mỗi khối đi thành một JDBC batch và persistence context không phình ra.
+     */
+    private TaskBatchResponse createInBatches(List<TaskBatchItemRequest> items,
+                                              Function<TaskBatchItemRequest, User> assigneeResolver,
+                                              Function<User, String> usernameOf) {
+        TaskBatchResponse.Item[] results = new TaskBatchResponse.Item[items.size()];
+        List<Integer> pendingIndexes = new ArrayList<>(jdbcBatchSize);
+        List<Task> pending = new ArrayList<>(jdbcBatchSize);
+        List<TaskChangedEvent> events = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (int i = 0; i < items.size(); i++) {
+            TaskBatchItemRequest item = items.get(i);
+            String error = validate(item);
+            User assignee = null;
+            if (error == null) {
+                try {
+                    assignee = assigneeResolver.apply(item);
+                } catch (ResourceNotFoundException e) {
+                    error = e.getMessage();
+                }
+            }
+            if (error != null) {
+                results[i] = new TaskBatchResponse.Item(i, false, error, null);
+                continue;
+            }
+            TaskStatus status = item.getStatus() != null ? item.getStatus() : TaskStatus.PENDING;
+            Task task = Task.builder()
+                    .title(item.getTitle())
+                    .description(item.getDescription())
+                    .status(status)
+                    .dueDate(item.getDueDate())
+                    .completedAt(TaskService.completedAt(null, null, status, now))
+                    .assignedTo(assignee)
+                    .build();
+            entityManager.persist(task);
+            pendingIndexes.add(i);
+            pending.add(task);
+            if (pending.size() == jdbcBatchSize) {
+                flushBatch(pendingIndexes, pending, results, events, usernameOf);
+            }
+        }
+        flushBatch(pendingIndexes, pending, results, events, usernameOf);
+        List<TaskDto> created = Arrays.stream(results)
+                .filter(TaskBatchResponse.Item::isSuccess)
+                .map(TaskBatchResponse.Item::getTask)
+                .toList();
+        taskStatsService.tasksAdded(created);
+        events.forEach(eventPublisher::publishEvent);
+        for (TaskDto task : created) {
+            eventPublisher.publishEvent(TaskContentChangedEvent.saved(task.getId(), task.getAssignedToId(),
+                    task.getTitle(), task.getDescription(), task.getVersion()));
+        }
+
+        return new TaskBatchResponse(created.size(), items.size() - created.size(), Arrays.asList(results));
+    }
+
+    private void flushBatch(List<Integer> pendingIndexes, List<Task> pending, TaskBatchResponse.Item[] results,
+                            List<TaskChangedEvent> events, Function<User, String> usernameOf) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        for (int j = 0; j < pending.size(); j++) {
+            Task task = pending.get(j);
+            User assignee = task.getAssignedTo();
+            Long assigneeId = assignee != null ? assignee.getId() : null;
+            TaskDto dto = TaskDto.builder()
+                    .id(task.getId())
+                    .title(task.getTitle())
+                    .description(task.getDescription())
+                    .status(task.getStatus())
+                    .dueDate(task.getDueDate())
+                    .createdAt(task.getCreatedAt())
+                    .assignedToId(assigneeId)
+                    .assignedToUsername(assignee != null ? usernameOf.apply(assignee) : null)
+                    .version(task.getVersion())
+                    .build();
+            results[pendingIndexes.get(j)] = new TaskBatchResponse.Item(pendingIndexes.get(j), true, null, dto);
+            events.add(TaskChangedEvent.created(task.getId(), assigneeId, task.getStatus()));
+        }
+        entityManager.clear();
+        pendingIndexes.clear();
+        pending.clear();
+    }
+
+    private <T> String validate(T item) {
+        if (item == null) {
+            return "Task cannot be null";
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    // Đọc trước dòng tiêu đề CSV: file sai cấu trúc bị từ chối với 400 trước khi response bắt đầu
+    public TaskImporter.Rows openImport(TaskExportFormat format, InputStream in) throws IOException {
+        return taskImporter.open(format, in);
+    }
+
+    /**
+     * Nhập task từ file của admin. Dòng hợp lệ được gom thành khối import.batch-size, mỗi khối ghi trong một
+     * transaction riêng nên lỗi ở một khối không làm mất các khối đã commit. Tiến độ sau mỗi khối và lỗi của từng
+     * dòng được ghi ra out ngay (NDJSON); bộ nhớ chỉ gồm một khối và cache username -> id có giới hạn.
+     *
+     * @return dòng done cuối cùng
+     */
+    public TaskImportProgress importTasks(TaskImporter.Rows rows, OutputStream out) throws IOException {
+        Cache<String, Optional<Long>> assigneeIds = Caffeine.newBuilder()
+                .maximumSize(importAssigneeCacheSize)
+                .build();
+        List<TaskImporter.Row> batch = new ArrayList<>(importBatchSize);
+        long read = 0;
+        long imported = 0;
+        long failed = 0;
+        try (TaskImporter.Report report = taskImporter.report(out)) {
+            TaskImporter.Row row;
+            while ((row = rows.next()) != null) {
+                read++;
+                String error = row.getError() != null ? row.getError() : validate(row.getTask());
+                if (error != null) {
+                    report.write(TaskImportProgress.error(row.getLine(), error));
+                    failed++;
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == importBatchSize) {
+                    int written = importBatch(batch, assigneeIds, report);
+                    imported += written;
+                    failed += batch.size() - written;
+                    batch.clear();
+                    report.write(TaskImportProgress.totals(TaskImportProgress.PROGRESS, read, imported, failed));
+                    report.flush();
+                }
+            }
+            if (!batch.isEmpty()) {
+                int written = importBatch(batch, assigneeIds, report);
+                imported += written;
+                failed += batch.size() - written;
+            }
+            TaskImportProgress done = TaskImportProgress.totals(TaskImportProgress.DONE, read, imported, failed);
+            report.write(done);
+            return done;
+        }
+    }
+
+    // Một câu SELECT cho các username chưa có trong cache (kể cả username không tồn tại), rồi một transaction
+    private int importBatch(List<TaskImporter.Row> batch, Cache<String, Optional<Long>> assigneeIds,
+                            TaskImporter.Report report) throws IOException {
+        Map<String, Optional<Long>> resolved = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (TaskImporter.Row row : batch) {
+            String username = assigneeOf(row);
+            if (username != null && !resolved.containsKey(username)) {
+                Optional<Long> cached = assigneeIds.getIfPresent(username);
+                if (cached != null) {
+                    resolved.put(username, cached);
+                } else {
+                    missing.add(username);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Long> found = new HashMap<>();
+            for (Object[] user : userRepository.findIdsByUsernameIn(missing)) {
+                found.put((String) user[0], (Long) user[1]);
+            }
+            for (String username : missing) {
+                Optional<Long> id = Optional.ofNullable(found.get(username));
+                resolved.put(username, id);
+                assigneeIds.put(username, id);
+            }
+        }
+
+        List<TaskImporter.Row> valid = new ArrayList<>(batch.size());
+        for (TaskImporter.Row row : batch) {
+            String username = assigneeOf(row);
+            if (username != null && resolved.get(username).isEmpty()) {
+                report.write(TaskImportProgress.error(row.getLine(), "Assigned user not found: " + username));
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeImportBatch(valid, resolved));
+            return valid.size();
+        } catch (DataAccessException e) {
+            // Ví dụ assignee vừa bị xóa: cả khối đã rollback
+            for (TaskImporter.Row row : valid) {
+                report.write(TaskImportProgress.error(row.getLine(),
+                        "Batch failed: " + e.getMostSpecificCause().getMessage()));
+            }
+            return 0;
+        }
+    }
+
+    private void writeImportBatch(List<TaskImporter.Row> rows, Map<String, Optional<Long>> assigneeIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Task> tasks = new ArrayList<>(rows.size());
+        for (TaskImporter.Row row : rows) {
+            TaskImportRow item = row.getTask();
+            String username = assigneeOf(row);
+            TaskStatus status = item.getStatus() != null ? item.getStatus() : TaskStatus.PENDING;
+            Task task = Task.builder()
+                    .title(item.getTitle())
+                    .description(item.getDescription())
+                    .status(status)
+                    .dueDate(item.getDueDate())
+                    .createdAt(now)
+                    .completedAt(TaskService.completedAt(null, null, status, now))
+                    .assignedTo(username != null
+                            ? entityManager.getReference(User.class, assigneeIds.get(username).get()) : null)
+                    .build();
+            tasks.add(task);
+        }
+        taskRepository.insertAll(tasks, jdbcBatchSize);
+        List<TaskDto> created = new ArrayList<>(tasks.size());
+        Set<Long> userIds = new HashSet<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            Long assigneeId = task.getAssignedTo() != null ? task.getAssignedTo().getId() : null;
+            created.add(TaskDto.builder()
+                    .id(task.getId())
+                    .title(task.getTitle())
+                    .description(task.getDescription())
+                    .status(task.getStatus())
+                    .dueDate(task.getDueDate())
+                    .assignedToId(assigneeId)
+                    .assignedToUsername(assigneeOf(rows.get(i)))
+                    .version(task.getVersion())
+                    .build());
+            if (assigneeId != null) {
+                userIds.add(assigneeId);
+            }
+        }
+        taskStatsService.tasksAdded(created);
+        // Một sự kiện hàng loạt cho cả khối thay vì một TaskChangedEvent cho mỗi task
+        eventPublisher.publishEvent(new TasksBulkChangedEvent(TasksBulkChangedEvent.IMPORT, created.size(), userIds));
+        for (TaskDto task : created) {
+            eventPublisher.publishEvent(TaskContentChangedEvent.saved(task.getId(), task.getAssignedToId(),
+                    task.getTitle(), task.getDescription(), task.getVersion()));
+        }
+    }
+
+    private static String assigneeOf(TaskImporter.Row row) {
+        String username = row.getTask().getAssignee();
+        return username == null || username.isBlank() ? null : username.trim();
+    }
+}
@@ -0,0 +1,104 @@
+package vn.poly.tuan2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.exception.ResourceNotFoundException;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.response.BulkOperationResponse;
+import vn.poly.tuan2.security.CurrentUser;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Thao tác hàng loạt: mỗi phương thức là một câu UPDATE/DELETE có điều kiện, rồi cập nhật task_stats trong cùng
+ * transaction và phát một TasksBulkChangedEvent cho cả thao tác thay vì một sự kiện cho mỗi task.
+ */
+@Service
+public class TaskBulkService {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatsService taskStatsService;
+
+    @Transactional
+    public BulkOperationResponse completeOverdueTasksForCurrentUser() {
+        return completeOverdueTasks(currentUser.getId());
+    }
+
+    @Transactional
+    public BulkOperationResponse deleteCompletedTasksForCurrentUser(int olderThanDays) {
+        Long userId = currentUser.getId();
+        int affected = taskRepository.deleteByAssigneeStatusCompletedBefore(userId, TaskStatus.COMPLETED,
+                cutoff(olderThanDays));
+        taskStatsService.completedRemoved(userId, affected);
+        return bulkResult(TasksBulkChangedEvent.DELETE_COMPLETED, affected, Set.of(userId));
+    }
+
+    @Transactional
+    public BulkOperationResponse completeOverdueTasks(Long userId) {
+        int affected = taskRepository.updateOverdueStatus(userId, TaskStatus.PENDING, TaskStatus.COMPLETED,
+                LocalDate.now(), LocalDateTime.now());
+        taskStatsService.overdueCompleted(userId, affected);
+        return bulkResult(TasksBulkChangedEvent.COMPLETE_OVERDUE, affected, Set.of(userId));
+    }
+
+    @Transactional
+    public BulkOperationResponse deleteCompletedTasks(int olderThanDays) {
+        LocalDateTime before = cutoff(olderThanDays);
+        // Đếm theo user trước khi xóa để trừ đúng dòng task_stats của từng user
+        List<TaskRepository.UserCount> perUser = taskRepository.countByStatusCompletedBeforeGroupByAssignee(
+                TaskStatus.COMPLETED, before);
+        int affected = taskRepository.deleteByStatusCompletedBefore(TaskStatus.COMPLETED, before);
+        perUser.forEach(count -> taskStatsService.completedRemoved(count.getUserId(), count.getCount()));
+        return bulkResult(TasksBulkChangedEvent.DELETE_COMPLETED, affected, null);
+    }
+
+    @Transactional
+    public BulkOperationResponse reassignTasks(Long fromUserId, Long toUserId) {
+        if (fromUserId.equals(toUserId)) {
+            throw new BadRequestException("Source and target users must be different");
+        }
+        if (!userRepository.existsById(toUserId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + toUserId);
+        }
+        int affected = taskRepository.reassignAll(fromUserId, userRepository.getReferenceById(toUserId));
+        if (affected > 0) {
+            taskStatsService.reassigned(fromUserId, toUserId);
+        }
+        return bulkResult(TasksBulkChangedEvent.REASSIGN, affected, Set.of(fromUserId, toUserId));
+    }
+
+    private static LocalDateTime cutoff(int olderThanDays) {
+        if (olderThanDays < 0) {
+            throw new BadRequestException("olderThanDays must not be negative");
+        }
+        return LocalDateTime.now().minusDays(olderThanDays);
+    }
+
+    private BulkOperationResponse bulkResult(String operation, int affected, Set<Long> userIds) {
+        if (affected > 0) {
+            eventPublisher.publishEvent(new TasksBulkChangedEvent(operation, affected, userIds));
+        }
+        return new BulkOperationResponse(operation, affected);
+    }
+}
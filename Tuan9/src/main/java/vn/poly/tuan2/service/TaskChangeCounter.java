@@ -0,0 +1,72 @@
+package vn.poly.tuan2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.poly.tuan2.event.TaskChangedEvent;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.event.UserChangedEvent;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * ETag yếu cho các danh sách task, để lần poll không có gì mới trả 304 mà không cần chạy câu truy vấn trang.
+ * ETag danh sách của một user là task_stats.list_version, được tăng trong cùng transaction với mọi câu ghi làm đổi
+ * danh sách đó (TaskStatsService), nên mọi instance đọc cùng một giá trị bằng một lần dò khóa chính.
+ * Danh sách toàn cục (admin) không có phiên bản chung như vậy, vì một dòng đếm cho cả bảng sẽ bắt mọi câu ghi task
+ * chờ nhau. Bộ đếm của nó nằm trong bộ nhớ instance, nên chỉ dùng khi
+ * application.tasks.list-etag.single-instance=true; mặc định danh sách toàn cục không có ETag.
+ */
+@Component
+public class TaskChangeCounter {
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Value("${application.tasks.list-etag.single-instance:false}")
+    private boolean singleInstance;
+
+    // Epoch theo lần khởi động giúp ETag toàn cục cũ không bao giờ khớp sau restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+
+    // null khi user chưa có dòng bộ đếm: danh sách đó không được cache có điều kiện
+    public String userListETag(Long userId) {
+        return taskStatsRepository.findListVersion(userId)
+                .map(version -> "W/\"u" + userId + "-" + version + "\"")
+                .orElse(null);
+    }
+
+    /**
+     * TaskService gọi trong cùng transaction readOnly với trang, trước câu truy vấn trang. notModified là
+     * WebRequest::checkNotModified: true nghĩa là client đã có bản mới nhất, khi đó phương thức danh sách trả về null
+     * mà không truy vấn. Thay đổi chen giữa lần đọc ETag và trang chỉ làm lần poll sau nhận 200.
+     */
+    public boolean userListNotModified(Long userId, Predicate<String> notModified) {
+        return notModified.test(userListETag(userId));
+    }
+
+    // null trừ khi chạy một instance: khi đó checkNotModified luôn trả false
+    public String globalListETag() {
+        return singleInstance ? "W/\"all-" + epoch + "-" + sequence.get() + "\"" : null;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChanged(TaskChangedEvent event) {
+        sequence.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTasksBulkChanged(TasksBulkChangedEvent event) {
+        sequence.incrementAndGet();
+    }
+
+    // assignedToUsername nằm trong mọi TaskDto của user
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        sequence.incrementAndGet();
+    }
+}
@@ -0,0 +1,139 @@
+package vn.poly.tuan2.service;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.event.TaskChangedEvent;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.util.CacheLoads;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Tổng số task theo (user, status) cho các response dạng Slice.
+ * Giá trị được đếm một lần, sau đó cộng/trừ theo TaskChangedEvent và được đếm lại
+ * bất đồng bộ sau refresh-after, nên các lần đọc sau chỉ là xấp xỉ.
+ */
+@Component
+public class TaskCountCache {
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${application.tasks.count-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${application.tasks.count-cache.refresh-after:60000}")
+    private long refreshAfterMs;
+
+    // Loader chỉ dùng cho refresh bất đồng bộ; lần đếm đầu chạy trên thread gọi (xem CacheLoads)
+    private AsyncLoadingCache<CountKey, Long> counts;
+
+    @Getter
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    static class CountKey {
+        private final Long userId;
+        private final TaskStatus status;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Total {
+        private final long value;
+        private final boolean exact;
+    }
+
+    @PostConstruct
+    public void init() {
+        counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(Duration.ofMillis(refreshAfterMs))
+                .expireAfterAccess(Duration.ofMillis(refreshAfterMs * 10))
+                .recordStats()
+                .buildAsync(this::countFromDatabase);
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, counts, "task-counts");
+        }
+    }
+
+    public Total total(Long userId, TaskStatus status) {
+        CountKey key = new CountKey(userId, status);
+        Long cached = counts.synchronous().getIfPresent(key);
+        if (cached != null) {
+            return new Total(cached, false);
+        }
+        return new Total(CacheLoads.get(counts, key, this::countFromDatabase), true);
+    }
+
+    private long countFromDatabase(CountKey key) {
+        if (key.getUserId() == null) {
+            return key.getStatus() == null ? taskRepository.count() : taskRepository.countByStatus(key.getStatus());
+        }
+        return key.getStatus() == null
+                ? taskRepository.countByAssignedToId(key.getUserId())
+                : taskRepository.countByAssignedToIdAndStatus(key.getUserId(), key.getStatus());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskChanged(TaskChangedEvent event) {
+        if (!event.isOldStatusKnown()) {
+            invalidateUsers(Set.of(event.getOldUserId()));
+            return;
+        }
+        if (!event.isCreated()) {
+            adjust(event.getOldUserId(), event.getOldStatus(), -1);
+        }
+        if (!event.isDeleted()) {
+            adjust(event.getNewUserId(), event.getNewStatus(), 1);
+        }
+    }
+
+    // Câu lệnh hàng loạt không cho biết từng (user, status) thay đổi bao nhiêu: đếm lại các key liên quan
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTasksBulkChanged(TasksBulkChangedEvent event) {
+        if (event.getUserIds() == null) {
+            invalidateAll();
+        } else {
+            invalidateUsers(event.getUserIds());
+        }
+    }
+
+    // Key của các user này và mọi key toàn cục (userId = null)
+    private void invalidateUsers(Set<Long> userIds) {
+        counts.asMap().keySet().removeIf(key -> key.getUserId() == null || userIds.contains(key.getUserId()));
+    }
+
+    public void invalidateAll() {
+        counts.synchronous().invalidateAll();
+    }
+
+    private void adjust(Long userId, TaskStatus status, long delta) {
+        adjust(new CountKey(null, null), delta);
+        adjust(new CountKey(null, status), delta);
+        if (userId != null) {
+            adjust(new CountKey(userId, null), delta);
+            adjust(new CountKey(userId, status), delta);
+        }
+    }
+
+    // Chỉ cập nhật key đã có trong cache; key chưa có sẽ được đếm mới khi được hỏi tới
+    private void adjust(CountKey key, long delta) {
+        CacheLoads.computeIfPresent(counts, key, (k, value) -> Math.max(0, value + delta));
+    }
+}
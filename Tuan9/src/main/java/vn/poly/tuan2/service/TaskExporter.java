@@ -0,0 +1,132 @@
+package vn.poly.tuan2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Ghi lần lượt từng TaskDto của luồng ra NDJSON (một object JSON mỗi dòng) hoặc CSV (RFC 4180, có dòng tiêu đề)
+ * và flush sau mỗi flushEvery dòng. Không giữ lại dòng nào đã ghi nên bộ nhớ không phụ thuộc số dòng.
+ * export đọc các dòng bằng con trỏ của TaskRepository.streamDtos; endpoint của admin gọi thẳng, endpoint của user
+ * đi qua TaskService để giới hạn bộ lọc trong task của chính họ.
+ */
+@Component
+public class TaskExporter {
+
+    private static final String CSV_HEADER = "id,title,description,status,dueDate,createdAt,assignedToId,"
+            + "assignedToUsername,version";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Value("${application.tasks.export.flush-every:1000}")
+    private int flushEvery;
+
+    @Value("${application.tasks.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Ghi thẳng mọi task khớp bộ lọc (đã validate) ra out, mới nhất trước; connection được giữ tới khi ghi xong dòng
+     * cuối. Trên MySQL cần useCursorFetch=true để fetch size có hiệu lực thay vì driver đọc cả kết quả vào heap.
+     *
+     * @return số dòng đã ghi
+     */
+    @Transactional(readOnly = true)
+    public long export(TaskFilter filter, TaskExportFormat format, OutputStream out) throws IOException {
+        try (Stream<TaskDto> rows = taskRepository.streamDtos(filter, TaskCursor.SORT, fetchSize)) {
+            return write(rows, format, out);
+        }
+    }
+
+    /**
+     * @return số dòng đã ghi (không tính dòng tiêu đề CSV)
+     */
+    public long write(Stream<TaskDto> rows, TaskExportFormat format, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        long written = format == TaskExportFormat.CSV ? writeCsv(rows.iterator(), writer)
+                : writeNdjson(rows.iterator(), writer);
+        writer.flush();
+        return written;
+    }
+
+    private long writeNdjson(Iterator<TaskDto> rows, Writer writer) throws IOException {
+        ObjectWriter valueWriter = objectMapper.writerFor(TaskDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        long written = 0;
+        while (rows.hasNext()) {
+            valueWriter.writeValue(generator, rows.next());
+            generator.writeRaw('\n');
+            if (++written % flushEvery == 0) {
+                generator.flush();
+            }
+        }
+        generator.close();
+        return written;
+    }
+
+    private long writeCsv(Iterator<TaskDto> rows, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write("\r\n");
+        long written = 0;
+        while (rows.hasNext()) {
+            TaskDto task = rows.next();
+            writeField(writer, task.getId(), false);
+            writeField(writer, task.getTitle(), true);
+            writeField(writer, task.getDescription(), true);
+            writeField(writer, task.getStatus(), true);
+            writeField(writer, task.getDueDate(), true);
+            writeField(writer, task.getCreatedAt(), true);
+            writeField(writer, task.getAssignedToId(), true);
+            writeField(writer, task.getAssignedToUsername(), true);
+            writeField(writer, task.getVersion(), true);
+            writer.write("\r\n");
+            if (++written % flushEvery == 0) {
+                writer.flush();
+            }
+        }
+        return written;
+    }
+
+    // null là ô rỗng; ô có dấu phẩy, ngoặc kép hoặc xuống dòng được bọc trong ngoặc kép
+    private static void writeField(Writer writer, Object value, boolean separator) throws IOException {
+        if (separator) {
+            writer.write(',');
+        }
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
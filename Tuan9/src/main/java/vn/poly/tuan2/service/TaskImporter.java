@@ -0,0 +1,345 @@
+package vn.poly.tuan2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.request.TaskImportRow;
+import vn.poly.tuan2.response.TaskImportProgress;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc dần file import NDJSON (một object JSON mỗi dòng) hoặc CSV (RFC 4180, dòng đầu là tiêu đề cột) thành
+ * từng TaskImportRow. Mỗi lần chỉ giữ một dòng, dòng dài quá max-row-length bị bỏ qua thay vì đọc hết vào
+ * bộ nhớ, nên file lớn bao nhiêu cũng được. Dòng sai định dạng trả về kèm lỗi, không làm dừng cả file.
+ * Report ghi tiến độ và lỗi ra response dạng NDJSON.
+ */
+@Component
+public class TaskImporter {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${application.tasks.import.max-row-length:65536}")
+    private int maxRowLength;
+
+    public interface Rows {
+        /**
+         * @return dòng kế tiếp, null khi hết file
+         */
+        Row next() throws IOException;
+    }
+
+    // task null thì error là lý do dòng này bị bỏ qua
+    @Getter
+    @AllArgsConstructor
+    public static class Row {
+        private final long line;
+        private final TaskImportRow task;
+        private final String error;
+    }
+
+    /**
+     * Với CSV, dòng tiêu đề được đọc ngay tại đây để thiếu cột title thì báo 400 trước khi ghi response.
+     */
+    public Rows open(TaskExportFormat format, InputStream in) throws IOException {
+        CharSource source = new CharSource(new InputStreamReader(in, StandardCharsets.UTF_8));
+        if (format == TaskExportFormat.CSV) {
+            return new CsvRows(source);
+        }
+        ObjectReader reader = objectMapper.readerFor(TaskImportRow.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        return new NdjsonRows(source, reader);
+    }
+
+    public Report report(OutputStream out) throws IOException {
+        return new Report(out);
+    }
+
+    // Ghi các dòng TaskImportProgress ra response, mỗi object một dòng
+    public class Report implements Closeable {
+        private final JsonGenerator generator;
+        private final ObjectWriter writer = objectMapper.writerFor(TaskImportProgress.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        Report(OutputStream out) throws IOException {
+            generator = objectMapper.getFactory().createGenerator(
+                    new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8 * 1024));
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+        }
+
+        public void write(TaskImportProgress progress) throws IOException {
+            writer.writeValue(generator, progress);
+            generator.writeRaw('\n');
+        }
+
+        // Sau mỗi khối, để client thấy tiến độ trong lúc file vẫn đang được gửi lên
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    // Đọc theo khối thay vì BufferedReader.read() từng ký tự (mỗi lần gọi lấy lock)
+    private static class CharSource {
+        private final Reader reader;
+        private final char[] buffer = new char[64 * 1024];
+        private int position;
+        private int limit;
+        private long line = 1;
+
+        CharSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            char c = buffer[position++];
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+
+    private class NdjsonRows implements Rows {
+        private final CharSource source;
+        private final ObjectReader reader;
+        private final StringBuilder text = new StringBuilder(256);
+
+        NdjsonRows(CharSource source, ObjectReader reader) {
+            this.source = source;
+            this.reader = reader;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            while (true) {
+                long line = source.line;
+                text.setLength(0);
+                boolean tooLong = false;
+                int c;
+                while ((c = source.read()) >= 0 && c != '\n') {
+                    if (text.length() < maxRowLength) {
+                        text.append((char) c);
+                    } else {
+                        tooLong = true;
+                    }
+                }
+                if (tooLong) {
+                    return new Row(line, null, "Row exceeds " + maxRowLength + " characters");
+                }
+                if (!text.isEmpty() && text.charAt(text.length() - 1) == '\r') {
+                    text.setLength(text.length() - 1);
+                }
+                String json = text.toString();
+                if (!json.isBlank()) {
+                    return parse(line, json);
+                }
+                if (c < 0) {
+                    return null;
+                }
+            }
+        }
+
+        private Row parse(long line, String json) {
+            try {
+                return new Row(line, reader.readValue(json), null);
+            } catch (MismatchedInputException e) {
+                List<JsonMappingException.Reference> path = e.getPath();
+                if (path.isEmpty() || path.get(path.size() - 1).getFieldName() == null) {
+                    return new Row(line, null, "Row must be a JSON object");
+                }
+                return new Row(line, null, "Invalid value for " + path.get(path.size() - 1).getFieldName());
+            } catch (JsonProcessingException e) {
+                return new Row(line, null, "Malformed JSON");
+            }
+        }
+    }
+
+    private class CsvRows implements Rows {
+        private final CharSource source;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder(256);
+        private int title = -1;
+        private int description = -1;
+        private int status = -1;
+        private int dueDate = -1;
+        private int assignee = -1;
+        private long recordLine;
+        private String recordError;
+
+        CsvRows(CharSource source) throws IOException {
+            this.source = source;
+            if (!readRecord()) {
+                return;
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < fields.size(); i++) {
+                // File CSV lưu từ Excel có BOM ở đầu
+                columns.putIfAbsent(fields.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (recordError != null || !columns.containsKey("title")) {
+                throw new BadRequestException("CSV header must contain a title column");
+            }
+            title = columns.get("title");
+            description = columns.getOrDefault("description", -1);
+            status = columns.getOrDefault("status", -1);
+            dueDate = columns.getOrDefault("duedate", -1);
+            assignee = columns.getOrDefault("assignee", columns.getOrDefault("assignedtousername", -1));
+        }
+
+        @Override
+        public Row next() throws IOException {
+            if (title < 0) {
+                return null;
+            }
+            while (readRecord()) {
+                if (recordError != null) {
+                    return new Row(recordLine, null, recordError);
+                }
+                // Dòng trống
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue;
+                }
+                return toRow();
+            }
+            return null;
+        }
+
+        private Row toRow() {
+            TaskStatus rowStatus = null;
+            String statusText = field(status);
+            if (statusText != null) {
+                try {
+                    rowStatus = TaskStatus.valueOf(statusText.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    return new Row(recordLine, null, "Invalid value for status");
+                }
+            }
+            LocalDate rowDueDate = null;
+            String dueDateText = field(dueDate);
+            if (dueDateText != null) {
+                try {
+                    rowDueDate = LocalDate.parse(dueDateText.trim());
+                } catch (DateTimeParseException e) {
+                    return new Row(recordLine, null, "Invalid value for dueDate");
+                }
+            }
+            return new Row(recordLine, new TaskImportRow(field(title), field(description), rowStatus, rowDueDate,
+                    field(assignee)), null);
+        }
+
+        // Ô rỗng hoặc thiếu (dòng ít cột hơn tiêu đề) là null
+        private String field(int index) {
+            if (index < 0 || index >= fields.size() || fields.get(index).isEmpty()) {
+                return null;
+            }
+            return fields.get(index);
+        }
+
+        /**
+         * Đọc một bản ghi vào fields; ô trong ngoặc kép được phép chứa dấu phẩy, "" và xuống dòng.
+         *
+         * @return false khi hết file
+         */
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            recordLine = source.line;
+            recordError = null;
+            int length = 0;
+            boolean quoted = false;
+            boolean afterQuote = false;
+            int c = source.read();
+            if (c < 0) {
+                return false;
+            }
+            for (; c >= 0; c = source.read()) {
+                if (++length > maxRowLength && recordError == null) {
+                    recordError = "Row exceeds " + maxRowLength + " characters";
+                }
+                if (quoted) {
+                    if (c == '"') {
+                        quoted = false;
+                        afterQuote = true;
+                    } else {
+                        append(c);
+                    }
+                    continue;
+                }
+                if (c == '"') {
+                    // "" trong ô có ngoặc kép là một dấu ngoặc kép
+                    if (afterQuote) {
+                        append(c);
+                    }
+                    quoted = true;
+                    afterQuote = false;
+                    continue;
+                }
+                afterQuote = false;
+                if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    append(c);
+                }
+            }
+            if (quoted && recordError == null) {
+                recordError = "Unterminated quoted field";
+            }
+            fields.add(field.toString());
+            return true;
+        }
+
+        private void append(int c) {
+            if (recordError == null) {
+                field.append((char) c);
+            }
+        }
+    }
+}
@@ -0,0 +1,630 @@
+package vn.poly.tuan2.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import vn.poly.tuan2.dto.SliceResponse;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.event.TaskContentChangedEvent;
+import vn.poly.tuan2.event.TasksBulkChangedEvent;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.repository.TaskRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Chỉ mục full-text (Lucene) trên title và description của task, lưu ở application.tasks.search.index-dir
+ * (để trống thì giữ trong bộ nhớ). Mỗi instance có chỉ mục riêng: instance ghi cập nhật ngay sau commit từ
+ * TaskContentChangedEvent, các instance khác đánh chỉ mục lại từ DB khi đọc bảng task_change (pollTaskChanges),
+ * nên thay đổi ở instance khác hiện ra sau tối đa một poll-interval. Reader được ControlledRealTimeReopenThread
+ * mở lại nên thay đổi hiện ra trong kết quả sau tối đa max-staleness.
+ * Chỉ mục chỉ giữ id, người được giao và phần văn bản; task được nạp lại từ DB theo id khi trả kết quả (findTasks),
+ * nên dòng bị xóa bởi câu DELETE hàng loạt chỉ để lại id thừa và được dọn khi search gặp phải.
+ */
+@Component
+public class TaskSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TaskSearchIndex.class);
+
+    // Giống max_result_window của Elasticsearch: trang sâu hơn thì nên thu hẹp từ khóa
+    public static final int MAX_WINDOW = 10_000;
+
+    private static final String ID = "id";
+    private static final String OWNER = "owner";
+    private static final String TITLE = "title";
+    private static final String DESCRIPTION = "description";
+    // Mỗi lần rebuild gắn một mã mới; cuối lần rebuild, document không mang mã đó là rác và bị xóa
+    private static final String GENERATION = "generation";
+    // task.version của bản đã đánh chỉ mục: bản đọc từ DB trước đó (khối rebuild, sự kiện tới muộn) không ghi đè được
+    private static final String VERSION = "version";
+
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(TITLE, 2f, DESCRIPTION, 1f);
+    private static final int REBUILD_CHUNK = 1000;
+    private static final String SELECT_ROWS_SQL = "SELECT id, assigned_to_user_id, title, description, version FROM task ";
+    private static final String APPEND_CHANGE_SQL = "INSERT INTO task_change (task_id, user_id, changed_at) "
+            + "VALUES (?, ?, CURRENT_TIMESTAMP(6))";
+
+    // Quét bảng task theo khối bằng JDBC: không cần entity hay persistence context cho việc đánh chỉ mục
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Value("${application.tasks.search.index-dir:}")
+    private String indexDir;
+
+    @Value("${application.tasks.search.max-staleness:1000}")
+    private long maxStalenessMs;
+
+    @Value("${application.tasks.search.commit-interval:60000}")
+    private long commitIntervalMs;
+
+    @Value("${application.tasks.search.rebuild-on-startup:false}")
+    private boolean rebuildOnStartup;
+
+    // Mỗi lần đọc task_change lùi lại khoảng này so với lần trước, để không bỏ sót dòng của transaction commit chậm
+    @Value("${application.tasks.search.changes.overlap:30000}")
+    private long changesOverlapMs;
+
+    @Value("${application.tasks.search.changes.retention:86400000}")
+    private long changesRetentionMs;
+
+    private final Analyzer analyzer = createAnalyzer();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile String generation = UUID.randomUUID().toString();
+    // Tra version rồi ghi phải liền một khối, nếu không hai lần ghi cùng task chen nhau vẫn để lại bản cũ
+    private final Object writeLock = new Object();
+    // Khóa của danh sách dòng task_change chờ ghi trong transaction hiện tại
+    private final Object pendingChangesKey = new Object();
+
+    // Dòng task_change đã xử lý, để các lần đọc chồng lấn không đánh chỉ mục lại cùng một thay đổi nhiều lần
+    private com.github.benmanes.caffeine.cache.Cache<Long, Boolean> seenChanges;
+
+    // Giờ của DB ở lần đọc task_change trước
+    private volatile Timestamp changesReadAt;
+
+    // Version vừa ghi từ sự kiện sau commit, theo id (Long.MAX_VALUE: đã xóa), cho tới khi reader chắc chắn đã thấy
+    private com.github.benmanes.caffeine.cache.Cache<Long, Long> recentVersions;
+
+    private Directory directory;
+    private IndexWriter writer;
+    private SearcherManager searcherManager;
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+    private ScheduledExecutorService executor;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Hits {
+        // Theo thứ tự điểm giảm dần
+        private final List<Long> ids;
+        private final long total;
+        private final boolean exact;
+    }
+
+    // Một dòng task đọc từ DB để đánh chỉ mục
+    private record Row(Long id, Long userId, String title, String description, long version) {
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir));
+        writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        searcherManager = new SearcherManager(writer, null);
+        double maxStaleSec = maxStalenessMs / 1000.0;
+        reopenThread = new ControlledRealTimeReopenThread<>(writer, searcherManager, maxStaleSec,
+                Math.min(0.1, maxStaleSec));
+        reopenThread.setName("task-search-reopen");
+        reopenThread.setDaemon(true);
+        reopenThread.start();
+        // Một luồng cho commit định kỳ, rebuild và reindex sau reassign
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::commit, commitIntervalMs, commitIntervalMs, TimeUnit.MILLISECONDS);
+        seenChanges = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(2 * changesOverlapMs))
+                .build();
+        // Luồng reopen mở lại reader chậm nhất max-staleness sau một lần ghi; giữ lâu hơn hẳn khoảng đó
+        recentVersions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(10 * maxStalenessMs + 10_000))
+                .build();
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        reopenThread.close();
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    // Chỉ mục trống khi cold start (thư mục mới) nhưng DB đã có task: dựng lại từ DB
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        boolean coldStart = writer.getDocStats().numDocs == 0
+                && !jdbcTemplate.queryForList("SELECT id FROM task LIMIT 1", Long.class).isEmpty();
+        if (rebuildOnStartup || coldStart) {
+            rebuildAsync();
+        }
+    }
+
+    /**
+     * Lucene xếp hạng và trả id của trang, sau đó một câu IN nạp TaskDto rồi sắp lại theo thứ hạng.
+     * Id không còn trong DB (bị xóa hàng loạt) được gỡ khỏi chỉ mục; task vừa reassign mà chỉ mục chưa
+     * cập nhật bị bỏ qua, vì quyền sở hữu luôn kiểm lại trên dòng DB. userId null: task của mọi user.
+     */
+    public SliceResponse<TaskDto> findTasks(String query, Long userId, int page, int size) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Search query must not be blank");
+        }
+        if (page < 0 || (long) (page + 1) * size > MAX_WINDOW) {
+            throw new BadRequestException("Search results are limited to the first " + MAX_WINDOW
+                    + " matches; refine the query");
+        }
+        Hits hits = search(query, userId, page * size, size);
+        Map<Long, TaskDto> rows = hits.getIds().isEmpty() ? Map.of()
+                : taskRepository.findDtosByIdIn(hits.getIds()).stream()
+                .collect(Collectors.toMap(TaskDto::getId, Function.identity()));
+        List<TaskDto> ranked = new ArrayList<>(hits.getIds().size());
+        List<Long> stale = new ArrayList<>();
+        for (Long id : hits.getIds()) {
+            TaskDto task = rows.get(id);
+            if (task == null) {
+                stale.add(id);
+            } else if (userId == null || userId.equals(task.getAssignedToId())) {
+                ranked.add(task);
+            }
+        }
+        if (!stale.isEmpty()) {
+            remove(stale);
+        }
+        boolean hasNext = (long) (page + 1) * size < hits.getTotal();
+        return new SliceResponse<>(ranked, page, size, hasNext, hits.getTotal(), hits.isExact());
+    }
+
+    public Hits search(String text, Long userId, int offset, int limit) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query parsed = parser.parse(text);
+        if (parsed == null) {
+            return new Hits(List.of(), 0, true);
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder().add(parsed, BooleanClause.Occur.MUST);
+        if (userId != null) {
+            query.add(new TermQuery(new Term(OWNER, userId.toString())), BooleanClause.Occur.FILTER);
+        }
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs top = searcher.search(query.build(), offset + limit);
+                StoredFields storedFields = searcher.storedFields();
+                List<Long> ids = new ArrayList<>(limit);
+                for (int i = offset; i < top.scoreDocs.length; i++) {
+                    ids.add(Long.valueOf(storedFields.document(top.scoreDocs[i].doc, Set.of(ID)).get(ID)));
+                }
+                return new Hits(ids, top.totalHits.value, top.totalHits.relation == TotalHits.Relation.EQUAL_TO);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Id trả về từ chỉ mục nhưng không còn trong DB
+    private void remove(Collection<Long> taskIds) {
+        try {
+            for (Long taskId : taskIds) {
+                writer.deleteDocuments(new Term(ID, taskId.toString()));
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to prune {} stale task(s) from the search index", taskIds.size(), e);
+        }
+    }
+
+    // Sự kiện tới sau bản mới hơn (ghi từ task_change hay rebuild) thì bỏ qua
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTaskContentChanged(TaskContentChangedEvent event) {
+        Long taskId = event.getTaskId();
+        try {
+            synchronized (writeLock) {
+                if (event.isDeleted()) {
+                    writer.deleteDocuments(new Term(ID, taskId.toString()));
+                    recentVersions.put(taskId, Long.MAX_VALUE);
+                    return;
+                }
+                Long indexed = indexedVersions(List.of(taskId)).get(taskId);
+                if (indexed == null || indexed < event.getVersion()) {
+                    upsert(new Row(taskId, event.getUserId(), event.getTitle(), event.getDescription(),
+                            event.getVersion()));
+                    recentVersions.put(taskId, event.getVersion());
+                }
+            }
+        } catch (IOException e) {
+            // Request đã commit, không làm nó thất bại; chỉ mục lệch được sửa bằng rebuild
+            logger.error("Failed to index task {}", event.getTaskId(), e);
+        }
+    }
+
+    // Chỉ reassign làm đổi nội dung chỉ mục (owner); đổi trạng thái không liên quan, xóa hàng loạt được dọn khi search
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTasksBulkChanged(TasksBulkChangedEvent event) {
+        if (isReassign(event)) {
+            Set<Long> userIds = event.getUserIds();
+            executor.execute(() -> reindexUsers(userIds));
+        }
+    }
+
+    // Chạy trong transaction ghi task, lúc publish: thay đổi chỉ vào task_change nếu transaction commit
+    @EventListener
+    public void recordTaskContentChange(TaskContentChangedEvent event) {
+        recordChange(event.getTaskId(), null);
+    }
+
+    @EventListener
+    public void recordTasksBulkChange(TasksBulkChangedEvent event) {
+        if (isReassign(event)) {
+            event.getUserIds().forEach(userId -> recordChange(null, userId));
+        }
+    }
+
+    /**
+     * Đọc các dòng task_change mới và đánh chỉ mục lại các task/user đó từ DB, kể cả dòng do chính instance này ghi
+     * (ghi lại cùng nội dung, vô hại). Đọc bằng JdbcTemplate ngoài transaction nên luôn đọc primary. Dòng được lọc
+     * theo changed_at (giờ của DB) từ lần đọc trước lùi lại overlap, như UserDetailsServiceImpl.pollUserChanges.
+     */
+    @Scheduled(fixedDelayString = "${application.tasks.search.changes.poll-interval:1000}")
+    public void pollTaskChanges() {
+        Timestamp now = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(6)", Timestamp.class);
+        Timestamp since = new Timestamp((changesReadAt != null ? changesReadAt : now).getTime() - changesOverlapMs);
+        Set<Long> taskIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        jdbcTemplate.query("SELECT id, task_id, user_id FROM task_change WHERE changed_at >= ?",
+                rs -> {
+                    if (seenChanges.asMap().putIfAbsent(rs.getLong("id"), Boolean.TRUE) == null) {
+                        Long taskId = rs.getObject("task_id", Long.class);
+                        if (taskId != null) {
+                            taskIds.add(taskId);
+                        } else {
+                            userIds.add(rs.getLong("user_id"));
+                        }
+                    }
+                }, since);
+        try {
+            reindexTasks(taskIds);
+        } catch (IOException e) {
+            logger.error("Failed to reindex {} changed task(s)", taskIds.size(), e);
+        }
+        if (!userIds.isEmpty()) {
+            executor.execute(() -> reindexUsers(userIds));
+        }
+        changesReadAt = now;
+    }
+
+    // Mọi instance cùng chạy; DELETE theo điều kiện nên chạy trùng cũng không sao
+    @Scheduled(fixedDelayString = "${application.tasks.search.changes.purge-interval:3600000}")
+    public void purgeTaskChanges() {
+        jdbcTemplate.update("DELETE FROM task_change WHERE changed_at < ?",
+                new Timestamp(System.currentTimeMillis() - changesRetentionMs));
+    }
+
+    // Trả về false nếu đang có một lần rebuild chạy
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                logger.error("Search index rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Ghi đè mọi task trong DB theo từng khối id, rồi xóa document không được ghi lại trong lần này.
+     * Không xóa trắng trước nên search vẫn trả kết quả trong lúc rebuild; thay đổi trực tiếp chen vào
+     * cũng mang mã generation mới nên không bị xóa nhầm, và không bị dòng cũ hơn của khối đọc trước đó ghi đè.
+     */
+    public long rebuild() {
+        String pass = UUID.randomUUID().toString();
+        generation = pass;
+        long started = System.nanoTime();
+        long indexed;
+        try {
+            // Document mới hơn dòng đọc được thì giữ nguyên, kể cả khi nó mang generation cũ
+            Set<Long> newer = new HashSet<>();
+            indexed = indexRows("", List.of(), newer);
+            BooleanQuery.Builder stale = new BooleanQuery.Builder()
+                    .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                    .add(new TermQuery(new Term(GENERATION, pass)), BooleanClause.Occur.MUST_NOT);
+            if (!newer.isEmpty()) {
+                stale.add(new TermInSetQuery(ID, newer.stream().map(id -> new BytesRef(id.toString())).toList()),
+                        BooleanClause.Occur.MUST_NOT);
+            }
+            writer.deleteDocuments(stale.build());
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Search index rebuilt: {} tasks in {} ms", indexed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return indexed;
+    }
+
+    // Mở lại reader ngay, không chờ luồng reopen
+    public void refresh() {
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void reindexUsers(Set<Long> userIds) {
+        try {
+            String placeholders = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+            indexRows("assigned_to_user_id IN (" + placeholders + ") AND ", new ArrayList<>(userIds), null);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to reindex tasks of users {}", userIds, e);
+        }
+    }
+
+    // Task còn trong DB được ghi lại, task không còn thì bị xóa khỏi chỉ mục
+    private void reindexTasks(Set<Long> taskIds) throws IOException {
+        List<Long> ids = new ArrayList<>(taskIds);
+        for (int from = 0; from < ids.size(); from += REBUILD_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + REBUILD_CHUNK));
+            Set<Long> missing = new HashSet<>(chunk);
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            List<Row> rows = jdbcTemplate.query(SELECT_ROWS_SQL + "WHERE id IN (" + placeholders + ")",
+                    TaskSearchIndex::mapRow, chunk.toArray());
+            rows.forEach(row -> missing.remove(row.id()));
+            synchronized (writeLock) {
+                for (Long taskId : missing) {
+                    writer.deleteDocuments(new Term(ID, taskId.toString()));
+                    recentVersions.put(taskId, Long.MAX_VALUE);
+                }
+                indexChunk(rows, null);
+            }
+        }
+    }
+
+    // Keyset theo id từng khối REBUILD_CHUNK dòng, không giữ một cursor mở suốt cả bảng
+    private long indexRows(String condition, List<Object> conditionArgs, Set<Long> newer) throws IOException {
+        String sql = SELECT_ROWS_SQL + "WHERE " + condition + "id > ? ORDER BY id LIMIT " + REBUILD_CHUNK;
+        long indexed = 0;
+        long afterId = 0;
+        List<Row> chunk;
+        do {
+            List<Object> args = new ArrayList<>(conditionArgs);
+            args.add(afterId);
+            chunk = jdbcTemplate.query(sql, TaskSearchIndex::mapRow, args.toArray());
+            synchronized (writeLock) {
+                indexChunk(chunk, newer);
+            }
+            if (!chunk.isEmpty()) {
+                afterId = chunk.get(chunk.size() - 1).id();
+            }
+            indexed += chunk.size();
+        } while (chunk.size() == REBUILD_CHUNK);
+        return indexed;
+    }
+
+    /**
+     * Gọi trong writeLock. Bỏ dòng cũ hơn bản đã đánh chỉ mục, rồi mở lại reader để lần tra version sau thấy cả khối
+     * này mà không cần nhớ từng id. newer khác null nghĩa là đang rebuild: dòng cùng version vẫn được ghi lại để mang
+     * generation mới, id bị bỏ qua vì bản trong chỉ mục mới hơn được thêm vào newer.
+     */
+    private void indexChunk(List<Row> rows, Set<Long> newer) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> indexed = indexedVersions(rows.stream().map(Row::id).toList());
+        for (Row row : rows) {
+            Long current = indexed.get(row.id());
+            if (current != null && current > row.version()) {
+                if (newer != null) {
+                    newer.add(row.id());
+                }
+            } else if (current == null || current < row.version() || newer != null) {
+                upsert(row);
+            }
+        }
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    // Version đã đánh chỉ mục theo id: bản vừa ghi từ sự kiện (reader có thể chưa thấy), còn lại đọc từ reader
+    private Map<Long, Long> indexedVersions(Collection<Long> taskIds) throws IOException {
+        Map<Long, Long> versions = new HashMap<>();
+        List<BytesRef> unknown = new ArrayList<>();
+        for (Long taskId : taskIds) {
+            Long recent = recentVersions.getIfPresent(taskId);
+            if (recent != null) {
+                versions.put(taskId, recent);
+            } else {
+                unknown.add(new BytesRef(taskId.toString()));
+            }
+        }
+        if (unknown.isEmpty()) {
+            return versions;
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs top = searcher.search(new TermInSetQuery(ID, unknown), unknown.size());
+            StoredFields storedFields = searcher.storedFields();
+            for (ScoreDoc scoreDoc : top.scoreDocs) {
+                Document document = storedFields.document(scoreDoc.doc, Set.of(ID, VERSION));
+                // Document ghi trước khi chỉ mục có version: coi như chưa biết
+                IndexableField version = document.getField(VERSION);
+                if (version != null) {
+                    versions.put(Long.valueOf(document.get(ID)), version.numericValue().longValue());
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return versions;
+    }
+
+    private void upsert(Row row) throws IOException {
+        Document document = new Document();
+        document.add(new StringField(ID, row.id().toString(), Field.Store.YES));
+        if (row.userId() != null) {
+            document.add(new StringField(OWNER, row.userId().toString(), Field.Store.NO));
+        }
+        if (row.title() != null) {
+            document.add(new TextField(TITLE, row.title(), Field.Store.NO));
+        }
+        if (row.description() != null) {
+            document.add(new TextField(DESCRIPTION, row.description(), Field.Store.NO));
+        }
+        document.add(new StringField(GENERATION, generation, Field.Store.NO));
+        document.add(new StoredField(VERSION, row.version()));
+        writer.updateDocument(new Term(ID, row.id().toString()), document);
+    }
+
+    private static Row mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new Row(rs.getLong("id"), rs.getObject("assigned_to_user_id", Long.class), rs.getString("title"),
+                rs.getString("description"), rs.getLong("version"));
+    }
+
+    /**
+     * Gom các dòng task_change của transaction hiện tại và ghi chúng thành một JDBC batch ngay trước commit, trên
+     * connection của transaction: tạo hàng loạt/import phát một event cho mỗi task. Ngoài transaction thì ghi ngay.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordChange(Long taskId, Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            jdbcTemplate.update(APPEND_CHANGE_SQL, taskId, userId);
+            return;
+        }
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(pendingChangesKey);
+        if (pending == null) {
+            List<Object[]> changes = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(pendingChangesKey, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    jdbcTemplate.batchUpdate(APPEND_CHANGE_SQL, changes);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(pendingChangesKey);
+                }
+            });
+            pending = changes;
+        }
+        pending.add(new Object[]{taskId, userId});
+    }
+
+    private static boolean isReassign(TasksBulkChangedEvent event) {
+        return TasksBulkChangedEvent.REASSIGN.equals(event.getOperation()) && event.getUserIds() != null;
+    }
+
+    // Reader NRT không cần commit; commit chỉ để chỉ mục trên đĩa không mất thay đổi khi restart
+    private void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to commit search index", e);
+        }
+    }
+
+    // Tách từ chuẩn, chữ thường, bỏ dấu: "Báo cáo" và "bao cao" khớp nhau
+    private static Analyzer createAnalyzer() {
+        return new Analyzer() {
+            @Override
+            protected TokenStreamComponents createComponents(String fieldName) {
+                Tokenizer source = new StandardTokenizer();
+                TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(source));
+                return new TokenStreamComponents(source, stream);
+            }
+        };
+    }
+}
@@ -1,20 +1,42 @@
 package vn.poly.tuan2.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.poly.tuan2.dto.CursorPage;
+import vn.poly.tuan2.dto.SliceResponse;
 import vn.poly.tuan2.dto.TaskDto;
 import vn.poly.tuan2.entity.Task;
 import vn.poly.tuan2.entity.TaskStatus;
 import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.event.TaskChangedEvent;
+import vn.poly.tuan2.event.TaskContentChangedEvent;
+import vn.poly.tuan2.exception.PreconditionFailedException;
 import vn.poly.tuan2.exception.ResourceNotFoundException;
 import vn.poly.tuan2.repository.TaskRepository;
 import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.response.BulkOperationResponse;
+import vn.poly.tuan2.response.TaskStatsResponse;
+import vn.poly.tuan2.response.TaskTimeseriesResponse;
+import vn.poly.tuan2.security.CurrentUser;
+import vn.poly.tuan2.security.UserDetailsImpl;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskExportFormat;
+import vn.poly.tuan2.util.TaskSorts;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 @Service
 public class TaskService {
@@ -25,16 +47,32 @@ public class TaskService {
     @Autowired
     private UserRepository userRepository;
 
-    private Long getCurrentUserId() {
-        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        if (principal instanceof UserDetails) {
-            String username = ((UserDetails) principal).getUsername();
-            User currentUser = userRepository.findByUsername(username)
-                    .orElseThrow(() -> new ResourceNotFoundException("Current user not found with username: " + username));
-            return currentUser.getId();
-        }
-        throw new RuntimeException("User not authenticated or user ID not found.");
-    }
+    @Autowired
+    private CurrentUser currentUser;
+
+    @Autowired
+    private TaskCountCache taskCountCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskChangeCounter taskChangeCounter;
+
+    @Autowired
+    private TaskSearchIndex taskSearchIndex;
+
+    @Autowired
+    private TaskStatsService taskStatsService;
+
+    @Autowired
+    private TaskTimeseriesService taskTimeseriesService;
+
+    @Autowired
+    private TaskExporter taskExporter;
+
+    @Autowired
+    private TaskAnalyticsService taskAnalyticsService;
 
     // Thay đổi từ private sang public
     public TaskDto convertToDto(Task task) {
@@ -47,116 +85,298 @@ public class TaskService {
                 .createdAt(task.getCreatedAt())
                 .assignedToId(task.getAssignedTo() != null ? task.getAssignedTo().getId() : null)
                 .assignedToUsername(task.getAssignedTo() != null ? task.getAssignedTo().getUsername() : null)
+                .version(task.getVersion())
                 .build();
     }
 
-    public Optional<Task> getTaskById(Long id) {
-        return taskRepository.findById(id);
+    // Task của chính user hiện tại: lấy username từ principal thay vì khởi tạo proxy assignedTo
+    private TaskDto convertToDto(Task task, UserDetailsImpl owner) {
+        return TaskDto.builder()
+                .id(task.getId())
+                .title(task.getTitle())
+                .description(task.getDescription())
+                .status(task.getStatus())
+                .dueDate(task.getDueDate())
+                .createdAt(task.getCreatedAt())
+                .assignedToId(owner.getId())
+                .assignedToUsername(owner.getUsername())
+                .version(task.getVersion())
+                .build();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<TaskDto> getTaskById(Long id) {
+        return taskRepository.findDtoById(id);
     }
 
-    public Task createTask(Task task) {
-        Long currentUserId = getCurrentUserId();
-        User currentUser = userRepository.findById(currentUserId)
-                .orElseThrow(() -> new ResourceNotFoundException("Current user not found with ID: " + currentUserId));
-        task.setAssignedTo(currentUser);
+    @Transactional
+    public TaskDto createTask(Task task) {
+        UserDetailsImpl owner = currentUser.getPrincipal();
+        task.setAssignedTo(userRepository.getReferenceById(owner.getId()));
         if (task.getStatus() == null) {
             task.setStatus(TaskStatus.PENDING);
         }
-        return taskRepository.save(task);
+        task.setCompletedAt(completedAt(null, null, task.getStatus(), LocalDateTime.now()));
+        Task savedTask = taskRepository.save(task);
+        taskStatsService.taskAdded(owner.getId(), savedTask.getStatus(), savedTask.getDueDate());
+        eventPublisher.publishEvent(TaskChangedEvent.created(savedTask.getId(), owner.getId(), savedTask.getStatus()));
+        eventPublisher.publishEvent(TaskContentChangedEvent.saved(savedTask.getId(), owner.getId(),
+                savedTask.getTitle(), savedTask.getDescription(), savedTask.getVersion()));
+        return convertToDto(savedTask, owner);
     }
 
     // Thay đổi trả về Page<TaskDto>
-    public Page<TaskDto> getTasksForCurrentUser(TaskStatus status, Pageable pageable) {
-        Long currentUserId = getCurrentUserId();
-        Page<Task> tasksPage;
-        if (status != null) {
-            tasksPage = taskRepository.findByAssignedToIdAndStatus(currentUserId, status, pageable);
-        } else {
-            tasksPage = taskRepository.findByAssignedToId(currentUserId, pageable);
+    @Transactional(readOnly = true)
+    public Page<TaskDto> getTasksForCurrentUser(TaskFilter filter, Pageable pageable, Predicate<String> notModified) {
+        if (taskChangeCounter.userListNotModified(currentUser.getId(), notModified)) {
+            return null;
         }
-        return tasksPage.map(this::convertToDto);
+        return taskRepository.findDtoPage(ownedBy(filter, currentUser.getId()), TaskSorts.checked(pageable));
     }
 
-    public Optional<TaskDto> getTaskByIdForCurrentUser(Long id) {
-        Long currentUserId = getCurrentUserId();
-        Task task = taskRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
-        if (!task.getAssignedTo().getId().equals(currentUserId)) {
-            throw new ResourceNotFoundException("Access Denied: You do not own this task.");
+    @Transactional(readOnly = true)
+    public SliceResponse<TaskDto> getTaskSliceForCurrentUser(TaskFilter filter, Pageable pageable, boolean withTotal,
+                                                             Predicate<String> notModified) {
+        if (taskChangeCounter.userListNotModified(currentUser.getId(), notModified)) {
+            return null;
         }
-        return Optional.of(convertToDto(task));
+        TaskFilter owned = ownedBy(filter, currentUser.getId());
+        Slice<TaskDto> slice = taskRepository.findDtoSlice(owned, TaskSorts.checked(pageable));
+        return toSliceResponse(slice, withTotal ? total(owned) : null);
     }
 
-    public Task updateTaskForCurrentUser(Long id, Task taskDetails) {
-        Long currentUserId = getCurrentUserId();
-        Task task = taskRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
+    public long exportTasksForCurrentUser(TaskFilter filter, TaskExportFormat format, OutputStream out)
+            throws IOException {
+        return taskExporter.export(ownedBy(filter, currentUser.getId()), format, out);
+    }
 
-        if (!task.getAssignedTo().getId().equals(currentUserId)) {
-            throw new ResourceNotFoundException("Access Denied: You do not own this task.");
+    // Endpoint của user luôn bị giới hạn trong task của chính họ, bỏ qua assigneeId client gửi lên
+    private static TaskFilter ownedBy(TaskFilter filter, Long userId) {
+        filter.validate();
+        return filter.toBuilder().assigneeId(userId).build();
+    }
+
+    // Bộ lọc chỉ theo (user, status) dùng tổng đã cache; bộ lọc phức tạp hơn phải COUNT thật
+    private TaskCountCache.Total total(TaskFilter filter) {
+        if (filter.isStatusOnly()) {
+            return taskCountCache.total(filter.getAssigneeId(), filter.singleStatus());
+        }
+        return new TaskCountCache.Total(taskRepository.countMatching(filter), true);
+    }
+
+    private static SliceResponse<TaskDto> toSliceResponse(Slice<TaskDto> slice, TaskCountCache.Total total) {
+        return new SliceResponse<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext(),
+                total != null ? total.getValue() : null,
+                total != null ? total.isExact() : null);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TaskDto> getTasksForCurrentUser(TaskFilter filter, String cursor, int size,
+                                                      Predicate<String> notModified) {
+        if (taskChangeCounter.userListNotModified(currentUser.getId(), notModified)) {
+            return null;
+        }
+        List<TaskDto> rows = taskRepository.findDtos(ownedBy(filter, currentUser.getId()), TaskCursor.decode(cursor),
+                TaskCursor.SORT, size + 1);
+        return toCursorPage(rows, size);
+    }
+
+    // Đọc thừa một dòng để biết còn trang sau mà không cần COUNT(*)
+    private static CursorPage<TaskDto> toCursorPage(List<TaskDto> rows, int size) {
+        boolean hasNext = rows.size() > size;
+        List<TaskDto> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            TaskDto last = pageRows.get(pageRows.size() - 1);
+            nextCursor = new TaskCursor(last.getCreatedAt(), last.getId()).encode();
         }
+        return new CursorPage<>(pageRows, size, hasNext, nextCursor);
+    }
 
-        task.setTitle(taskDetails.getTitle());
-        task.setDescription(taskDetails.getDescription());
-        task.setDueDate(taskDetails.getDueDate());
-        task.setStatus(taskDetails.getStatus());
+    public SliceResponse<TaskDto> searchTasksForCurrentUser(String query, int page, int size) {
+        return taskSearchIndex.findTasks(query, currentUser.getId(), page, size);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<TaskDto> getTaskByIdForCurrentUser(Long id) {
+        TaskDto task = taskRepository.findDtoById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
+        if (!currentUser.getId().equals(task.getAssignedToId())) {
+            throw new ResourceNotFoundException("Access Denied: You do not own this task.");
+        }
+        return Optional.of(task);
+    }
 
+    /**
+     * Khóa dòng task (SELECT ... FOR UPDATE theo id và chủ sở hữu, chỉ đọc các cột cần) để biết status/dueDate cũ,
+     * rồi một câu UPDATE theo id và một câu cộng delta vào task_stats, tất cả trong cùng transaction. Delta phụ thuộc
+     * status và due_date cũ, nên khác PATCH status, PUT và DELETE không bỏ được lượt đọc này.
+     */
+    @Transactional
+    public TaskDto updateTaskForCurrentUser(Long id, Task taskDetails, Long expectedVersion) {
+        UserDetailsImpl owner = currentUser.getPrincipal();
         if (taskDetails.getAssignedTo() != null && taskDetails.getAssignedTo().getId() != null) {
-            if (!taskDetails.getAssignedTo().getId().equals(currentUserId)) {
+            if (!taskDetails.getAssignedTo().getId().equals(owner.getId())) {
                 throw new ResourceNotFoundException("You can only assign tasks to yourself or task not found.");
             }
-            User assignedUser = userRepository.findById(taskDetails.getAssignedTo().getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Assigned user not found with ID: " + taskDetails.getAssignedTo().getId()));
-            task.setAssignedTo(assignedUser);
         }
-        return taskRepository.save(task);
+        TaskRepository.LockedTask existing = lockOwned(id, owner.getId());
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new PreconditionFailedException("Task " + id + " was modified since version " + expectedVersion);
+        }
+        taskRepository.updateLocked(id, taskDetails.getTitle(), taskDetails.getDescription(), taskDetails.getDueDate(),
+                taskDetails.getStatus(), completedAt(existing.getStatus(), existing.getCompletedAt(),
+                        taskDetails.getStatus(), LocalDateTime.now()));
+        taskStatsService.taskChanged(owner.getId(), existing.getStatus(), existing.getDueDate(),
+                taskDetails.getStatus(), taskDetails.getDueDate());
+        eventPublisher.publishEvent(new TaskChangedEvent(id, owner.getId(), existing.getStatus(), owner.getId(),
+                taskDetails.getStatus()));
+        eventPublisher.publishEvent(TaskContentChangedEvent.saved(id, owner.getId(), taskDetails.getTitle(),
+                taskDetails.getDescription(), existing.getVersion() + 1));
+        return TaskDto.builder()
+                .id(id)
+                .title(taskDetails.getTitle())
+                .description(taskDetails.getDescription())
+                .status(taskDetails.getStatus())
+                .dueDate(taskDetails.getDueDate())
+                .createdAt(existing.getCreatedAt())
+                .assignedToId(owner.getId())
+                .assignedToUsername(owner.getUsername())
+                .version(existing.getVersion() + 1)
+                .build();
     }
 
+    /**
+     * Một câu UPDATE có điều kiện status &lt;&gt; :status: số dòng bị ghi cho biết delta của bộ đếm mà không cần đọc
+     * task trước. 0 dòng mới cần thêm một câu để phân biệt task đã ở status đó (không làm gì) với 404.
+     */
+    @Transactional
+    public void updateTaskStatusForCurrentUser(Long id, TaskStatus status) {
+        Long currentUserId = currentUser.getId();
+        LocalDateTime completedAt = status == TaskStatus.COMPLETED ? LocalDateTime.now() : null;
+        if (taskRepository.changeStatusOwned(id, currentUserId, status, completedAt) == 0) {
+            if (!taskRepository.existsOwned(id, currentUserId)) {
+                throw new ResourceNotFoundException("Task not found with id " + id);
+            }
+            return;
+        }
+        taskStatsService.statusChanged(currentUserId, id, status);
+        TaskStatus oldStatus = status == TaskStatus.COMPLETED ? TaskStatus.PENDING : TaskStatus.COMPLETED;
+        eventPublisher.publishEvent(new TaskChangedEvent(id, currentUserId, oldStatus, currentUserId, status));
+    }
+
+    @Transactional
     public void deleteTaskForCurrentUser(Long id) {
-        Long currentUserId = getCurrentUserId();
-        Task task = taskRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
+        Long currentUserId = currentUser.getId();
+        TaskRepository.LockedTask existing = lockOwned(id, currentUserId);
+        taskRepository.deleteLocked(id);
+        taskStatsService.taskRemoved(currentUserId, existing.getStatus(), existing.getDueDate());
+        eventPublisher.publishEvent(TaskChangedEvent.deleted(id, currentUserId, existing.getStatus()));
+        eventPublisher.publishEvent(TaskContentChangedEvent.deleted(id));
+    }
 
-        if (!task.getAssignedTo().getId().equals(currentUserId)) {
-            throw new ResourceNotFoundException("Access Denied: You do not own this task.");
+    // Giữ thời điểm cũ khi task vẫn COMPLETED, lấy now khi task vừa chuyển sang COMPLETED; TaskBatchService dùng
+    // với oldStatus null cho task mới
+    static LocalDateTime completedAt(TaskStatus oldStatus, LocalDateTime oldCompletedAt, TaskStatus newStatus,
+                                             LocalDateTime now) {
+        if (newStatus != TaskStatus.COMPLETED) {
+            return null;
+        }
+        if (oldStatus == TaskStatus.COMPLETED && oldCompletedAt != null) {
+            return oldCompletedAt;
         }
-        taskRepository.deleteById(id);
+        return now;
+    }
+
+    // Task không tồn tại và task của người khác đều là 404
+    private TaskRepository.LockedTask lockOwned(Long id, Long userId) {
+        return taskRepository.lockOwned(id, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
     }
 
     // === PHƯƠNG THỨC DÀNH CHO ADMIN ===
 
     // Thay đổi trả về Page<TaskDto>
-    public Page<TaskDto> getAllTasksForAdmin(TaskStatus status, Pageable pageable) {
-        Page<Task> tasksPage;
-        if (status != null) {
-            tasksPage = taskRepository.findByStatus(status, pageable);
-        } else {
-            tasksPage = taskRepository.findAll(pageable);
+    @Transactional(readOnly = true)
+    public Page<TaskDto> getAllTasksForAdmin(TaskFilter filter, Pageable pageable) {
+        filter.validate();
+        return taskRepository.findDtoPage(filter, TaskSorts.checked(pageable));
+    }
+
+    @Transactional(readOnly = true)
+    public SliceResponse<TaskDto> getAllTaskSliceForAdmin(TaskFilter filter, Pageable pageable, boolean withTotal) {
+        filter.validate();
+        Slice<TaskDto> slice = taskRepository.findDtoSlice(filter, TaskSorts.checked(pageable));
+        return toSliceResponse(slice, withTotal ? total(filter) : null);
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPage<TaskDto> getAllTasksForAdmin(TaskFilter filter, String cursor, int size) {
+        filter.validate();
+        List<TaskDto> rows = taskRepository.findDtos(filter, TaskCursor.decode(cursor), TaskCursor.SORT, size + 1);
+        return toCursorPage(rows, size);
+    }
+
+    // userId null: tìm trên task của mọi user
+    public SliceResponse<TaskDto> searchTasksForAdmin(String query, Long userId, int page, int size) {
+        return taskSearchIndex.findTasks(query, userId, page, size);
+    }
+
+    @Transactional(readOnly = true)
+    public TaskStatsResponse getStatsForCurrentUser() {
+        return taskStatsService.getStats(currentUser.getId());
+    }
+
+    @Transactional(readOnly = true)
+    public TaskTimeseriesResponse getTimeseriesForCurrentUser(LocalDate from, LocalDate to, String granularity) {
+        return taskTimeseriesService.getTimeseries(currentUser.getId(), from, to, granularity);
+    }
+
+    @Transactional(readOnly = true)
+    public TaskStatsResponse getStatsForUser(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
         }
-        return tasksPage.map(this::convertToDto); // Chuyển đổi từng Task sang TaskDto
+        return taskStatsService.getStats(userId);
     }
 
-    // Thay đổi trả về Page<TaskDto>
-    public Page<TaskDto> getTasksByUserIdForAdmin(Long userId, TaskStatus status, Pageable pageable) {
-        userRepository.findById(userId)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + userId));
+    public BulkOperationResponse reconcileStats() {
+        int repaired = taskStatsService.reconcile();
+        if (repaired > 0) {
+            taskAnalyticsService.invalidateAll();
+        }
+        return new BulkOperationResponse("RECONCILE_STATS", repaired);
+    }
 
-        Page<Task> tasksPage;
-        if (status != null) {
-            tasksPage = taskRepository.findByAssignedToIdAndStatus(userId, status, pageable);
-        } else {
-            tasksPage = taskRepository.findByAssignedToId(userId, pageable);
+    // Thay đổi trả về Page<TaskDto>
+    @Transactional(readOnly = true)
+    public Page<TaskDto> getTasksByUserIdForAdmin(Long userId, TaskFilter filter, Pageable pageable,
+                                                  Predicate<String> notModified) {
+        if (!userRepository.existsById(userId)) {
+            throw new ResourceNotFoundException("User not found with ID: " + userId);
+        }
+        if (taskChangeCounter.userListNotModified(userId, notModified)) {
+            return null;
         }
-        return tasksPage.map(this::convertToDto); // Chuyển đổi từng Task sang TaskDto
+        return taskRepository.findDtoPage(ownedBy(filter, userId), TaskSorts.checked(pageable));
     }
 
-    public Task updateTaskByAdmin(Long id, Task taskDetails) {
+    @Transactional
+    public Task updateTaskByAdmin(Long id, Task taskDetails, Long expectedVersion) {
         Task existingTask = taskRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
+        if (expectedVersion != null && !expectedVersion.equals(existingTask.getVersion())) {
+            throw new PreconditionFailedException("Task " + id + " was modified since version " + expectedVersion);
+        }
+        Long oldUserId = existingTask.getAssignedTo() != null ? existingTask.getAssignedTo().getId() : null;
+        TaskStatus oldStatus = existingTask.getStatus();
+        LocalDate oldDueDate = existingTask.getDueDate();
 
         existingTask.setTitle(taskDetails.getTitle());
         existingTask.setDescription(taskDetails.getDescription());
         existingTask.setDueDate(taskDetails.getDueDate());
+        existingTask.setCompletedAt(completedAt(existingTask.getStatus(), existingTask.getCompletedAt(),
+                taskDetails.getStatus(), LocalDateTime.now()));
         existingTask.setStatus(taskDetails.getStatus());
 
         if (taskDetails.getAssignedTo() != null && taskDetails.getAssignedTo().getId() != null) {
@@ -166,13 +386,29 @@ public class TaskService {
         } else {
             existingTask.setAssignedTo(null);
         }
-        return taskRepository.save(existingTask);
+        Task savedTask = taskRepository.saveAndFlush(existingTask); // flush ngay để version trả về là version mới
+        Long newUserId = savedTask.getAssignedTo() != null ? savedTask.getAssignedTo().getId() : null;
+        if (Objects.equals(oldUserId, newUserId)) {
+            taskStatsService.taskChanged(newUserId, oldStatus, oldDueDate, savedTask.getStatus(), savedTask.getDueDate());
+        } else {
+            taskStatsService.taskMoved(oldUserId, newUserId, oldStatus, oldDueDate, savedTask.getStatus(),
+                    savedTask.getDueDate());
+        }
+        eventPublisher.publishEvent(new TaskChangedEvent(id, oldUserId, oldStatus, newUserId, savedTask.getStatus()));
+        eventPublisher.publishEvent(TaskContentChangedEvent.saved(id, newUserId, savedTask.getTitle(),
+                savedTask.getDescription(), savedTask.getVersion()));
+        return savedTask;
     }
 
+    @Transactional
     public void deleteTaskByAdmin(Long id) {
-        if (!taskRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Task not found with id " + id);
-        }
-        taskRepository.deleteById(id);
+        Task task = taskRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Task not found with id " + id));
+        taskRepository.delete(task);
+        taskStatsService.taskRemoved(task.getAssignedTo() != null ? task.getAssignedTo().getId() : null,
+                task.getStatus(), task.getDueDate());
+        eventPublisher.publishEvent(TaskChangedEvent.deleted(id,
+                task.getAssignedTo() != null ? task.getAssignedTo().getId() : null, task.getStatus()));
+        eventPublisher.publishEvent(TaskContentChangedEvent.deleted(id));
     }
 }
\ No newline at end of file
@@ -0,0 +1,398 @@
+package vn.poly.tuan2.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.repository.TaskActivityRepository;
+import vn.poly.tuan2.repository.TaskDailyStatsRepository;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+import vn.poly.tuan2.response.TaskStatsResponse;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bộ đếm task theo user trong bảng task_stats. Các phương thức ghi được service ghi task gọi trong chính transaction
+ * của câu ghi task, nên bộ đếm commit/rollback cùng task; cùng lúc đó delta hoạt động trong ngày được thêm vào
+ * outbox task_activity để TaskTimeseriesService gom theo ngày. Hai job nền chạy bằng JdbcTemplate:
+ * rollover dời overdue_as_of sang ngày mới, reconcile đếm lại từ bảng task và sửa các dòng lệch.
+ * Mọi câu ghi bộ đếm cũng tăng list_version của dòng, là ETag danh sách task của user đó (TaskChangeCounter); vì vậy
+ * mỗi thay đổi danh sách đều ghi dòng của user, kể cả khi số đếm không đổi.
+ */
+@Service
+public class TaskStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(TaskStatsService.class);
+
+    private static final int CHUNK = 500;
+
+    // Giống TaskStatsRepository.addCounts với overdue = 0 và TaskActivityRepository.append, để gửi theo JDBC batch
+    private static final String ADD_COUNTS_SQL = "INSERT INTO task_stats (user_id, pending, completed, overdue, "
+            + "overdue_as_of) VALUES (?, ?, ?, 0, ?) ON DUPLICATE KEY UPDATE pending = pending + VALUES(pending), "
+            + "completed = completed + VALUES(completed), list_version = list_version + 1";
+    private static final String APPEND_ACTIVITY_SQL = "INSERT INTO task_activity (user_id, stat_date, created, "
+            + "completed, open_delta) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskActivityRepository taskActivityRepository;
+
+    @Autowired
+    private TaskDailyStatsRepository taskDailyStatsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private Counter repairedCounter;
+
+    // rollover và reconcile không chạy chồng nhau; không dùng synchronized vì virtual thread chờ JDBC trong
+    // synchronized bị ghim vào carrier (Java 21)
+    private final ReentrantLock jobLock = new ReentrantLock();
+
+    @Data
+    @AllArgsConstructor
+    private static class Counts {
+        private long pending;
+        private long completed;
+        private long overdue;
+        private LocalDate asOf;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (meterRegistry != null) {
+            repairedCounter = meterRegistry.counter("task.stats.repaired");
+        }
+    }
+
+    // Đọc một dòng theo khóa chính
+    public TaskStatsResponse getStats(Long userId) {
+        LocalDate today = LocalDate.now();
+        return taskStatsRepository.findById(userId)
+                .map(stats -> {
+                    long overdue = stats.getOverdue();
+                    // Rollover chưa chạy tới dòng này: cộng phần mới quá hạn kể từ overdueAsOf bằng một lần dò index
+                    if (stats.getOverdueAsOf().isBefore(today)) {
+                        overdue += taskRepository.countByAssigneeStatusDueBetween(userId, TaskStatus.PENDING,
+                                stats.getOverdueAsOf(), today);
+                    }
+                    return new TaskStatsResponse(userId, stats.getPending(), stats.getCompleted(), overdue,
+                            stats.getPending() + stats.getCompleted());
+                })
+                .orElseGet(() -> new TaskStatsResponse(userId, 0, 0, 0, 0));
+    }
+
+    // === Gọi trong transaction của TaskService, TaskBatchService và TaskBulkService ===
+
+    public void taskAdded(Long userId, TaskStatus status, LocalDate dueDate) {
+        taskChanged(userId, null, null, status, dueDate);
+    }
+
+    public void taskRemoved(Long userId, TaskStatus status, LocalDate dueDate) {
+        taskChanged(userId, status, dueDate, null, null);
+    }
+
+    // Task vẫn thuộc cùng user; status null nghĩa là task không có trước/sau câu ghi
+    public void taskChanged(Long userId, TaskStatus oldStatus, LocalDate oldDueDate,
+                            TaskStatus newStatus, LocalDate newDueDate) {
+        if (userId == null) {
+            return;
+        }
+        updateCounts(userId, oldStatus, oldDueDate, newStatus, newDueDate);
+        recordActivity(userId, indicator(oldStatus == null && newStatus != null),
+                indicator(isCompletion(oldStatus, newStatus)), pendingDelta(oldStatus, newStatus));
+    }
+
+    // PATCH status đã ghi được một dòng: status cũ là giá trị còn lại, due_date lấy từ dòng task trong câu SQL
+    public void statusChanged(Long userId, Long taskId, TaskStatus newStatus) {
+        long pending = newStatus == TaskStatus.PENDING ? 1 : -1;
+        if (taskStatsRepository.addStatusChange(userId, taskId, pending) == 0) {
+            taskStatsRepository.insertStatusChange(userId, taskId, pending, LocalDate.now());
+        }
+        recordActivity(userId, 0, indicator(newStatus == TaskStatus.COMPLETED), pending);
+    }
+
+    // Admin chuyển một task sang user khác: với cả hai user đây không phải tạo mới hay xóa
+    public void taskMoved(Long oldUserId, Long newUserId, TaskStatus oldStatus, LocalDate oldDueDate,
+                          TaskStatus newStatus, LocalDate newDueDate) {
+        if (oldUserId != null) {
+            updateCounts(oldUserId, oldStatus, oldDueDate, null, null);
+            recordActivity(oldUserId, 0, 0, pendingDelta(oldStatus, null));
+        }
+        if (newUserId != null) {
+            updateCounts(newUserId, null, null, newStatus, newDueDate);
+            recordActivity(newUserId, 0, indicator(isCompletion(oldStatus, newStatus)), pendingDelta(null, newStatus));
+        }
+    }
+
+    private void updateCounts(Long userId, TaskStatus oldStatus, LocalDate oldDueDate,
+                              TaskStatus newStatus, LocalDate newDueDate) {
+        long pending = pendingDelta(oldStatus, newStatus);
+        long completed = indicator(newStatus == TaskStatus.COMPLETED) - indicator(oldStatus == TaskStatus.COMPLETED);
+        LocalDate removedDue = oldStatus == TaskStatus.PENDING ? oldDueDate : null;
+        LocalDate addedDue = newStatus == TaskStatus.PENDING ? newDueDate : null;
+        LocalDate today = LocalDate.now();
+        if (pending == 0 && completed == 0 && Objects.equals(removedDue, addedDue)) {
+            taskStatsRepository.touch(userId, today);
+            return;
+        }
+        taskStatsRepository.addDelta(userId, pending, completed, removedDue, addedDue,
+                indicator(isBefore(addedDue, today)) - indicator(isBefore(removedDue, today)), today);
+    }
+
+    /**
+     * Tạo hàng loạt (batch, import): gom theo user rồi gửi mỗi loại câu ghi thành một JDBC batch (bộ đếm, outbox,
+     * task tạo ra đã quá hạn), dùng chung connection và transaction của câu INSERT task. Một khối import trải trên
+     * hàng nghìn user nên gọi repository từng user sẽ thành hàng nghìn lượt gửi riêng.
+     */
+    public void tasksAdded(Collection<TaskDto> tasks) {
+        LocalDate today = LocalDate.now();
+        Date day = Date.valueOf(today);
+        Map<Long, long[]> byUser = new HashMap<>();
+        List<Object[]> overdue = new ArrayList<>();
+        for (TaskDto task : tasks) {
+            if (task.getAssignedToId() == null) {
+                continue;
+            }
+            long[] counts = byUser.computeIfAbsent(task.getAssignedToId(), id -> new long[2]);
+            counts[task.getStatus() == TaskStatus.PENDING ? 0 : 1]++;
+            if (task.getStatus() == TaskStatus.PENDING && isBefore(task.getDueDate(), today)) {
+                overdue.add(new Object[]{task.getAssignedToId(), Date.valueOf(task.getDueDate())});
+            }
+        }
+        if (byUser.isEmpty()) {
+            return;
+        }
+        List<Object[]> counts = new ArrayList<>(byUser.size());
+        List<Object[]> activity = new ArrayList<>(byUser.size());
+        byUser.forEach((userId, count) -> {
+            counts.add(new Object[]{userId, count[0], count[1], day});
+            activity.add(new Object[]{userId, day, Math.toIntExact(count[0] + count[1]), Math.toIntExact(count[1]),
+                    Math.toIntExact(count[0])});
+        });
+        jdbcTemplate.batchUpdate(ADD_COUNTS_SQL, counts);
+        jdbcTemplate.batchUpdate(APPEND_ACTIVITY_SQL, activity);
+        // Như addDelta với addedDue: chỉ tính khi trước overdue_as_of của dòng
+        if (!overdue.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE task_stats SET overdue = overdue + 1 WHERE user_id = ? AND ? < overdue_as_of",
+                    overdue);
+        }
+    }
+
+    public void overdueCompleted(Long userId, long count) {
+        if (count > 0) {
+            taskStatsRepository.completeOverdue(userId, count);
+            recordActivity(userId, 0, count, -count);
+        }
+    }
+
+    public void completedRemoved(Long userId, long count) {
+        if (count > 0) {
+            taskStatsRepository.removeCompleted(userId, count);
+        }
+    }
+
+    // Reassign chuyển toàn bộ task nên chuyển nguyên dòng, giữ overdueAsOf của dòng nguồn khi tạo dòng đích
+    public void reassigned(Long fromUserId, Long toUserId) {
+        taskStatsRepository.lockByUserId(fromUserId).ifPresentOrElse(stats -> {
+            taskStatsRepository.addCounts(toUserId, stats.getPending(), stats.getCompleted(), stats.getOverdue(),
+                    stats.getOverdueAsOf());
+            taskStatsRepository.clear(fromUserId);
+            recordActivity(fromUserId, 0, 0, -stats.getPending());
+            recordActivity(toUserId, 0, 0, stats.getPending());
+        }, () -> {
+            listChanged(fromUserId);
+            listChanged(toUserId);
+        });
+    }
+
+    // Danh sách task của user đổi mà không qua bộ đếm (username nằm trong mọi TaskDto của user)
+    public void listChanged(Long userId) {
+        taskStatsRepository.touch(userId, LocalDate.now());
+    }
+
+    // Xóa cả outbox chưa gom, nếu không lần aggregate() sau lại tạo dòng task_daily_stats mồ côi
+    public void userDeleted(Long userId) {
+        taskStatsRepository.deleteById(userId);
+        taskDailyStatsRepository.deleteByUserId(userId);
+        taskActivityRepository.deleteByUserId(userId);
+    }
+
+    // Bỏ qua delta rỗng (sửa tiêu đề, đổi due_date...) để không thêm dòng outbox vô ích
+    private void recordActivity(Long userId, long created, long completed, long openDelta) {
+        if (created == 0 && completed == 0 && openDelta == 0) {
+            return;
+        }
+        taskActivityRepository.append(userId, LocalDate.now(), Math.toIntExact(created), Math.toIntExact(completed),
+                Math.toIntExact(openDelta));
+    }
+
+    // === Job nền ===
+
+    /**
+     * Cộng vào overdue các task PENDING có due_date trong [overdue_as_of, hôm nay) rồi dời overdue_as_of về hôm nay,
+     * từng khối CHUNK user để không giữ khóa trên cả bảng.
+     */
+    @Scheduled(cron = "${application.tasks.stats.rollover-cron:5 0 0 * * *}")
+    public int rollover() {
+        jobLock.lock();
+        try {
+            return rolloverChunks();
+        } finally {
+            jobLock.unlock();
+        }
+    }
+
+    private int rolloverChunks() {
+        Date today = Date.valueOf(LocalDate.now());
+        int rolled = 0;
+        long after = 0;
+        while (true) {
+            List<Long> userIds = jdbcTemplate.queryForList("SELECT user_id FROM task_stats "
+                    + "WHERE user_id > ? AND overdue_as_of < ? ORDER BY user_id LIMIT " + CHUNK, Long.class, after, today);
+            if (userIds.isEmpty()) {
+                break;
+            }
+            after = userIds.get(userIds.size() - 1);
+            rolled += jdbcTemplate.update("UPDATE task_stats s SET overdue = overdue + (SELECT COUNT(*) FROM task t "
+                            + "WHERE t.assigned_to_user_id = s.user_id AND t.status = 'PENDING' "
+                            + "AND t.due_date >= s.overdue_as_of AND t.due_date < ?), overdue_as_of = ? "
+                            + "WHERE s.user_id BETWEEN ? AND ? AND s.overdue_as_of < ?",
+                    today, today, userIds.get(0), after, today);
+        }
+        return rolled;
+    }
+
+    /**
+     * Đếm lại từ bảng task theo từng khối user và sửa các dòng lệch. Dòng task_stats được đọc trước khi đếm task và
+     * chỉ được ghi nếu vẫn y như lúc đọc: câu ghi task nào commit xen giữa cũng đã đổi dòng đó nên khối sau bỏ qua,
+     * lần reconcile kế tiếp sẽ kiểm lại.
+     *
+     * @return số user đã sửa
+     */
+    @Scheduled(cron = "${application.tasks.stats.reconcile-cron:0 30 3 * * *}")
+    public int reconcile() {
+        jobLock.lock();
+        try {
+            rolloverChunks();
+            return reconcileChunks();
+        } finally {
+            jobLock.unlock();
+        }
+    }
+
+    private int reconcileChunks() {
+        LocalDate today = LocalDate.now();
+        int repaired = 0;
+        long after = 0;
+        while (true) {
+            List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM user WHERE id > ? ORDER BY id LIMIT " + CHUNK,
+                    Long.class, after);
+            if (userIds.isEmpty()) {
+                break;
+            }
+            after = userIds.get(userIds.size() - 1);
+            repaired += reconcile(userIds.get(0), after, today);
+        }
+        if (repaired > 0) {
+            logger.warn("Repaired task stats drift for {} user(s)", repaired);
+            if (repairedCounter != null) {
+                repairedCounter.increment(repaired);
+            }
+        }
+        return repaired;
+    }
+
+    private int reconcile(long fromUserId, long toUserId, LocalDate today) {
+        Map<Long, Counts> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, pending, completed, overdue, overdue_as_of FROM task_stats "
+                        + "WHERE user_id BETWEEN ? AND ?",
+                rs -> {
+                    stored.put(rs.getLong("user_id"), new Counts(rs.getLong("pending"), rs.getLong("completed"),
+                            rs.getLong("overdue"), rs.getDate("overdue_as_of").toLocalDate()));
+                }, fromUserId, toUserId);
+        Map<Long, Counts> actual = new HashMap<>();
+        jdbcTemplate.query("SELECT assigned_to_user_id, "
+                        + "SUM(CASE WHEN status = 'PENDING' THEN 1 ELSE 0 END) AS pending, "
+                        + "SUM(CASE WHEN status = 'COMPLETED' THEN 1 ELSE 0 END) AS completed, "
+                        + "SUM(CASE WHEN status = 'PENDING' AND due_date < ? THEN 1 ELSE 0 END) AS overdue "
+                        + "FROM task WHERE assigned_to_user_id BETWEEN ? AND ? GROUP BY assigned_to_user_id",
+                rs -> {
+                    actual.put(rs.getLong("assigned_to_user_id"), new Counts(rs.getLong("pending"),
+                            rs.getLong("completed"), rs.getLong("overdue"), today));
+                }, Date.valueOf(today), fromUserId, toUserId);
+
+        Set<Long> userIds = new TreeSet<>(stored.keySet());
+        userIds.addAll(actual.keySet());
+        int repaired = 0;
+        for (Long userId : userIds) {
+            Counts expected = actual.getOrDefault(userId, new Counts(0, 0, 0, today));
+            Counts current = stored.get(userId);
+            if (expected.equals(current)) {
+                continue;
+            }
+            if (current == null) {
+                try {
+                    jdbcTemplate.update("INSERT INTO task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+                                    + "VALUES (?, ?, ?, ?, ?)", userId, expected.getPending(), expected.getCompleted(),
+                            expected.getOverdue(), Date.valueOf(today));
+                    repaired++;
+                } catch (DuplicateKeyException e) {
+                    // Một câu ghi task vừa tạo dòng này; để lần sau kiểm
+                }
+                continue;
+            }
+            repaired += jdbcTemplate.update("UPDATE task_stats SET pending = ?, completed = ?, overdue = ?, "
+                            + "overdue_as_of = ? WHERE user_id = ? AND pending = ? AND completed = ? AND overdue = ? "
+                            + "AND overdue_as_of = ?",
+                    expected.getPending(), expected.getCompleted(), expected.getOverdue(), Date.valueOf(today), userId,
+                    current.getPending(), current.getCompleted(), current.getOverdue(),
+                    Date.valueOf(current.getAsOf()));
+        }
+        return repaired;
+    }
+
+    private static long pendingDelta(TaskStatus oldStatus, TaskStatus newStatus) {
+        return indicator(newStatus == TaskStatus.PENDING) - indicator(oldStatus == TaskStatus.PENDING);
+    }
+
+    private static boolean isCompletion(TaskStatus oldStatus, TaskStatus newStatus) {
+        return newStatus == TaskStatus.COMPLETED && oldStatus != TaskStatus.COMPLETED;
+    }
+
+    private static long indicator(boolean condition) {
+        return condition ? 1 : 0;
+    }
+
+    private static boolean isBefore(LocalDate dueDate, LocalDate day) {
+        return dueDate != null && dueDate.isBefore(day);
+    }
+}
@@ -0,0 +1,152 @@
+package vn.poly.tuan2.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.poly.tuan2.entity.TaskDailyStats;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.repository.TaskDailyStatsRepository;
+import vn.poly.tuan2.response.TaskTimeseriesResponse;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Biểu đồ hoạt động task theo ngày/tuần/tháng. Endpoint chỉ đọc bảng tổng hợp task_daily_stats (tối đa một dòng
+ * mỗi ngày trong khoảng); job aggregate gom outbox task_activity vào bảng đó, nên số liệu trễ tối đa một chu kỳ job.
+ */
+@Service
+public class TaskTimeseriesService {
+
+    public static final int MAX_DAYS_DAILY = 366;
+    public static final int MAX_DAYS = 3660;
+
+    private static final int BATCH = 1000;
+
+    // Không dùng synchronized: virtual thread chờ JDBC trong synchronized bị ghim vào carrier (Java 21)
+    private final ReentrantLock aggregateLock = new ReentrantLock();
+
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+
+    private record Key(long userId, LocalDate day) {
+    }
+
+    @Autowired
+    private TaskDailyStatsRepository taskDailyStatsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public TaskTimeseriesResponse getTimeseries(Long userId, LocalDate from, LocalDate to, String granularity) {
+        Granularity unit = parse(granularity);
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        int maxDays = unit == Granularity.DAY ? MAX_DAYS_DAILY : MAX_DAYS;
+        if (days > maxDays) {
+            throw new BadRequestException("Range cannot exceed " + maxDays + " days for granularity " + granularity);
+        }
+
+        Map<LocalDate, TaskTimeseriesResponse.Point> points = new LinkedHashMap<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            LocalDate start = bucketStart(day, unit, from);
+            points.computeIfAbsent(start, key -> new TaskTimeseriesResponse.Point(key, 0, 0, 0));
+        }
+        for (TaskDailyStats row : taskDailyStatsRepository.findRange(userId, from, to)) {
+            TaskTimeseriesResponse.Point point = points.get(bucketStart(row.getDay(), unit, from));
+            point.setCreated(point.getCreated() + row.getCreated());
+            point.setCompleted(point.getCompleted() + row.getCompleted());
+            point.setOpenDelta(point.getOpenDelta() + row.getOpenDelta());
+        }
+        return new TaskTimeseriesResponse(userId, unit.name().toLowerCase(Locale.ROOT), from, to,
+                new ArrayList<>(points.values()));
+    }
+
+    /**
+     * Gom outbox task_activity vào task_daily_stats theo từng khối BATCH dòng, mỗi khối một transaction:
+     * khóa các dòng đã đọc (job chạy trên node khác sẽ chờ rồi không thấy chúng nữa), cộng theo (user, ngày),
+     * upsert rồi xóa đúng các id đã đọc. Không xóa theo khoảng id vì transaction giữ id nhỏ hơn có thể commit sau.
+     *
+     * @return số dòng outbox đã gom
+     */
+    @Scheduled(cron = "${application.tasks.timeseries.aggregate-cron:*/10 * * * * *}")
+    public int aggregate() {
+        aggregateLock.lock();
+        try {
+            int processed = 0;
+            while (true) {
+                Integer count = transactionTemplate.execute(status -> aggregateBatch());
+                if (count == null || count == 0) {
+                    break;
+                }
+                processed += count;
+            }
+            return processed;
+        } finally {
+            aggregateLock.unlock();
+        }
+    }
+
+    private int aggregateBatch() {
+        List<Long> ids = new ArrayList<>(BATCH);
+        Map<Key, long[]> sums = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, user_id, stat_date, created, completed, open_delta FROM task_activity "
+                        + "ORDER BY id LIMIT " + BATCH + " FOR UPDATE",
+                rs -> {
+                    ids.add(rs.getLong("id"));
+                    long[] sum = sums.computeIfAbsent(new Key(rs.getLong("user_id"),
+                            rs.getDate("stat_date").toLocalDate()), key -> new long[3]);
+                    sum[0] += rs.getInt("created");
+                    sum[1] += rs.getInt("completed");
+                    sum[2] += rs.getInt("open_delta");
+                });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Object[]> upserts = new ArrayList<>(sums.size());
+        sums.forEach((key, sum) -> upserts.add(new Object[]{key.userId(), Date.valueOf(key.day()),
+                sum[0], sum[1], sum[2]}));
+        jdbcTemplate.batchUpdate("INSERT INTO task_daily_stats (user_id, stat_date, created, completed, open_delta) "
+                + "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE created = created + VALUES(created), "
+                + "completed = completed + VALUES(completed), open_delta = open_delta + VALUES(open_delta)", upserts);
+        jdbcTemplate.update("DELETE FROM task_activity WHERE id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")", ids.toArray());
+        return ids.size();
+    }
+
+    private static Granularity parse(String granularity) {
+        try {
+            return Granularity.valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Invalid granularity: " + granularity + " (day, week or month)");
+        }
+    }
+
+    // Tuần bắt đầu thứ Hai; điểm đầu tiên bắt đầu từ from dù from nằm giữa tuần/tháng
+    private static LocalDate bucketStart(LocalDate day, Granularity unit, LocalDate from) {
+        LocalDate start = switch (unit) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+        return start.isBefore(from) ? from : start;
+    }
+}
@@ -1,24 +1,184 @@
 package vn.poly.tuan2.service;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.event.UserChangedEvent;
 import vn.poly.tuan2.repository.UserRepository;
 import vn.poly.tuan2.security.UserDetailsImpl; // Import lớp UserDetailsImpl
+import vn.poly.tuan2.util.CacheLoads;
 
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nạp user cho xác thực qua cache user-details trong bộ nhớ. User bị sửa/xóa được xóa khỏi cache (và khỏi cache cấp 2
+ * của Hibernate) ngay sau commit trên instance ghi, và trên mọi instance khác khi chúng đọc dòng user_change tương
+ * ứng (pollUserChanges), nên bản cũ chỉ còn được dùng tối đa một poll-interval chứ không tới hết TTL.
+ */
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${application.security.user-details-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${application.security.user-details-cache.ttl:300000}")
+    private long cacheTtlMs;
+
+    // Token cũ hơn khoảng này luôn được nạp lại từ DB (JwtUtils), nên chỉ cần nhớ thay đổi trong khoảng đó
+    @Value("${application.security.jwt.claims-auth.max-staleness:300000}")
+    private long claimsMaxStalenessMs;
+
+    // Mỗi lần đọc user_change lùi lại khoảng này so với lần trước, để không bỏ sót dòng của transaction commit chậm
+    @Value("${application.security.user-changes.overlap:30000}")
+    private long changesOverlapMs;
+
+    @Value("${application.security.user-changes.retention:86400000}")
+    private long changesRetentionMs;
+
+    @Value("${application.datasource.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${application.datasource.replica.sticky-window:5000}")
+    private long replicaStickyWindowMs;
+
+    // Async để nạp trên thread gọi, không trong lock của cache (xem CacheLoads)
+    private AsyncCache<String, UserDetailsImpl> userDetailsCache;
+
+    // Thời điểm (đồng hồ của instance này) user bị sửa/xóa, theo id: token cấp trước đó không được dựng principal từ claims
+    private com.github.benmanes.caffeine.cache.Cache<Long, Long> changedAt;
+
+    // Dòng user_change đã xử lý, để các lần đọc chồng lấn không xóa cache của cùng một thay đổi nhiều lần
+    private com.github.benmanes.caffeine.cache.Cache<Long, Boolean> seenChanges;
+
+    // Giờ của DB ở lần đọc user_change trước
+    private volatile Timestamp changesReadAt;
+
+    // Chỉ nạp trên cache miss nên không bọc cả loadUserByUsername (mỗi request xác thực sẽ mở một transaction)
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        userDetailsCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .recordStats()
+                .buildAsync();
+        changedAt = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(claimsMaxStalenessMs))
+                .build();
+        seenChanges = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(2 * changesOverlapMs))
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, userDetailsCache, "user-details");
+        }
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
-        return UserDetailsImpl.build(user);
+        return CacheLoads.get(userDetailsCache, username, this::loadFromDatabase);
+    }
+
+    private UserDetailsImpl loadFromDatabase(String username) {
+        return readOnlyTransaction.execute(status -> {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+            return UserDetailsImpl.build(user);
+        });
+    }
+
+    // true: user đã bị sửa/xóa sau khi token được cấp, principal phải được nạp lại thay vì dựng từ claims
+    public boolean changedSince(Long userId, Date issuedAt) {
+        Long at = changedAt.getIfPresent(userId);
+        return at != null && (issuedAt == null || issuedAt.getTime() <= at);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUserId(), event.getUsername());
+        // Lần nạp lại ngay sau commit có thể đọc từ replica chưa kịp nhận thay đổi; xóa thêm lần nữa khi hết
+        // sticky-window để bản cũ không nằm lại trong cache tới hết TTL
+        if (!replicaUrls.isBlank()) {
+            CompletableFuture.delayedExecutor(replicaStickyWindowMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> invalidate(event.getUserId(), event.getUsername()));
+        }
+    }
+
+    /**
+     * Đọc các dòng user_change mà instance khác đã ghi và xóa các user đó khỏi cache của instance này. Đọc bằng
+     * JdbcTemplate ngoài transaction nên luôn đọc primary, không phải replica. Dòng được lọc theo changed_at (giờ
+     * của DB) từ lần đọc trước lùi lại overlap: changed_at được gán lúc INSERT, trước khi transaction commit.
+     */
+    @Scheduled(fixedDelayString = "${application.security.user-changes.poll-interval:1000}")
+    public void pollUserChanges() {
+        Timestamp now = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(6)", Timestamp.class);
+        // Lần đầu cũng lùi overlap: user có thể đã vào cache trước lần đọc này
+        Timestamp since = new Timestamp((changesReadAt != null ? changesReadAt : now).getTime() - changesOverlapMs);
+        jdbcTemplate.query("SELECT id, user_id, username FROM user_change WHERE changed_at >= ?",
+                rs -> {
+                    if (seenChanges.asMap().putIfAbsent(rs.getLong("id"), Boolean.TRUE) == null) {
+                        invalidate(rs.getLong("user_id"), rs.getString("username"));
+                    }
+                }, since);
+        changesReadAt = now;
+    }
+
+    // Mọi instance cùng chạy; DELETE theo điều kiện nên chạy trùng cũng không sao
+    @Scheduled(fixedDelayString = "${application.security.user-changes.purge-interval:3600000}")
+    public void purgeUserChanges() {
+        jdbcTemplate.update("DELETE FROM user_change WHERE changed_at < ?",
+                new Timestamp(System.currentTimeMillis() - changesRetentionMs));
+    }
+
+    // Xóa theo id để bắt cả trường hợp username vừa bị đổi.
+    // Cache cấp 2 xóa trước: READ_WRITE đã tự cập nhật lúc commit, nhưng bản cũ đọc lại từ replica vẫn có thể
+    // được đưa vào, và lần nạp lại user-details ngay sau đây sẽ lấy roles từ đó
+    private void invalidate(Long userId, String username) {
+        changedAt.put(userId, System.currentTimeMillis());
+        Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        secondLevelCache.evictEntityData(User.class, userId);
+        secondLevelCache.evictCollectionData(User.ROLES_COLLECTION, userId);
+        if (username != null) {
+            userDetailsCache.synchronous().invalidate(username);
+        }
+        CacheLoads.removeIf(userDetailsCache, (cachedUsername, userDetails) -> userDetails.getId().equals(userId));
     }
-}
\ No newline at end of file
+}
@@ -1,12 +1,21 @@
 package vn.poly.tuan2.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vn.poly.tuan2.entity.Role;
 import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.event.UserChangedEvent;
+import vn.poly.tuan2.exception.ResourceNotFoundException;
+import vn.poly.tuan2.repository.UserChangeRepository;
 import vn.poly.tuan2.repository.UserRepository;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class UserService {
@@ -14,27 +23,62 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserChangeRepository userChangeRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TaskStatsService taskStatsService;
+
+    @Transactional
     public User createUser(User user) {
         return userRepository.save(user);
     }
 
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> getUserById(Long id) {
         return userRepository.findById(id);
     }
 
+    @Transactional
     public User updateUser(Long id, User userDetails) {
         User user = userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found with id " + id));
+        String oldUsername = user.getUsername();
         user.setUsername(userDetails.getUsername());
         user.setPassword(userDetails.getPassword());
         user.setEmail(userDetails.getEmail());
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        if (!Objects.equals(oldUsername, savedUser.getUsername())) {
+            taskStatsService.listChanged(id);
+        }
+        userChangeRepository.append(id, oldUsername);
+        eventPublisher.publishEvent(new UserChangedEvent(id, oldUsername));
+        return savedUser;
+    }
+
+    @Transactional
+    public User updateRoles(Long id, Set<Role> roles) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with ID: " + id));
+        user.setRoles(new HashSet<>(roles));
+        User savedUser = userRepository.save(user);
+        userChangeRepository.append(id, user.getUsername());
+        eventPublisher.publishEvent(new UserChangedEvent(id, user.getUsername()));
+        return savedUser;
     }
 
+    @Transactional
     public void deleteUser(Long id) {
         userRepository.deleteById(id);
+        taskStatsService.userDeleted(id);
+        userChangeRepository.append(id, null);
+        eventPublisher.publishEvent(new UserChangedEvent(id, null));
     }
 }
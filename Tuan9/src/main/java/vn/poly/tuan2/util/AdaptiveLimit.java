@@ -0,0 +1,124 @@
+package vn.poly.tuan2.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giới hạn số request chạy đồng thời, tự điều chỉnh theo độ trễ quan sát được (kiểu gradient): so RTT trung bình
+ * ngắn hạn với RTT nền dài hạn, độ trễ tăng lên (request bắt đầu xếp hàng) thì limit co lại theo tỉ lệ, ổn định thì
+ * limit nhích lên thêm khoảng sqrt(limit). Khi request phải chờ connection lâu hơn poolWaitThreshold thì pool đã là
+ * nút thắt, limit bị nhân backoff ngay (AIMD) mà không chờ RTT phản ánh.
+ * tryAcquire không bao giờ chờ: vượt limit là từ chối để caller trả lỗi ngay.
+ */
+public class AdaptiveLimit {
+
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long poolWaitThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile double limit;
+    private volatile double shortRttNanos;
+    private double longRttNanos;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, long poolWaitThresholdMs) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limit range [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.poolWaitThresholdNanos = TimeUnit.MILLISECONDS.toNanos(poolWaitThresholdMs);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    // Giới hạn cố định: min = max, không điều chỉnh
+    public static AdaptiveLimit fixed(int limit) {
+        return new AdaptiveLimit(limit, limit, limit, 0);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Trả chỗ và cập nhật limit theo thời gian xử lý và thời gian chờ connection của request vừa xong.
+     */
+    public void release(long rttNanos, long poolWaitNanos) {
+        int inFlightAtRelease = inFlight.getAndDecrement();
+        if (minLimit == maxLimit) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (poolWaitNanos > poolWaitThresholdNanos) {
+                limit = Math.max(minLimit, limit * BACKOFF);
+                return;
+            }
+            update(rttNanos, inFlightAtRelease);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Trả chỗ mà không lấy mẫu (request chưa thực sự chạy)
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    private void update(long rttNanos, int inFlightAtRelease) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        double shortRtt = ema(shortRttNanos, rttNanos, SHORT_WINDOW);
+        shortRttNanos = shortRtt;
+        longRttNanos = ema(longRttNanos, rttNanos, LONG_WINDOW);
+        // Tải giảm hẳn sau một đợt quá tải: kéo RTT nền về dần để limit không bị nới quá tay
+        if (longRttNanos / shortRtt > 2) {
+            longRttNanos *= 0.95;
+        }
+        // Đang dùng chưa tới nửa limit thì RTT không nói được gì về sức chứa, giữ nguyên
+        if (inFlightAtRelease < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        double smoothed = limit * (1 - SMOOTHING) + target * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, smoothed));
+    }
+
+    private static double ema(double current, long sample, int window) {
+        double alpha = 2.0 / (window + 1);
+        return current + alpha * (sample - current);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    // Ước lượng thời gian đến khi có chỗ trống: RTT ngắn hạn, ít nhất 1 giây
+    public long getRetryAfterSeconds() {
+        return Math.max(1, (long) Math.ceil(shortRttNanos / TimeUnit.SECONDS.toNanos(1)));
+    }
+}
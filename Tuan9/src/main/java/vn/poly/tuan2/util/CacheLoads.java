@@ -0,0 +1,81 @@
+package vn.poly.tuan2.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Nạp cache có loader đọc DB mà không ghim virtual thread. Cache.get(key, loader) của Caffeine chạy loader bên trong
+ * ConcurrentHashMap.compute (synchronized): trên Java 21 virtual thread chờ JDBC hoặc chờ permit của
+ * ConnectionLimiter ở đó giữ luôn carrier, các thread đang cầm connection không còn carrier để chạy tiếp.
+ * Ở đây map chỉ nhận một CompletableFuture rỗng, thread đặt được future thì tự nạp trên chính nó (vẫn trong
+ * transaction của nó), các thread khác cùng key chờ future đó. Entry bị invalidate trong lúc nạp thì future bị bỏ
+ * khỏi map, giá trị vừa nạp không quay lại cache.
+ */
+public final class CacheLoads {
+
+    private CacheLoads() {
+    }
+
+    public static <K, V> V get(AsyncCache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> loading = new CompletableFuture<>();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> loading);
+        if (future != loading) {
+            return join(future);
+        }
+        try {
+            V value = loader.apply(key);
+            loading.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            // Caffeine tự bỏ future lỗi khỏi cache
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Sửa giá trị đã nạp xong; entry đang nạp dở bị bỏ vì không biết giá trị sắp có đã tính thay đổi này chưa.
+     */
+    public static <K, V> void computeIfPresent(AsyncCache<K, V> cache, K key,
+                                              BiFunction<? super K, ? super V, ? extends V> remapping) {
+        cache.asMap().computeIfPresent(key, (k, future) -> {
+            V value = valueIfReady(future);
+            if (value == null) {
+                return null;
+            }
+            V updated = remapping.apply(k, value);
+            return updated == null ? null : CompletableFuture.completedFuture(updated);
+        });
+    }
+
+    // Entry đang nạp dở cũng bị xóa, như computeIfPresent
+    public static <K, V> void removeIf(AsyncCache<K, V> cache, BiPredicate<? super K, ? super V> predicate) {
+        cache.asMap().entrySet().removeIf(entry -> {
+            V value = valueIfReady(entry.getValue());
+            return value == null || predicate.test(entry.getKey(), value);
+        });
+    }
+
+    private static <V> V valueIfReady(CompletableFuture<V> future) {
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package vn.poly.tuan2.util;
+
+import vn.poly.tuan2.exception.PreconditionFailedException;
+
+/**
+ * ETag mạnh của một task là số version của nó: "3".
+ */
+public final class TaskETags {
+
+    private TaskETags() {
+    }
+
+    public static String strong(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Version mà client yêu cầu qua If-Match, hoặc null khi không có điều kiện (header vắng hoặc "*").
+     * ETag yếu hay giá trị lạ không bao giờ khớp theo so sánh mạnh nên trả về 412 luôn.
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match does not match the current task version");
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match the current task version");
+        }
+    }
+}
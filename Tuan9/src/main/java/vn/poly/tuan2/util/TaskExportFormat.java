@@ -0,0 +1,34 @@
+package vn.poly.tuan2.util;
+
+import vn.poly.tuan2.exception.BadRequestException;
+
+import java.util.Locale;
+
+public enum TaskExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+
+    TaskExportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileName() {
+        return "tasks." + extension;
+    }
+
+    public static TaskExportFormat parse(String format) {
+        try {
+            return valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Invalid format: " + format + " (ndjson or csv)");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package vn.poly.tuan2.util;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.exception.BadRequestException;
+import vn.poly.tuan2.request.TaskFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chỉ cho sắp xếp theo đúng thứ tự của một index trên task, để ?sort= từ client không biến một trang thành filesort.
+ * Mỗi cột được phép được mở rộng thành các cột của index phía sau nó, kết thúc bằng created_at, id:
+ * với mọi bộ lọc (không lọc, theo status, theo user, theo user và status) đều có index đọc ra đúng thứ tự đó.
+ * Sắp xếp theo id đơn thuần không được hỗ trợ: chỉ khóa chính có thứ tự đó, nên có bộ lọc là phải sắp xếp lại.
+ */
+public final class TaskSorts {
+
+    public static final Map<String, List<String>> SORTABLE = Map.of(
+            "createdAt", List.of("createdAt", "id"),
+            "status", List.of("status", "createdAt", "id"));
+
+    // Cột khóa ngoại task.assigned_to_user_id, không phải user.id của bảng được join
+    public static final String ASSIGNEE = "assignedTo.id";
+
+    private TaskSorts() {
+    }
+
+    /**
+     * Kiểm tra whitelist và trả về thứ tự đầy đủ của index, cùng một chiều cho mọi cột (đọc index xuôi hoặc ngược).
+     * Client có thể ghi thêm các cột phía sau (sort=status&sort=createdAt) miễn là đúng thứ tự và cùng chiều.
+     */
+    public static Sort checked(Sort sort) {
+        if (sort.isUnsorted()) {
+            return TaskCursor.SORT;
+        }
+        Sort.Order first = sort.iterator().next();
+        List<String> columns = SORTABLE.get(first.getProperty());
+        if (columns == null) {
+            throw unsupported(first.getProperty());
+        }
+        int position = 0;
+        for (Sort.Order order : sort) {
+            if (position >= columns.size() || !columns.get(position).equals(order.getProperty())) {
+                throw unsupported(order.getProperty());
+            }
+            if (order.getDirection() != first.getDirection()) {
+                throw new BadRequestException("Sorting by '" + order.getProperty() + "' must use the same direction as '"
+                        + first.getProperty() + "'");
+            }
+            position++;
+        }
+        return Sort.by(first.getDirection(), columns.toArray(String[]::new));
+    }
+
+    public static Pageable checked(Pageable pageable) {
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), checked(pageable.getSort()));
+    }
+
+    /**
+     * Thêm vào đầu sort các cột mà bộ lọc cố định về một giá trị (assignee, status khi chỉ còn một trạng thái),
+     * theo thứ tự cột của index. Thứ tự kết quả không đổi nhưng ORDER BY trùng với đầu index: MySQL tự bỏ các cột hằng
+     * này, còn H2 chỉ đọc index theo thứ tự khi ORDER BY bắt đầu đúng bằng các cột của index.
+     */
+    public static Sort pinned(TaskFilter filter, Sort sort) {
+        if (sort.isUnsorted()) {
+            return sort;
+        }
+        List<String> prefix = new ArrayList<>();
+        if (filter.getAssigneeId() != null) {
+            prefix.add(ASSIGNEE);
+        }
+        Set<TaskStatus> statuses = filter.effectiveStatuses();
+        boolean singleStatus = filter.isOverdue() || statuses != null && statuses.size() == 1;
+        if (singleStatus && sort.getOrderFor("status") == null) {
+            prefix.add("status");
+        }
+        if (prefix.isEmpty()) {
+            return sort;
+        }
+        return Sort.by(sort.iterator().next().getDirection(), prefix.toArray(String[]::new)).and(sort);
+    }
+
+    private static BadRequestException unsupported(String property) {
+        return new BadRequestException("Sorting by '" + property + "' is not supported, supported orders are "
+                + SORTABLE.values());
+    }
+}
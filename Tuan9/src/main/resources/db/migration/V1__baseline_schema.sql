@@ -0,0 +1,43 @@
+-- Schema ban đầu như Hibernate (ddl-auto=update) đã tạo trên MySQL, trước mọi thay đổi schema sau đó.
+-- Database đã có sẵn bảng được baseline ở version 1 (spring.flyway.baseline-on-migrate) nên file này chỉ chạy trên DB mới;
+-- những gì thêm sau đó (task.version, id_generator, index) nằm ở V2 để database cũ cũng nhận được.
+
+create table user (
+    id bigint not null auto_increment,
+    email varchar(255) not null,
+    password varchar(255) not null,
+    username varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table user_roles (
+    user_id bigint not null,
+    roles enum ('ADMIN','USER')
+) engine=InnoDB;
+
+create table task (
+    due_date date,
+    assigned_to_user_id bigint,
+    created_at datetime(6) not null,
+    id bigint not null auto_increment,
+    description varchar(255),
+    title varchar(255),
+    status enum ('COMPLETED','PENDING'),
+    primary key (id)
+) engine=InnoDB;
+
+alter table user
+    add constraint UKob8kqyqqgmefl0aco34akdtpe unique (email);
+
+alter table user
+    add constraint UKsb8bbouer5wak8vyiiy4pf2bx unique (username);
+
+alter table task
+    add constraint FKcprx52d891r6afk3sr5uaxcxr
+    foreign key (assigned_to_user_id)
+    references user (id);
+
+alter table user_roles
+    add constraint FK55itppkw3i07do3h7qoclqd4k
+    foreign key (user_id)
+    references user (id);
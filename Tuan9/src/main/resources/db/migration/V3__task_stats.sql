@@ -0,0 +1,24 @@
+-- Bộ đếm task theo user, ghi cùng transaction với mỗi lần tạo/sửa/xóa task (TaskStatsService).
+-- overdue = số task PENDING có due_date < overdue_as_of; job rollover hằng ngày dời overdue_as_of về hôm nay.
+create table task_stats (
+    completed bigint not null,
+    overdue bigint not null,
+    overdue_as_of date not null,
+    pending bigint not null,
+    user_id bigint not null,
+    primary key (user_id)
+) engine=InnoDB;
+
+-- Rollover/reconcile đếm task quá hạn của một nhóm user: WHERE assigned_to_user_id = ? AND status = ? AND due_date < ?
+create index idx_task_assignee_status_due
+    on task (assigned_to_user_id, status, due_date);
+
+insert into task_stats (user_id, pending, completed, overdue, overdue_as_of)
+select assigned_to_user_id,
+       sum(case when status = 'PENDING' then 1 else 0 end),
+       sum(case when status = 'COMPLETED' then 1 else 0 end),
+       sum(case when status = 'PENDING' and due_date < current_date then 1 else 0 end),
+       current_date
+from task
+where assigned_to_user_id is not null
+group by assigned_to_user_id;
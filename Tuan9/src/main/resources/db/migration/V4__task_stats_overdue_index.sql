@@ -0,0 +1,4 @@
+-- Top user theo số task quá hạn: WHERE overdue > 0 ORDER BY overdue DESC, user_id DESC LIMIT ?
+-- đọc đúng N mục đầu của index thay vì sắp xếp cả bảng task_stats
+create index idx_task_stats_overdue
+    on task_stats (overdue desc, user_id desc);
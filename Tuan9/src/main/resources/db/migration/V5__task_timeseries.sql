@@ -0,0 +1,24 @@
+-- Thời điểm task chuyển sang COMPLETED; null với task chưa hoàn thành và task hoàn thành trước migration này
+alter table task add column completed_at datetime(6);
+
+-- Outbox: mỗi câu ghi task thêm một dòng delta theo user trong cùng transaction (TaskStatsService).
+-- TaskTimeseriesService gom các dòng vào task_daily_stats rồi xóa.
+create table task_activity (
+    completed integer not null,
+    created integer not null,
+    stat_date date not null,
+    id bigint not null auto_increment,
+    open_delta integer not null,
+    user_id bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+-- Một dòng mỗi user mỗi ngày có hoạt động; biểu đồ N ngày đọc tối đa N dòng theo khóa chính
+create table task_daily_stats (
+    completed bigint not null,
+    created bigint not null,
+    stat_date date not null,
+    open_delta bigint not null,
+    user_id bigint not null,
+    primary key (user_id, stat_date)
+) engine=InnoDB;
@@ -0,0 +1,3 @@
+-- Phiên bản danh sách task của từng user, tăng trong cùng transaction với mọi câu ghi làm đổi danh sách đó
+-- (TaskStatsService); ETag yếu của GET /api/tasks đọc cột này nên mọi instance trả cùng một ETag
+alter table task_stats add column list_version bigint default 0 not null;
@@ -0,0 +1,13 @@
+-- Outbox thay đổi user: UserService thêm một dòng trong cùng transaction với mỗi lần sửa/xóa user. Mọi instance
+-- đọc định kỳ các dòng mới (UserDetailsServiceImpl) và xóa user đó khỏi cache user-details và cache cấp 2 của mình.
+create table user_change (
+    changed_at datetime(6) not null,
+    id bigint not null auto_increment,
+    user_id bigint not null,
+    username varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+-- Mỗi lần đọc: WHERE changed_at >= ?; job dọn dẹp: WHERE changed_at < ?
+create index idx_user_change_changed_at
+    on user_change (changed_at);
@@ -0,0 +1,11 @@
+-- Task hoàn thành trước V5 không có completed_at. Lấy created_at (thời điểm sớm nhất có thể) để job dọn task
+-- đã hoàn thành vẫn xóa được chúng như trước khi ngưỡng tuổi chuyển sang completed_at
+update task set completed_at = created_at where status = 'COMPLETED' and completed_at is null;
+
+-- Dọn task đã hoàn thành của mọi user (đếm theo user rồi xóa): WHERE status = ? AND completed_at < ?
+create index idx_task_status_completed
+    on task (status, completed_at);
+
+-- Dọn task đã hoàn thành của một user: WHERE assigned_to_user_id = ? AND status = ? AND completed_at < ?
+create index idx_task_assignee_status_completed
+    on task (assigned_to_user_id, status, completed_at);
@@ -0,0 +1,14 @@
+-- Outbox cho chỉ mục tìm kiếm: mỗi transaction ghi task thêm các dòng ngay trước commit (TaskSearchIndex). Mọi
+-- instance đọc định kỳ các dòng mới và đánh chỉ mục lại từ DB: task_id là một task được tạo/sửa/xóa, user_id (task_id
+-- null) là mọi task của user đó, sau reassign.
+create table task_change (
+    changed_at datetime(6) not null,
+    id bigint not null auto_increment,
+    task_id bigint,
+    user_id bigint,
+    primary key (id)
+) engine=InnoDB;
+
+-- Mỗi lần đọc: WHERE changed_at >= ?; job dọn dẹp: WHERE changed_at < ?
+create index idx_task_change_changed_at
+    on task_change (changed_at);
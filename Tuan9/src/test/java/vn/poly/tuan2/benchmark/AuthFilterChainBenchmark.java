@@ -0,0 +1,109 @@
+package vn.poly.tuan2.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import vn.poly.tuan2.security.AuthTokenFilter;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+import vn.poly.tuan2.service.UserDetailsServiceImpl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí filter xác thực cho mỗi request: cấu hình cũ (JwtAuthenticationFilter + AuthTokenFilter,
+ * mỗi filter parse token hai lần và gọi loadUserByUsername) so với AuthTokenFilter hợp nhất.
+ * loadUserByUsername được stub nên con số của cấu hình cũ chưa tính hai câu SELECT thật.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthFilterChainBenchmark {
+
+    private AuthTokenFilter filter;
+    private UserDetailsServiceImpl userDetailsService;
+    private String token;
+
+    @Setup
+    public void setUp() throws ServletException {
+        JwtUtils jwtUtils = JwtUtilsBenchmark.newJwtUtils(10000L);
+        token = JwtUtilsBenchmark.newToken(jwtUtils);
+        userDetailsService = new UserDetailsServiceImpl() {
+            @Override
+            public UserDetails loadUserByUsername(String username) {
+                return new UserDetailsImpl(1L, username, "bench@example.com", "x",
+                        List.of(new SimpleGrantedAuthority("ROLE_USER")));
+            }
+        };
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        filter.afterPropertiesSet();
+    }
+
+    private MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+
+    @TearDown(Level.Invocation)
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Benchmark
+    public Object legacyTwoFilters() {
+        MockHttpServletRequest request = request("/api/tasks");
+        legacyFilter(request);
+        legacyFilter(request);
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private void legacyFilter(MockHttpServletRequest request) {
+        String jwt = request.getHeader("Authorization").substring(7);
+        Jwts.parser().verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(JwtUtilsBenchmark.SECRET))).build().parse(jwt);
+        String username = Jwts.parser().verifyWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(JwtUtilsBenchmark.SECRET)))
+                .build().parseSignedClaims(jwt).getPayload().getSubject();
+        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        UsernamePasswordAuthenticationToken authentication =
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
+    @Benchmark
+    public Object consolidatedFilter() throws ServletException, IOException {
+        filter.doFilter(request("/api/tasks"), new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Benchmark
+    public Object consolidatedFilterPublicRoute() throws ServletException, IOException {
+        filter.doFilter(request("/api/auth/login"), new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AuthFilterChainBenchmark.class.getSimpleName()).build()).run();
+    }
+}
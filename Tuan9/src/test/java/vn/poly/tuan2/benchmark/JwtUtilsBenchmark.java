@@ -0,0 +1,101 @@
+package vn.poly.tuan2.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chi phí verify token: cách cũ (dựng lại key + parser và parse hai lần)
+ * với verifyAndExtract (parser dựng sẵn + cache token đã verify).
+ *
+ * Chạy main() từ IDE, hoặc sau khi mvn test-compile:
+ *   java -cp target/test-classes:target/classes:$(test classpath) org.openjdk.jmh.Main JwtUtilsBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtUtilsBenchmark {
+
+    static final String SECRET = "dGVzdC1zZWNyZXQta2V5LWZvci1qd3QtdXRpbHMtdW5pdC10ZXN0cy0xMjM0NTY=";
+
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = newJwtUtils(10000L);
+        token = newToken(jwtUtils);
+    }
+
+    static JwtUtils newJwtUtils(long cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        ReflectionTestUtils.setField(jwtUtils, "claimsAuthEnabled", true);
+        ReflectionTestUtils.setField(jwtUtils, "claimsMaxStalenessMs", 300000L);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaxSize", cacheSize);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheTtlMs", 600000L);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    static String newToken(JwtUtils jwtUtils) {
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        UserDetailsImpl principal = new UserDetailsImpl(1L, "bench", "bench@example.com", null, authorities);
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, authorities));
+    }
+
+    @Benchmark
+    public String legacyValidateThenParse() {
+        SecretKey key = io.jsonwebtoken.security.Keys.hmacShaKeyFor(io.jsonwebtoken.io.Decoders.BASE64.decode(SECRET));
+        Jwts.parser().verifyWith(key).build().parse(token);
+        SecretKey key2 = io.jsonwebtoken.security.Keys.hmacShaKeyFor(io.jsonwebtoken.io.Decoders.BASE64.decode(SECRET));
+        return Jwts.parser().verifyWith(key2).build().parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    @Benchmark
+    public Claims verifyAndExtractCached() {
+        return jwtUtils.verifyAndExtract(token);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Uncached {
+        JwtUtils jwtUtils;
+        String token;
+
+        @Setup
+        public void setUp() {
+            jwtUtils = newJwtUtils(0L);
+            token = newToken(jwtUtils);
+        }
+    }
+
+    @Benchmark
+    public Claims verifyAndExtractUncached(Uncached state) {
+        return state.jwtUtils.verifyAndExtract(state.token);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(JwtUtilsBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,103 @@
+package vn.poly.tuan2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+import vn.poly.tuan2.service.TaskAnalyticsService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analytics cho admin trên 100.000 user mà bộ đếm task_stats cộng lại thành khoảng 50.000.000 task.
+ * Các endpoint chỉ đọc task_stats nên kích thước bảng task không ảnh hưởng; groupByTaskTable cho thấy
+ * GROUP BY trực tiếp trên bảng task tốn bao nhiêu dù chỉ với 1.000.000 dòng.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class TaskAnalyticsBenchmark {
+
+    private static final int USERS = 100_000;
+    private static final int TASKS = 1_000_000;
+
+    private ConfigurableApplicationContext context;
+    private TaskAnalyticsService analytics;
+    private TaskStatsRepository taskStatsRepository;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // OPTIMIZE_REUSE_RESULTS=FALSE: H2 không trả lại kết quả cũ cho câu lặp lại trên bảng không đổi
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--spring.datasource.url=jdbc:h2:mem:analytics;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1;"
+                                + "OPTIMIZE_REUSE_RESULTS=FALSE");
+        analytics = context.getBean(TaskAnalyticsService.class);
+        taskStatsRepository = context.getBean(TaskStatsRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+        // Trung bình 350 PENDING + 150 COMPLETED mỗi user: 50 triệu task
+        jdbcTemplate.update("INSERT INTO task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+                + "SELECT X, MOD(X * 7919, 701), MOD(X * 104729, 301), MOD(X * 31, 51), CURRENT_DATE "
+                + "FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO task (id, title, status, due_date, created_at, version, assigned_to_user_id) "
+                + "SELECT X, 'Task ' || X, CASEWHEN(MOD(X, 3) = 0, 'COMPLETED', 'PENDING'), "
+                + "DATEADD('DAY', MOD(X, 60) - 30, CURRENT_DATE), "
+                + "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), 0, MOD(X, ?) + 1 "
+                + "FROM SYSTEM_RANGE(1, ?)", USERS, TASKS);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // GET /summary trong trạng thái bình thường: giá trị đã cache, cộng dồn theo sự kiện
+    @Benchmark
+    public Object summaryCached() {
+        return analytics.getSummary();
+    }
+
+    // Lần đọc lại cả bảng bộ đếm sau mỗi refresh-after
+    @Benchmark
+    public Object summaryRecompute() {
+        return taskStatsRepository.summarize();
+    }
+
+    // Cache top quá hạn vừa hết hạn: đọc 10 mục đầu của index (overdue desc, user_id desc)
+    @Benchmark
+    public Object topOverdueUncached() {
+        return taskStatsRepository.findTopOverdue(PageRequest.of(0, 10));
+    }
+
+    @Benchmark
+    public Object userStatsPage() {
+        return analytics.getUserStats("50000", 50);
+    }
+
+    @Benchmark
+    public Object groupByTaskTable() {
+        return jdbcTemplate.queryForList("SELECT assigned_to_user_id, status, COUNT(*) FROM task "
+                + "GROUP BY assigned_to_user_id, status");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskAnalyticsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+package vn.poly.tuan2.benchmark;
+
+import jakarta.servlet.Filter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tạo 10.000 task qua toàn bộ stack (filter JWT, controller, Hibernate, H2 profile test):
+ * 10.000 lần POST /api/tasks so với một lần POST /api/tasks/batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class TaskBatchInsertBenchmark {
+
+    private static final int TASKS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private TaskRepository taskRepository;
+    private MockMvc mockMvc;
+    private String bearer;
+    private String batchBody;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .profiles("test")
+                .properties("server.port=0", "logging.level.root=WARN")
+                .run();
+        taskRepository = context.getBean(TaskRepository.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+
+        User user = context.getBean(UserRepository.class).save(User.builder()
+                .username("bench")
+                .email("bench@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        UserDetailsImpl principal = UserDetailsImpl.build(user);
+        bearer = "Bearer " + context.getBean(JwtUtils.class).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < TASKS; i++) {
+            body.append(i == 0 ? "" : ",").append(taskJson(i));
+        }
+        batchBody = body.append("]").toString();
+    }
+
+    private static String taskJson(int i) {
+        return "{\"title\":\"Task " + i + "\",\"description\":\"Imported\",\"dueDate\":\"2025-01-01\"}";
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearTasks() {
+        taskRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleEndpoint() throws Exception {
+        for (int i = 0; i < TASKS; i++) {
+            mockMvc.perform(post("/api/tasks")
+                            .header("Authorization", bearer)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(taskJson(i)))
+                    .andExpect(status().isCreated());
+        }
+    }
+
+    @Benchmark
+    public void batchEndpoint() throws Exception {
+        mockMvc.perform(post("/api/tasks/batch")
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batchBody))
+                .andExpect(status().isOk());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskBatchInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
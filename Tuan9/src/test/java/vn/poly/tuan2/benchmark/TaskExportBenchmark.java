@@ -0,0 +1,174 @@
+package vn.poly.tuan2.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.service.TaskExporter;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Export 5.000.000 task với heap chỉ 192 MB, lớn hơn nhiều lần so với kích thước dữ liệu xuất ra (CSV ~600 MB):
+ * nếu có chỗ nào gom dòng vào bộ nhớ thì fork này chết vì OutOfMemoryError. Sau mỗi lần chạy in ra lượng heap
+ * còn sống lớn nhất sau các lần full GC trong lúc export (Serial GC: chỉ full GC mới dọn old gen, nên con số
+ * sau young GC còn lẫn rác); con số này phải phẳng, không tăng theo số dòng.
+ * DB là file H2 (hệ file async: để thread bị interrupt không làm đóng file); kết quả lớn H2 tự ghi ra file tạm
+ * nên phía DB cũng không giữ 5 triệu dòng trên heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, jvmArgs = {"-Xmx192m", "-XX:+UseSerialGC"})
+public class TaskExportBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int TASKS = 5_000_000;
+    private static final int CHUNK = 250_000;
+    private static final File DB_DIR = new File("target/export-benchmark");
+
+    @Param({"CSV", "NDJSON"})
+    private TaskExportFormat format;
+
+    private ConfigurableApplicationContext context;
+    private TaskExporter taskExporter;
+
+    private static class CountingOutputStream extends OutputStream {
+        private long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FileSystemUtils.deleteRecursively(DB_DIR);
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--spring.datasource.url=jdbc:h2:async:" + DB_DIR.getAbsolutePath() + "/db;MODE=MySQL;"
+                                + "NON_KEYWORDS=USER");
+        taskExporter = context.getBean(TaskExporter.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        // Export chỉ đi theo idx_task_created; bỏ các index còn lại để seed 5 triệu dòng không mất hàng chục phút
+        for (String index : new String[]{"idx_task_assignee_status_created", "idx_task_assignee_created",
+                "idx_task_status_created", "idx_task_assignee_status_due", "idx_task_status_completed",
+                "idx_task_assignee_status_completed"}) {
+            jdbcTemplate.execute("DROP INDEX " + index);
+        }
+        jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+        // Từng khối, mỗi khối một transaction, để undo log của H2 không chiếm heap
+        for (int from = 1; from <= TASKS; from += CHUNK) {
+            jdbcTemplate.update("INSERT INTO task (id, title, description, status, due_date, created_at, version, "
+                            + "assigned_to_user_id) "
+                            + "SELECT X, 'Task ' || X, 'Description, with a comma, for task ' || X, "
+                            + "CASEWHEN(MOD(X, 3) = 0, 'COMPLETED', 'PENDING'), "
+                            + "DATEADD('DAY', MOD(X, 60) - 30, CURRENT_DATE), "
+                            + "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), 0, MOD(X, ?) + 1 "
+                            + "FROM SYSTEM_RANGE(?, ?)",
+                    USERS, from, Math.min(TASKS, from + CHUNK - 1));
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        FileSystemUtils.deleteRecursively(DB_DIR);
+    }
+
+    // Bỏ qua Metaspace, CodeCache...: chỉ tính các vùng heap
+    private static final Set<String> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toSet());
+
+    private final AtomicLong maxLiveAfterGc = new AtomicLong();
+    private final AtomicLong collections = new AtomicLong();
+
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                (CompositeData) notification.getUserData());
+        if (!"end of major GC".equals(info.getGcAction())) {
+            return;
+        }
+        long live = info.getGcInfo().getMemoryUsageAfterGc().entrySet().stream()
+                .filter(pool -> HEAP_POOLS.contains(pool.getKey()))
+                .mapToLong(pool -> pool.getValue().getUsed())
+                .sum();
+        maxLiveAfterGc.accumulateAndGet(live, Math::max);
+        collections.incrementAndGet();
+    };
+
+    @Setup(Level.Iteration)
+    public void startGcTracking() {
+        System.gc();
+        maxLiveAfterGc.set(0);
+        collections.set(0);
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(gcListener, null, null);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportGcTracking() throws ListenerNotFoundException {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).removeNotificationListener(gcListener);
+        }
+        System.out.printf("%n  max live heap after full GC: %d MB over %d full collections (max heap %d MB)%n",
+                maxLiveAfterGc.get() >> 20, collections.get(), Runtime.getRuntime().maxMemory() >> 20);
+    }
+
+    @Benchmark
+    public long exportAll() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        long rows = taskExporter.export(new TaskFilter(), format, out);
+        if (rows != TASKS) {
+            throw new IllegalStateException("Exported " + rows + " rows, expected " + TASKS);
+        }
+        return out.bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskExportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
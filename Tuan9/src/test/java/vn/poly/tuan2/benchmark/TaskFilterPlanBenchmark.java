@@ -0,0 +1,105 @@
+package vn.poly.tuan2.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.dto.TaskDto;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.TaskSpecifications;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí dựng criteria cho mỗi request của bộ lọc động: cache cây criteria theo hình dạng bộ lọc
+ * (max-size=1000) so với dựng lại mỗi lần (max-size=0), trên bảng task rỗng.
+ * buildCriteria đo riêng phần dựng cây từ Specification, tức phần mà cache bỏ được.
+ * Máy một CPU cần warmup dài vì JIT tranh CPU với luồng benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 6, time = 5)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class TaskFilterPlanBenchmark {
+
+    @Param({"0", "1000"})
+    public int planCacheMaxSize;
+
+    private ConfigurableApplicationContext context;
+    private TaskRepository taskRepository;
+    private TaskFilter filter;
+    private Pageable pageable;
+    private CriteriaBuilder criteriaBuilder;
+    private Set<TaskSpecifications.Criterion> shape;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                // Tham số dòng lệnh để đè lên application-test.properties
+                .run("--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--application.tasks.query-plan-cache.max-size=" + planCacheMaxSize);
+        taskRepository = context.getBean(TaskRepository.class);
+        filter = TaskFilter.builder()
+                .assigneeId(1L)
+                .statuses(Set.of(TaskStatus.PENDING, TaskStatus.COMPLETED))
+                .dueFrom(LocalDate.now().minusDays(30))
+                .titlePrefix("Fix")
+                .overdue(true)
+                .build();
+        pageable = PageRequest.of(0, 10, TaskCursor.SORT);
+        criteriaBuilder = context.getBean(EntityManagerFactory.class).getCriteriaBuilder();
+        shape = TaskSpecifications.shapeOf(filter, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object filteredPage() {
+        return taskRepository.findDtoPage(filter, pageable);
+    }
+
+    @Benchmark
+    public Object buildCriteria() {
+        CriteriaQuery<TaskDto> query = criteriaBuilder.createQuery(TaskDto.class);
+        Root<Task> task = query.from(Task.class);
+        Join<Task, User> user = task.join("assignedTo", JoinType.LEFT);
+        query.select(criteriaBuilder.construct(TaskDto.class, task.get("id"), task.get("title"),
+                task.get("description"), task.get("status"), task.get("dueDate"), task.get("createdAt"),
+                user.get("id"), user.get("username"), task.get("version")));
+        query.where(TaskSpecifications.of(shape).toPredicate(task, query, criteriaBuilder));
+        query.orderBy(QueryUtils.toOrders(pageable.getSort(), task, criteriaBuilder));
+        return query;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskFilterPlanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
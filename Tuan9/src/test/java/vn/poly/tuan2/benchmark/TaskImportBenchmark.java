@@ -0,0 +1,146 @@
+package vn.poly.tuan2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.response.TaskImportProgress;
+import vn.poly.tuan2.service.TaskBatchService;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import 100.000 dòng mỗi lần gọi vào H2 trong bộ nhớ, đi qua đủ đường ghi thật: parse, validate, tra assignee,
+ * INSERT theo khối, bộ đếm task_stats, outbox task_activity và index tìm kiếm. Kết quả tính theo dòng/giây
+ * (OperationsPerInvocation); mục tiêu là từ 50.000 dòng/giây. plainJdbcInsert chỉ INSERT cùng số dòng vào bảng
+ * task bằng JDBC batch: cận trên của chính DB đó trên máy đang chạy, để so với importTasks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(TaskImportBenchmark.ROWS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TaskImportBenchmark {
+
+    static final int ROWS = 100_000;
+    private static final int USERS = 1_000;
+    private static final int CHUNK = 5_000;
+
+    @Param({"CSV", "NDJSON"})
+    private TaskExportFormat format;
+
+    private ConfigurableApplicationContext context;
+    private TaskBatchService taskBatchService;
+    private JdbcTemplate jdbcTemplate;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--spring.datasource.url=jdbc:h2:mem:import;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1");
+        taskBatchService = context.getBean(TaskBatchService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+        body = format == TaskExportFormat.CSV ? csv() : ndjson();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Bảng task không lớn dần qua các iteration
+    @Setup(Level.Iteration)
+    public void clearTasks() {
+        jdbcTemplate.execute("DELETE FROM task");
+        jdbcTemplate.execute("DELETE FROM task_stats");
+        jdbcTemplate.execute("DELETE FROM task_activity");
+    }
+
+    private long nextPlainId = 1_000_000_000L;
+
+    // Mỗi dòng thứ 50 không giao cho ai, dueDate rải quanh hôm nay
+    private static String assignee(int i) {
+        return i % 50 == 0 ? "" : "user" + (i % USERS + 1);
+    }
+
+    private static byte[] csv() {
+        StringBuilder out = new StringBuilder(ROWS * 100).append("title,description,status,dueDate,assignee\r\n");
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < ROWS; i++) {
+            out.append("Imported task ").append(i).append(",\"Migrated, from legacy tracker #").append(i).append("\",")
+                    .append(i % 3 == 0 ? "COMPLETED" : "PENDING").append(',')
+                    .append(today.plusDays(i % 60 - 10)).append(',').append(assignee(i)).append("\r\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ndjson() {
+        StringBuilder out = new StringBuilder(ROWS * 140);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < ROWS; i++) {
+            out.append("{\"title\":\"Imported task ").append(i)
+                    .append("\",\"description\":\"Migrated, from legacy tracker #").append(i)
+                    .append("\",\"status\":\"").append(i % 3 == 0 ? "COMPLETED" : "PENDING")
+                    .append("\",\"dueDate\":\"").append(today.plusDays(i % 60 - 10))
+                    .append("\",\"assignee\":\"").append(assignee(i)).append("\"}\n");
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public TaskImportProgress importTasks() throws IOException {
+        TaskImportProgress done = taskBatchService.importTasks(
+                taskBatchService.openImport(format, new ByteArrayInputStream(body)), OutputStream.nullOutputStream());
+        if (done.getImported() != ROWS) {
+            throw new IllegalStateException("Imported " + done.getImported() + " rows, expected " + ROWS);
+        }
+        return done;
+    }
+
+    @Benchmark
+    public int plainJdbcInsert() {
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        LocalDate today = LocalDate.now();
+        for (int from = 0; from < ROWS; from += CHUNK) {
+            List<Object[]> rows = new ArrayList<>(CHUNK);
+            for (int i = from; i < from + CHUNK; i++) {
+                rows.add(new Object[]{nextPlainId++, "Imported task " + i, "Migrated, from legacy tracker #" + i,
+                        i % 3 == 0 ? "COMPLETED" : "PENDING", Date.valueOf(today.plusDays(i % 60 - 10)), now,
+                        i % 50 == 0 ? null : (long) (i % USERS + 1)});
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate("INSERT INTO task "
+                    + "(id, title, description, status, due_date, created_at, version, assigned_to_user_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, 0, ?)", rows));
+        }
+        return ROWS;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskImportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,117 @@
+package vn.poly.tuan2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh OFFSET (Pageable) và keyset (ScrollPosition) trên bảng task 1.000.010 dòng trong H2,
+ * sắp xếp created_at DESC, id DESC như endpoint /api/admin/tasks/all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class TaskPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 10;
+    private static final int ROWS = 1_000_010;
+
+    @Param({"1", "1000", "100000"})
+    public int page;
+
+    private Connection connection;
+    private PreparedStatement offsetQuery;
+    private PreparedStatement countQuery;
+    private PreparedStatement keysetQuery;
+    private Timestamp cursorCreatedAt;
+    private long cursorId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:pagination;DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=FALSE");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS task (id BIGINT PRIMARY KEY, title VARCHAR(255), "
+                    + "status VARCHAR(20), created_at TIMESTAMP NOT NULL, assigned_to_user_id BIGINT)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_task_created ON task (created_at, id)");
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM task")) {
+                rs.next();
+                if (rs.getLong(1) == 0) {
+                    statement.execute("INSERT INTO task SELECT X, 'Task ' || X, "
+                            + "CASEWHEN(MOD(X, 3) = 0, 'COMPLETED', 'PENDING'), "
+                            + "DATEADD('SECOND', X / 4, TIMESTAMP '2024-01-01 00:00:00'), MOD(X, 1000) "
+                            + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+                }
+            }
+        }
+        offsetQuery = connection.prepareStatement(
+                "SELECT id, title, status, created_at FROM task ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?");
+        countQuery = connection.prepareStatement("SELECT COUNT(*) FROM task");
+        keysetQuery = connection.prepareStatement(
+                "SELECT id, title, status, created_at FROM task "
+                        + "WHERE created_at <= ? AND (created_at < ? OR id < ?) "
+                        + "ORDER BY created_at DESC, id DESC LIMIT ?");
+
+        // Vị trí cuối của trang trước, tương đương nextCursor mà client giữ lại
+        long offset = (long) (page - 1) * PAGE_SIZE;
+        if (offset == 0) {
+            cursorCreatedAt = new Timestamp(Long.MAX_VALUE / 4);
+            cursorId = Long.MAX_VALUE;
+        } else {
+            offsetQuery.setInt(1, 1);
+            offsetQuery.setLong(2, offset - 1);
+            try (ResultSet rs = offsetQuery.executeQuery()) {
+                rs.next();
+                cursorId = rs.getLong("id");
+                cursorCreatedAt = rs.getTimestamp("created_at");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void offsetPageWithCount(Blackhole blackhole) throws SQLException {
+        offsetQuery.setInt(1, PAGE_SIZE);
+        offsetQuery.setLong(2, (long) (page - 1) * PAGE_SIZE);
+        consume(offsetQuery, blackhole);
+        consume(countQuery, blackhole);
+    }
+
+    @Benchmark
+    public void keysetPage(Blackhole blackhole) throws SQLException {
+        keysetQuery.setTimestamp(1, cursorCreatedAt);
+        keysetQuery.setTimestamp(2, cursorCreatedAt);
+        keysetQuery.setLong(3, cursorId);
+        keysetQuery.setInt(4, PAGE_SIZE + 1);
+        consume(keysetQuery, blackhole);
+    }
+
+    private static void consume(PreparedStatement query, Blackhole blackhole) throws SQLException {
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) {
+                blackhole.consume(rs.getLong(1));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskPaginationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
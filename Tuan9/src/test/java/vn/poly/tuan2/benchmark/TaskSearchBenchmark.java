@@ -0,0 +1,88 @@
+package vn.poly.tuan2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.service.TaskSearchIndex;
+import vn.poly.tuan2.service.TaskService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tìm một từ khóa trên 1.000.000 task: Lucene (xếp hạng + tổng số kết quả + nạp TaskDto của trang đầu)
+ * so với LIKE '%...%' trên DB. "kw123" khớp khoảng 1.000 dòng, "absent" không khớp dòng nào
+ * nên LIKE phải quét hết bảng mới biết không còn kết quả.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+public class TaskSearchBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int TASKS = 1_000_000;
+
+    @Param({"kw123", "absent"})
+    public String query;
+
+    private ConfigurableApplicationContext context;
+    private TaskService taskService;
+    private JdbcTemplate jdbcTemplate;
+    private String pattern;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--logging.level.root=WARN",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--spring.datasource.url=jdbc:h2:mem:search;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1");
+        taskService = context.getBean(TaskService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+        jdbcTemplate.update("INSERT INTO task (id, title, description, status, created_at, version, assigned_to_user_id) "
+                + "SELECT X, 'Task ' || X || ' kw' || MOD(X, 1009) || ' tag' || MOD(X, 13), "
+                + "'note' || MOD(X * 31, 997) || ' lorem ipsum dolor sit amet', 'PENDING', "
+                + "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), 0, MOD(X, ?) + 1 "
+                + "FROM SYSTEM_RANGE(1, ?)", USERS, TASKS);
+        context.getBean(TaskSearchIndex.class).rebuild();
+        pattern = "%" + query + "%";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object luceneFirstPage() {
+        return taskService.searchTasksForAdmin(query, null, 0, 10);
+    }
+
+    @Benchmark
+    public Object likeFirstPage() {
+        return jdbcTemplate.queryForList("SELECT id, title FROM task WHERE title LIKE ? OR description LIKE ? "
+                + "ORDER BY created_at DESC, id DESC LIMIT 10", pattern, pattern);
+    }
+
+    // Search trả kèm tổng số kết quả; với LIKE đó là một lượt quét toàn bảng
+    @Benchmark
+    public Object likeCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM task WHERE title LIKE ? OR description LIKE ?",
+                Long.class, pattern, pattern);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TaskSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,337 @@
+package vn.poly.tuan2.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.util.FileSystemUtils;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tải đồng thời lên GET /api/tasks: mỗi lần gọi là một đợt REQUESTS request do CLIENTS client cùng gửi (virtual
+ * thread phía client, mỗi client một connection HTTP/1.1 keep-alive riêng và token của user riêng, gửi tuần tự
+ * REQUESTS / CLIENTS request), nên thời gian mỗi đợt so được giữa 1.000 và 10.000 client.
+ * Client là socket chặn tối giản thay vì java.net.http.HttpClient: trên máy ít core, HttpClient với hàng nghìn
+ * connection tốn CPU hơn cả server và benchmark đo nhầm phía client. So Tomcat chạy
+ * thread pool mặc định (200 platform thread) với spring.threads.virtual.enabled; cả hai đều qua ConnectionLimiter
+ * trước pool Hikari 10 connection.
+ * Server chạy ở JVM riêng (một socket mỗi client ở cả hai phía, 10.000 client vượt giới hạn file descriptor của một
+ * process) trên file H2 được seed trước; log cảnh báo của server, gồm cả VirtualThreadPinningMonitor, in ra cùng
+ * output. Sau mỗi iteration in thông lượng, p50/p99 latency và số request lỗi. Response chứa task của user khác
+ * (SecurityContext lẫn giữa các request) làm benchmark dừng ngay.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 5)
+@Timeout(time = 10, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class VirtualThreadLoadBenchmark {
+
+    private static final int USERS = 1_000;
+    private static final int TASKS_PER_USER = 20;
+    private static final int REQUESTS = 10_000;
+    private static final File DB_DIR = new File("target/load-benchmark");
+
+    public enum Threading {
+        PLATFORM, VIRTUAL
+    }
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private Threading threading;
+
+    @Param({"1000", "10000"})
+    private int clients;
+
+    private Process server;
+    private int port;
+    private byte[][] requests;
+    private Connection[] connections;
+
+    private long[] latencies;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicReference<String> firstFailure = new AtomicReference<>();
+    private final AtomicReference<AssertionError> leak = new AtomicReference<>();
+    private long waveNanos;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        FileSystemUtils.deleteRecursively(DB_DIR);
+        String url = "jdbc:h2:file:" + DB_DIR.getAbsolutePath() + "/db;MODE=MySQL;NON_KEYWORDS=USER";
+        requests = new byte[USERS + 1][];
+        // Seed bằng context không web trên cùng file DB (Flyway tạo schema), đóng lại rồi mới chạy server
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run("--logging.level.root=WARN", "--spring.datasource.url=" + url)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                    + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+            jdbcTemplate.update("INSERT INTO task (id, title, status, due_date, created_at, version, assigned_to_user_id) "
+                            + "SELECT X, 'Task ' || X, CASEWHEN(MOD(X, 3) = 0, 'COMPLETED', 'PENDING'), "
+                            + "DATEADD('DAY', MOD(X, 60) - 30, CURRENT_DATE), "
+                            + "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), 0, MOD(X, ?) + 1 "
+                            + "FROM SYSTEM_RANGE(1, ?)",
+                    USERS, USERS * TASKS_PER_USER);
+            JwtUtils jwtUtils = context.getBean(JwtUtils.class);
+            for (int id = 1; id <= USERS; id++) {
+                UserDetailsImpl principal = UserDetailsImpl.build((long) id, "user" + id, "user" + id + "@example.com",
+                        List.of("ROLE_USER"));
+                requests[id] = request(jwtUtils.generateJwtToken(
+                        new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())));
+            }
+        }
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        server = new ProcessBuilder(java, "-Xmx1g", "-cp", System.getProperty("java.class.path"),
+                Tuan2Application.class.getName(),
+                "--spring.profiles.active=test",
+                "--spring.datasource.url=" + url,
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--logging.level.root=WARN",
+                "--server.port=" + port,
+                "--spring.threads.virtual.enabled=" + (threading == Threading.VIRTUAL),
+                "--server.tomcat.max-connections=" + (clients + 1_000),
+                "--server.tomcat.accept-count=4096",
+                "--server.tomcat.keep-alive-timeout=600s",
+                "--server.tomcat.max-keep-alive-requests=-1")
+                .inheritIO()
+                .start();
+        connections = new Connection[clients];
+        awaitServer();
+    }
+
+    private static byte[] request(String token) {
+        String authorization = token != null ? "Authorization: Bearer " + token + "\r\n" : "";
+        return ("GET /api/tasks?size=" + TASKS_PER_USER + " HTTP/1.1\r\nHost: localhost\r\n" + authorization
+                + "Accept: application/json\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // Server sẵn sàng khi trả 401 cho request không có token
+    private void awaitServer() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+        while (System.nanoTime() < deadline) {
+            if (!server.isAlive()) {
+                throw new IllegalStateException("Server exited with " + server.exitValue());
+            }
+            try (Connection connection = new Connection(port)) {
+                if (connection.exchange(request(null)).status == 401) {
+                    return;
+                }
+            } catch (IOException e) {
+                // chưa mở cổng
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Server did not start");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        for (Connection connection : connections) {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+        server.destroy();
+        if (!server.waitFor(30, TimeUnit.SECONDS)) {
+            server.destroyForcibly().waitFor();
+        }
+        FileSystemUtils.deleteRecursively(DB_DIR);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetWave() {
+        latencies = new long[REQUESTS];
+        failures.set(0);
+        firstFailure.set(null);
+        leak.set(null);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportWave() {
+        long[] sorted = Arrays.stream(latencies).filter(latency -> latency > 0).sorted().toArray();
+        if (sorted.length == 0) {
+            System.out.printf("%n  all %d requests failed: %s%n", REQUESTS, firstFailure.get());
+            return;
+        }
+        System.out.printf("%n  %.0f req/s, latency p50 %d ms, p99 %d ms, max %d ms, %d failed%s%n",
+                sorted.length / (waveNanos / 1e9),
+                TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(sorted[(int) (sorted.length * 0.99)]),
+                TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length - 1]),
+                failures.get(), firstFailure.get() != null ? " (" + firstFailure.get() + ")" : "");
+    }
+
+    @Benchmark
+    public int wave() throws InterruptedException {
+        CountDownLatch go = new CountDownLatch(1);
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                int client = i;
+                executor.execute(() -> {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int round = 0; round < REQUESTS / clients; round++) {
+                        try {
+                            call(client, round);
+                        } catch (AssertionError e) {
+                            leak.compareAndSet(null, e);
+                            return;
+                        } catch (IOException | RuntimeException e) {
+                            failures.incrementAndGet();
+                            firstFailure.compareAndSet(null, e.toString());
+                            Connection broken = connections[client];
+                            connections[client] = null;
+                            if (broken != null) {
+                                broken.close();
+                            }
+                        }
+                    }
+                });
+            }
+            go.countDown();
+        }
+        waveNanos = System.nanoTime() - start;
+        if (leak.get() != null) {
+            throw leak.get();
+        }
+        return REQUESTS - failures.get();
+    }
+
+    private void call(int client, int round) throws IOException {
+        int userId = client % USERS + 1;
+        long start = System.nanoTime();
+        // Đợt đầu mở connection, các đợt sau dùng lại (keep-alive)
+        if (connections[client] == null) {
+            connections[client] = new Connection(port);
+        }
+        Response response = connections[client].exchange(requests[userId]);
+        if (response.status != 200) {
+            throw new IOException("HTTP " + response.status);
+        }
+        latencies[round * clients + client] = System.nanoTime() - start;
+        // Mọi task trong trang phải là của chính user gửi request
+        String own = "\"assignedToUsername\":\"user" + userId + "\"";
+        int tasks = count(response.body, "\"assignedToUsername\":");
+        if (tasks != TASKS_PER_USER || count(response.body, own) != tasks) {
+            throw new AssertionError("User " + userId + " received someone else's tasks: " + response.body);
+        }
+    }
+
+    private record Response(int status, String body) {
+    }
+
+    // Một connection HTTP/1.1 keep-alive; response có Content-Length hoặc chunked
+    private static class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            out = socket.getOutputStream();
+        }
+
+        Response exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.split(" ")[1]);
+            int contentLength = -1;
+            boolean chunked = false;
+            for (String line = readLine(); !line.isEmpty(); line = readLine()) {
+                String header = line.toLowerCase(Locale.ROOT);
+                if (header.startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(header.substring(15).trim());
+                } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                    chunked = true;
+                }
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(contentLength, 1024));
+            if (chunked) {
+                for (int size = Integer.parseInt(readLine().trim(), 16); size > 0;
+                     size = Integer.parseInt(readLine().trim(), 16)) {
+                    body.write(in.readNBytes(size));
+                    readLine();
+                }
+                readLine();
+            } else if (contentLength > 0) {
+                body.write(in.readNBytes(contentLength));
+            }
+            return new Response(status, body.toString(StandardCharsets.UTF_8));
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder(64);
+            for (int c = in.read(); c != '\n'; c = in.read()) {
+                if (c < 0) {
+                    throw new EOFException("Connection closed by server");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // bỏ qua
+            }
+        }
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int at = text.indexOf(token); at >= 0; at = text.indexOf(token, at + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VirtualThreadLoadBenchmark.class.getSimpleName()).build()).run();
+    }
+}
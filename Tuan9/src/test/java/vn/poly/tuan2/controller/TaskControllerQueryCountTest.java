@@ -0,0 +1,1396 @@
+package vn.poly.tuan2.controller;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import vn.poly.tuan2.AppConfig.AdmissionControlFilter;
+import vn.poly.tuan2.AppConfig.ConnectionLimiter;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskStats;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+import vn.poly.tuan2.service.TaskAnalyticsService;
+import vn.poly.tuan2.service.TaskSearchIndex;
+import vn.poly.tuan2.service.TaskStatsService;
+import vn.poly.tuan2.service.TaskTimeseriesService;
+import vn.poly.tuan2.service.UserService;
+import vn.poly.tuan2.util.AdaptiveLimit;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Đếm số câu lệnh SQL mà mỗi endpoint /api/tasks phát ra (kể cả filter xác thực).
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TaskControllerQueryCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TaskSearchIndex taskSearchIndex;
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Autowired
+    private TaskStatsService taskStatsService;
+
+    @Autowired
+    private TaskAnalyticsService taskAnalyticsService;
+
+    @Autowired
+    private TaskTimeseriesService taskTimeseriesService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserService userService;
+
+    private Statistics statistics;
+    private User owner;
+    private String bearer;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        owner = userRepository.save(User.builder()
+                .username("owner")
+                .email("owner@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        UserDetailsImpl principal = UserDetailsImpl.build(owner);
+        bearer = "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAll();
+        taskStatsRepository.deleteAll();
+        jdbcTemplate.update("delete from task_activity");
+        jdbcTemplate.update("delete from task_daily_stats");
+        jdbcTemplate.update("delete from task_change");
+        userRepository.deleteAll();
+    }
+
+    private Task seedTask() {
+        return taskRepository.save(Task.builder()
+                .title("Seeded")
+                .status(TaskStatus.PENDING)
+                .assignedTo(owner)
+                .build());
+    }
+
+    private long statementsFor(ResultActions actions) {
+        return statistics.getPrepareStatementCount();
+    }
+
+    private String adminBearer() {
+        UserDetailsImpl admin = UserDetailsImpl.build(99L, "admin", "admin@example.com", java.util.List.of("ROLE_ADMIN"));
+        return "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+    }
+
+    private ResultActions perform(org.springframework.test.web.servlet.RequestBuilder request) throws Exception {
+        statistics.clear();
+        return mockMvc.perform(request);
+    }
+
+    @Test
+    void createTask_InsertsTaskAndBumpsStats() throws Exception {
+        ResultActions result = perform(post("/api/tasks")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"New task\"}"));
+
+        result.andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data.assignedToUsername").value("owner"));
+        // INSERT task + upsert task_stats + INSERT task_activity
+        assertEquals(3, statementsFor(result));
+        assertEquals(1, taskStatsRepository.findById(owner.getId()).orElseThrow().getPending());
+    }
+
+    @Test
+    void getTasks_IssuesSinglePageQuery() throws Exception {
+        seedTask();
+
+        ResultActions result = perform(get("/api/tasks").header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].assignedToUsername").value("owner"));
+        // ETag (list_version theo khóa chính) + một truy vấn trang
+        assertEquals(2, statementsFor(result));
+    }
+
+    @Test
+    void getTaskById_IssuesSingleSelect() throws Exception {
+        Task task = seedTask();
+
+        ResultActions result = perform(get("/api/tasks/" + task.getId()).header("Authorization", bearer));
+
+        result.andExpect(status().isOk());
+        assertEquals(1, statementsFor(result));
+    }
+
+    @Test
+    void updateTask_LocksRowThenUpdatesByIdAndStats() throws Exception {
+        Task task = seedTask();
+
+        ResultActions result = perform(put("/api/tasks/" + task.getId())
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Updated\",\"status\":\"COMPLETED\"}"));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.title").value("Updated"))
+                .andExpect(jsonPath("$.data.version").value(1));
+        // SELECT ... FOR UPDATE + UPDATE task + upsert task_stats + INSERT task_activity
+        assertEquals(4, statementsFor(result));
+        Task updated = taskRepository.findById(task.getId()).orElseThrow();
+        assertEquals(TaskStatus.COMPLETED, updated.getStatus());
+        assertNotNull(updated.getCompletedAt());
+    }
+
+    @Test
+    void updateTaskStatus_IssuesConditionalUpdateWithoutReadingTask() throws Exception {
+        Task task = seedTask(owner, TaskStatus.PENDING, java.time.LocalDate.now().minusDays(1));
+        seedStats(owner, 1, 0, 1);
+
+        ResultActions result = perform(patch("/api/tasks/" + task.getId() + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"));
+
+        result.andExpect(status().isOk());
+        // UPDATE task ... and status <> ? + UPDATE task_stats + INSERT task_activity
+        assertEquals(3, statementsFor(result));
+        assertEquals(1, taskRepository.countByAssignedToIdAndStatus(owner.getId(), TaskStatus.COMPLETED));
+        assertNotNull(taskRepository.findById(task.getId()).orElseThrow().getCompletedAt());
+        assertStats(owner, 0, 1, 0);
+
+        result = perform(patch("/api/tasks/" + task.getId() + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PENDING\"}"));
+
+        result.andExpect(status().isOk());
+        assertEquals(3, statementsFor(result));
+        assertNull(taskRepository.findById(task.getId()).orElseThrow().getCompletedAt());
+        assertStats(owner, 1, 0, 1);
+    }
+
+    @Test
+    void updateTaskStatus_SameStatus_ChangesNothing() throws Exception {
+        Task task = seedTask();
+        seedStats(owner, 1, 0, 0);
+
+        ResultActions result = perform(patch("/api/tasks/" + task.getId() + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PENDING\"}"));
+
+        result.andExpect(status().isOk());
+        // UPDATE không ghi dòng nào + kiểm tra task tồn tại
+        assertEquals(2, statementsFor(result));
+        assertEquals(0L, taskRepository.findById(task.getId()).orElseThrow().getVersion());
+        assertStats(owner, 1, 0, 0);
+    }
+
+    @Test
+    void updateTaskStatus_WithoutStatsRow_CreatesIt() throws Exception {
+        Task task = seedTask(owner, TaskStatus.PENDING, java.time.LocalDate.now().minusDays(1));
+
+        perform(patch("/api/tasks/" + task.getId() + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+
+        assertStats(owner, -1, 1, -1);
+    }
+
+    @Test
+    void deleteTask_LocksRowThenDeletesByIdAndUpdatesStats() throws Exception {
+        Task task = seedTask();
+
+        ResultActions result = perform(delete("/api/tasks/" + task.getId()).header("Authorization", bearer));
+
+        result.andExpect(status().isOk());
+        assertEquals(4, statementsFor(result));
+        assertEquals(0, taskRepository.count());
+    }
+
+    @Test
+    void writesOnSomeoneElsesTask_AreNotFound() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("stranger")
+                .email("stranger@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        Task task = seedTask(other, TaskStatus.PENDING, null);
+
+        perform(patch("/api/tasks/" + task.getId() + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isNotFound());
+        perform(delete("/api/tasks/" + task.getId()).header("Authorization", bearer))
+                .andExpect(status().isNotFound());
+        assertEquals(TaskStatus.PENDING, taskRepository.findById(task.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void getTasksByCursor_WalksAllPagesWithOneQueryEach() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            seedTask();
+        }
+
+        java.util.Set<Object> seenIds = new java.util.HashSet<>();
+        String cursor = "";
+        int pages = 0;
+        boolean hasNext = true;
+        while (hasNext) {
+            ResultActions result = perform(get("/api/tasks/cursor")
+                    .param("size", "10")
+                    .param("cursor", cursor)
+                    .header("Authorization", bearer));
+            result.andExpect(status().isOk());
+            assertEquals(2, statementsFor(result));
+
+            com.jayway.jsonpath.DocumentContext page = com.jayway.jsonpath.JsonPath.parse(
+                    result.andReturn().getResponse().getContentAsString());
+            java.util.List<Object> ids = page.read("$.content[*].id");
+            seenIds.addAll(ids);
+            hasNext = page.read("$.hasNext");
+            cursor = page.read("$.nextCursor");
+            pages++;
+        }
+
+        assertEquals(3, pages);
+        assertEquals(25, seenIds.size());
+    }
+
+    @Test
+    void getTasksByCursor_RejectsMalformedCursor() throws Exception {
+        perform(get("/api/tasks/cursor").param("cursor", "not-a-cursor").header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllTasksByCursorForAdmin_FetchesAssigneeInSameQuery() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            seedTask();
+        }
+
+        ResultActions result = perform(get("/api/admin/tasks/all/cursor")
+                .param("size", "2")
+                .header("Authorization", adminBearer()));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].assignedToUsername").value("owner"))
+                .andExpect(jsonPath("$.hasNext").value(true));
+        assertEquals(1, statementsFor(result));
+    }
+
+    @Test
+    void getTaskSlice_SkipsCountAndMaintainsCachedTotal() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            seedTask();
+        }
+
+        ResultActions noTotal = perform(get("/api/tasks/slice").param("size", "2").header("Authorization", bearer));
+        noTotal.andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        // ETag (list_version theo khóa chính) + một truy vấn slice
+        assertEquals(2, statementsFor(noTotal));
+
+        ResultActions firstTotal = perform(get("/api/tasks/slice").param("withTotal", "true").header("Authorization", bearer));
+        firstTotal.andExpect(jsonPath("$.totalElements").value(3))
+                .andExpect(jsonPath("$.totalExact").value(true));
+        assertEquals(3, statementsFor(firstTotal));
+
+        mockMvc.perform(post("/api/tasks")
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Another\"}"))
+                .andExpect(status().isCreated());
+
+        ResultActions cachedTotal = perform(get("/api/tasks/slice").param("withTotal", "true").header("Authorization", bearer));
+        cachedTotal.andExpect(jsonPath("$.totalElements").value(4))
+                .andExpect(jsonPath("$.totalExact").value(false));
+        assertEquals(2, statementsFor(cachedTotal));
+    }
+
+    // 1.000 task rải đều cho 20 user: mỗi trang vẫn chỉ là SELECT chiếu DTO (+ COUNT khi trang đầy)
+    private void seedTasksAcrossUsers(int taskCount, int userCount) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            users.add(userRepository.save(User.builder()
+                    .username("user" + i)
+                    .email("user" + i + "@example.com")
+                    .password("password")
+                    .roles(Set.of(Role.USER))
+                    .build()));
+        }
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(Task.builder()
+                    .title("Task " + i)
+                    .status(TaskStatus.PENDING)
+                    .assignedTo(users.get(i % userCount))
+                    .build());
+        }
+        taskRepository.saveAll(tasks);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 100, 1000})
+    void getAllTasksForAdmin_ProjectsPageWithoutLoadingUsers(int size) throws Exception {
+        seedTasksAcrossUsers(1000, 20);
+
+        ResultActions result = perform(get("/api/admin/tasks/all")
+                .param("size", String.valueOf(size))
+                .header("Authorization", adminBearer()));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(size))
+                .andExpect(jsonPath("$.content[0].assignedToUsername").exists())
+                .andExpect(jsonPath("$.page.totalElements").value(1000));
+        assertEquals(2, statementsFor(result));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 100, 1000})
+    void getAllTaskSliceForAdmin_ProjectsSliceInOneQuery(int size) throws Exception {
+        seedTasksAcrossUsers(1000, 20);
+
+        ResultActions result = perform(get("/api/admin/tasks/all/slice")
+                .param("size", String.valueOf(size))
+                .header("Authorization", adminBearer()));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(size))
+                .andExpect(jsonPath("$.content[0].assignedToUsername").exists());
+        assertEquals(1, statementsFor(result));
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getTaskByIdForAdmin_ReturnsAssigneeFromSingleSelect() throws Exception {
+        Task task = seedTask();
+
+        ResultActions result = perform(get("/api/admin/tasks/" + task.getId()).header("Authorization", adminBearer()));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.assignedToUsername").value("owner"));
+        assertEquals(1, statementsFor(result));
+    }
+
+    private static String batchBody(int count, String extraItem) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            body.append("{\"title\":\"Batch ").append(i).append("\"},");
+        }
+        return body.append(extraItem).append("]").toString();
+    }
+
+    @Test
+    void createTasksInBatch_ReportsPerItemResultsAndBatchesInserts() throws Exception {
+        ResultActions result = perform(post("/api/tasks/batch")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(batchBody(120, "{\"title\":\"\"}")));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.created").value(120))
+                .andExpect(jsonPath("$.data.failed").value(1))
+                .andExpect(jsonPath("$.data.items[0].task.assignedToUsername").value("owner"))
+                .andExpect(jsonPath("$.data.items[120].success").value(false))
+                .andExpect(jsonPath("$.data.items[120].message").value("Title cannot be empty"));
+        assertEquals(120, statistics.getEntityInsertCount());
+        // 120 INSERT = 3 JDBC batch (batch_size=50); upsert task_stats, dòng task_activity và task_change đi bằng
+        // JdbcTemplate
+        assertEquals(3, statementsFor(result));
+        assertEquals(120, taskRepository.countByAssignedToId(owner.getId()));
+        assertStats(owner, 120, 0, 0);
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from task_activity where user_id = ?",
+                Integer.class, owner.getId()));
+        // Một dòng outbox cho chỉ mục tìm kiếm của các instance khác cho mỗi task
+        assertEquals(120, jdbcTemplate.queryForObject("select count(*) from task_change", Integer.class));
+    }
+
+    @Test
+    void createTasksInBatchForAdmin_ResolvesAssigneesOnce() throws Exception {
+        ResultActions result = perform(post("/api/admin/tasks/batch")
+                .header("Authorization", adminBearer())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"title\":\"A\",\"assignedToId\":" + owner.getId() + "},"
+                        + "{\"title\":\"B\",\"assignedToId\":987654},"
+                        + "{\"title\":\"C\"}]"));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.created").value(2))
+                .andExpect(jsonPath("$.data.items[0].task.assignedToUsername").value("owner"))
+                .andExpect(jsonPath("$.data.items[1].message").value("Assigned user not found with ID: 987654"))
+                .andExpect(jsonPath("$.data.items[2].task.assignedToId").doesNotExist());
+        assertEquals(2, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void createTasksInBatch_RejectsEmptyBatch() throws Exception {
+        perform(post("/api/tasks/batch")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private Task seedTask(User assignee, TaskStatus status, java.time.LocalDate dueDate) {
+        return taskRepository.save(Task.builder()
+                .title("Seeded")
+                .status(status)
+                .dueDate(dueDate)
+                .completedAt(status == TaskStatus.COMPLETED ? java.time.LocalDateTime.now() : null)
+                .assignedTo(assignee)
+                .build());
+    }
+
+    @Test
+    void completeOverdueTasks_RunsSingleUpdatePlusStats() throws Exception {
+        java.time.LocalDate yesterday = java.time.LocalDate.now().minusDays(1);
+        seedTask(owner, TaskStatus.PENDING, yesterday);
+        seedTask(owner, TaskStatus.PENDING, yesterday);
+        seedTask(owner, TaskStatus.PENDING, java.time.LocalDate.now().plusDays(1));
+        taskStatsService.reconcile();
+
+        ResultActions result = perform(post("/api/tasks/bulk/complete-overdue").header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(2));
+        assertEquals(3, statementsFor(result));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, taskRepository.countByAssignedToIdAndStatus(owner.getId(), TaskStatus.COMPLETED));
+        assertStats(owner, 1, 2, 0);
+    }
+
+    @Test
+    void deleteCompletedTasks_OnlyTouchesOwnTasks() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        seedTask(owner, TaskStatus.COMPLETED, null);
+        seedTask(owner, TaskStatus.PENDING, null);
+        seedTask(other, TaskStatus.COMPLETED, null);
+        taskStatsService.reconcile();
+
+        ResultActions result = perform(delete("/api/tasks/bulk/completed")
+                .param("olderThanDays", "0")
+                .header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(1));
+        assertEquals(2, statementsFor(result));
+        assertEquals(2, taskRepository.count());
+        assertStats(owner, 1, 0, 0);
+        assertStats(other, 0, 1, 0);
+    }
+
+    @Test
+    void deleteCompletedTasks_AgesTasksFromCompletionNotCreation() throws Exception {
+        Task oldButJustCompleted = seedTask(owner, TaskStatus.COMPLETED, null);
+        Task completedLongAgo = seedTask(owner, TaskStatus.COMPLETED, null);
+        java.time.LocalDateTime longAgo = java.time.LocalDateTime.now().minusDays(60);
+        jdbcTemplate.update("update task set created_at = ? where id = ?", longAgo, oldButJustCompleted.getId());
+        jdbcTemplate.update("update task set created_at = ?, completed_at = ? where id = ?", longAgo, longAgo,
+                completedLongAgo.getId());
+        taskStatsService.reconcile();
+
+        perform(delete("/api/admin/tasks/bulk/completed")
+                .param("olderThanDays", "30")
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(1));
+        perform(delete("/api/tasks/bulk/completed")
+                .param("olderThanDays", "30")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(0));
+
+        assertTrue(taskRepository.existsById(oldButJustCompleted.getId()));
+        assertFalse(taskRepository.existsById(completedLongAgo.getId()));
+        assertStats(owner, 0, 1, 0);
+    }
+
+    @Test
+    void reassignTasksByAdmin_MovesEveryTaskInOneUpdate() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        for (int i = 0; i < 5; i++) {
+            seedTask();
+        }
+        taskStatsService.reconcile();
+
+        ResultActions result = perform(post("/api/admin/tasks/bulk/reassign")
+                .param("fromUserId", String.valueOf(owner.getId()))
+                .param("toUserId", String.valueOf(other.getId()))
+                .header("Authorization", adminBearer()));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(5));
+        // existsById cho user đích + một câu UPDATE, rồi chuyển dòng task_stats: khóa dòng nguồn, upsert đích, xóa nguồn;
+        // thêm một dòng task_activity cho mỗi user
+        assertEquals(7, statementsFor(result));
+        assertEquals(5, taskRepository.countByAssignedToId(other.getId()));
+        assertStats(owner, 0, 0, 0);
+        assertStats(other, 5, 0, 0);
+    }
+
+    @Test
+    void getTaskById_HonoursStrongETag() throws Exception {
+        Task task = seedTask();
+
+        String etag = perform(get("/api/tasks/" + task.getId()).header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        perform(get("/api/tasks/" + task.getId()).header("Authorization", bearer).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void getTasks_ReturnsNotModifiedWithoutQueryUntilUserChangesTasks() throws Exception {
+        Task task = seedTask();
+        seedStats(owner, 1, 0, 0);
+        String etag = perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        ResultActions unchanged = perform(get("/api/tasks").header("Authorization", bearer).header("If-None-Match", etag));
+        unchanged.andExpect(status().isNotModified());
+        // Chỉ dò list_version theo khóa chính
+        assertEquals(1, statementsFor(unchanged));
+
+        mockMvc.perform(patch("/api/tasks/" + task.getId() + "/status")
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+
+        etag = perform(get("/api/tasks").header("Authorization", bearer).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].status").value("COMPLETED"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Sửa tiêu đề không đổi số đếm nhưng vẫn đổi danh sách
+        mockMvc.perform(put("/api/tasks/" + task.getId())
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Renamed\",\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+
+        perform(get("/api/tasks").header("Authorization", bearer).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].title").value("Renamed"));
+    }
+
+    @Test
+    void getTasks_ETagFollowsWritesFromOtherInstances() throws Exception {
+        seedTask();
+        seedStats(owner, 1, 0, 0);
+        String etag = perform(get("/api/tasks").header("Authorization", bearer))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Instance khác ghi task của user: chỉ dòng task_stats dùng chung đổi, bộ nhớ của instance này thì không
+        TaskStats stats = taskStatsRepository.findById(owner.getId()).orElseThrow();
+        stats.setListVersion(stats.getListVersion() + 1);
+        taskStatsRepository.save(stats);
+
+        perform(get("/api/tasks").header("Authorization", bearer).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getAllTasksForAdmin_HasNoListETagUnlessSingleInstance() throws Exception {
+        seedTask();
+
+        perform(get("/api/admin/tasks/all").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void updateTask_RejectsStaleIfMatch() throws Exception {
+        Task task = seedTask();
+        String body = "{\"title\":\"Updated\",\"status\":\"PENDING\"}";
+
+        perform(put("/api/tasks/" + task.getId())
+                .header("Authorization", bearer)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.data.version").value(1));
+
+        ResultActions stale = perform(put("/api/tasks/" + task.getId())
+                .header("Authorization", bearer)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Lost update\"}"));
+        stale.andExpect(status().isPreconditionFailed());
+        assertEquals("Updated", taskRepository.findById(task.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void getTasks_CombinesFiltersInSingleQuery() throws Exception {
+        java.time.LocalDate yesterday = java.time.LocalDate.now().minusDays(1);
+        Task match = seedTask(owner, TaskStatus.PENDING, yesterday);
+        match.setTitle("Fix 100% of bugs");
+        taskRepository.save(match);
+        Task wrongPrefix = seedTask(owner, TaskStatus.PENDING, yesterday);
+        wrongPrefix.setTitle("Fix 1000 bugs");
+        taskRepository.save(wrongPrefix);
+        seedTask(owner, TaskStatus.COMPLETED, yesterday);
+        seedTask(owner, TaskStatus.PENDING, java.time.LocalDate.now().plusDays(3));
+
+        ResultActions result = perform(get("/api/tasks")
+                .param("overdue", "true")
+                .param("titlePrefix", "Fix 100%")
+                .param("dueFrom", yesterday.minusDays(7).toString())
+                .header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].id").value(match.getId()));
+        // ETag (list_version theo khóa chính) + một truy vấn trang
+        assertEquals(2, statementsFor(result));
+    }
+
+    @Test
+    void getTaskSlice_WithStatusSetCountsExactly() throws Exception {
+        seedTask(owner, TaskStatus.PENDING, null);
+        seedTask(owner, TaskStatus.COMPLETED, null);
+
+        perform(get("/api/tasks/slice")
+                .param("statuses", "PENDING,COMPLETED")
+                .param("withTotal", "true")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(2))
+                .andExpect(jsonPath("$.totalExact").value(true));
+    }
+
+    @Test
+    void getTasks_RejectsSortOnUnindexedColumn() throws Exception {
+        perform(get("/api/tasks").param("sort", "title,asc").header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+        // id đơn thuần chỉ có thứ tự trên khóa chính, lọc theo user là phải filesort
+        perform(get("/api/tasks").param("sort", "id,desc").header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+        // Không có index nào đọc ra status tăng nhưng created_at giảm
+        perform(get("/api/tasks").param("sort", "status,asc").param("sort", "createdAt,desc")
+                        .header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getTasks_SortsByStatusInIndexOrder() throws Exception {
+        for (String title : java.util.List.of("First", "Second", "Third")) {
+            taskRepository.save(Task.builder()
+                    .title(title)
+                    .status(title.equals("Second") ? TaskStatus.COMPLETED : TaskStatus.PENDING)
+                    .assignedTo(owner)
+                    .build());
+        }
+
+        // Mở rộng thành status, createdAt, id cùng chiều DESC
+        perform(get("/api/tasks").param("sort", "status,desc").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].title").value(org.hamcrest.Matchers.contains("Third", "First", "Second")));
+    }
+
+    private void createTask(String bearerToken, String title, String description) throws Exception {
+        mockMvc.perform(post("/api/tasks")
+                        .header("Authorization", bearerToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"" + title + "\",\"description\":\"" + description + "\"}"))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void searchTasks_RanksOwnMatchesAndLoadsThemInOneQuery() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("stranger")
+                .email("stranger@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        UserDetailsImpl otherPrincipal = UserDetailsImpl.build(other);
+        String otherBearer = "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(otherPrincipal, null, otherPrincipal.getAuthorities()));
+        createTask(bearer, "Chuẩn bị báo cáo quý", "Gửi kế toán");
+        createTask(bearer, "Họp nhóm", "Mang theo báo cáo");
+        createTask(bearer, "Đi chợ", "Mua rau");
+        createTask(otherBearer, "Báo cáo của người khác", "");
+        taskSearchIndex.refresh();
+
+        // Không dấu vẫn khớp; khớp ở title xếp trên khớp ở description
+        ResultActions result = perform(get("/api/tasks/search").param("q", "bao cao").header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].title").value("Chuẩn bị báo cáo quý"))
+                .andExpect(jsonPath("$.content[1].title").value("Họp nhóm"))
+                .andExpect(jsonPath("$.totalElements").value(2));
+        assertEquals(1, statementsFor(result));
+
+        perform(get("/api/admin/tasks/search").param("q", "báo cáo").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(3));
+        perform(get("/api/admin/tasks/search").param("q", "báo cáo").param("userId", other.getId().toString())
+                        .header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].assignedToUsername").value("stranger"));
+    }
+
+    @Test
+    void searchTasks_DropsTasksDeletedBehindTheIndex() throws Exception {
+        createTask(bearer, "Xóa hàng loạt", "");
+        taskSearchIndex.refresh();
+        // Xóa thẳng trên DB giống DELETE hàng loạt: chỉ mục còn id cũ
+        taskRepository.deleteAll();
+
+        perform(get("/api/tasks/search").param("q", "xoa").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(0));
+        taskSearchIndex.refresh();
+        perform(get("/api/tasks/search").param("q", "xoa").header("Authorization", bearer))
+                .andExpect(jsonPath("$.totalElements").value(0));
+    }
+
+    @Test
+    void searchIndex_RebuildKeepsNewerVersionIndexedWhileItRan() {
+        Task task = seedTask();
+        // Sự kiện sau commit của một lần sửa đã vào chỉ mục, còn dòng rebuild đọc được vẫn là version trước đó
+        taskSearchIndex.onTaskContentChanged(vn.poly.tuan2.event.TaskContentChangedEvent.saved(task.getId(),
+                owner.getId(), "Fresh title", null, task.getVersion() + 1));
+
+        assertEquals(1, taskSearchIndex.rebuild());
+        taskSearchIndex.refresh();
+
+        assertEquals(List.of(task.getId()), taskSearchIndex.search("fresh", null, 0, 10).getIds());
+        assertEquals(0, taskSearchIndex.search("seeded", null, 0, 10).getTotal());
+
+        // Sự kiện tới muộn với version cũ hơn cũng không ghi đè
+        taskSearchIndex.onTaskContentChanged(vn.poly.tuan2.event.TaskContentChangedEvent.saved(task.getId(),
+                owner.getId(), "Stale title", null, task.getVersion()));
+        taskSearchIndex.refresh();
+        assertEquals(0, taskSearchIndex.search("stale", null, 0, 10).getTotal());
+    }
+
+    @Test
+    void searchTasks_RejectsBlankQuery() throws Exception {
+        perform(get("/api/tasks/search").param("q", " ").header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void seedStats(User user, long pending, long completed, long overdue) {
+        taskStatsRepository.save(new TaskStats(user.getId(), pending, completed, overdue, java.time.LocalDate.now(), 0));
+    }
+
+    private void assertStats(User user, long pending, long completed, long overdue) {
+        TaskStats stats = taskStatsRepository.findById(user.getId()).orElseThrow();
+        assertEquals(pending, stats.getPending(), "pending");
+        assertEquals(completed, stats.getCompleted(), "completed");
+        assertEquals(overdue, stats.getOverdue(), "overdue");
+    }
+
+    @Test
+    void getStats_FollowsEveryWriteAndAnswersInOneQuery() throws Exception {
+        String yesterday = java.time.LocalDate.now().minusDays(1).toString();
+        List<Long> ids = new ArrayList<>();
+        for (String body : List.of("{\"title\":\"Late\",\"dueDate\":\"" + yesterday + "\"}",
+                "{\"title\":\"Also late\",\"dueDate\":\"" + yesterday + "\"}",
+                "{\"title\":\"Open\"}",
+                "{\"title\":\"Done\",\"status\":\"COMPLETED\"}")) {
+            String response = perform(post("/api/tasks")
+                    .header("Authorization", bearer)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            ids.add(com.jayway.jsonpath.JsonPath.parse(response).read("$.data.id", Long.class));
+        }
+        assertStats(owner, 3, 1, 2);
+        // Task quá hạn -> xong, dời hạn task quá hạn còn lại ra tương lai, xóa task đang mở
+        perform(patch("/api/tasks/" + ids.get(0) + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+        perform(put("/api/tasks/" + ids.get(1))
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Rescheduled\",\"status\":\"PENDING\",\"dueDate\":\""
+                        + java.time.LocalDate.now().plusDays(3) + "\"}"))
+                .andExpect(status().isOk());
+        perform(delete("/api/tasks/" + ids.get(2)).header("Authorization", bearer))
+                .andExpect(status().isOk());
+
+        ResultActions result = perform(get("/api/tasks/stats").header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.pending").value(1))
+                .andExpect(jsonPath("$.completed").value(2))
+                .andExpect(jsonPath("$.overdue").value(0))
+                .andExpect(jsonPath("$.total").value(3));
+        assertEquals(1, statementsFor(result));
+        assertEquals(0, taskStatsService.reconcile());
+    }
+
+    @Test
+    void getStats_CountsTasksThatBecameOverdueBeforeRollover() throws Exception {
+        java.time.LocalDate today = java.time.LocalDate.now();
+        seedTask(owner, TaskStatus.PENDING, today.minusDays(2));
+        seedTask(owner, TaskStatus.PENDING, today.plusDays(2));
+        taskStatsService.reconcile();
+        // Như thể lần rollover cuối chạy từ 3 ngày trước, khi task kia chưa quá hạn
+        jdbcTemplate.update("update task_stats set overdue = 0, overdue_as_of = ? where user_id = ?",
+                java.sql.Date.valueOf(today.minusDays(3)), owner.getId());
+
+        perform(get("/api/tasks/stats").header("Authorization", bearer))
+                .andExpect(jsonPath("$.overdue").value(1));
+
+        taskStatsService.rollover();
+        assertStats(owner, 2, 0, 1);
+        assertEquals(today, taskStatsRepository.findById(owner.getId()).orElseThrow().getOverdueAsOf());
+    }
+
+    @Test
+    void reconcileStats_RepairsDriftOnce() throws Exception {
+        // Ghi thẳng vào bảng task, bỏ qua TaskService: bộ đếm lệch
+        seedTask(owner, TaskStatus.PENDING, java.time.LocalDate.now().minusDays(1));
+        seedTask(owner, TaskStatus.COMPLETED, null);
+        perform(get("/api/tasks/stats").header("Authorization", bearer))
+                .andExpect(jsonPath("$.total").value(0));
+
+        perform(post("/api/admin/tasks/stats/reconcile").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.affected").value(1));
+        perform(post("/api/admin/tasks/stats/reconcile").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.data.affected").value(0));
+        perform(get("/api/admin/tasks/user/" + owner.getId() + "/stats").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pending").value(1))
+                .andExpect(jsonPath("$.completed").value(1))
+                .andExpect(jsonPath("$.overdue").value(1));
+    }
+
+    @Test
+    void adminAnalytics_ReadsCountersAndFollowsTaskEvents() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        String yesterday = java.time.LocalDate.now().minusDays(1).toString();
+        taskAnalyticsService.invalidateAll();
+        String created = perform(post("/api/admin/tasks/batch")
+                .header("Authorization", adminBearer())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"title\":\"A\",\"assignedToId\":" + other.getId() + ",\"dueDate\":\"" + yesterday + "\"},"
+                        + "{\"title\":\"B\",\"assignedToId\":" + other.getId() + ",\"dueDate\":\"" + yesterday + "\"},"
+                        + "{\"title\":\"C\",\"assignedToId\":" + owner.getId() + "},"
+                        + "{\"title\":\"D\",\"assignedToId\":" + owner.getId() + ",\"status\":\"COMPLETED\"}]"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Long openTaskId = com.jayway.jsonpath.JsonPath.parse(created).read("$.data.items[2].task.id", Long.class);
+
+        perform(get("/api/admin/analytics/summary").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users").value(2))
+                .andExpect(jsonPath("$.pending").value(3))
+                .andExpect(jsonPath("$.completed").value(1))
+                .andExpect(jsonPath("$.overdue").value(2))
+                .andExpect(jsonPath("$.completionRatio").value(0.25));
+        perform(get("/api/admin/analytics/top-overdue").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].username").value("other"))
+                .andExpect(jsonPath("$[0].overdue").value(2));
+        perform(get("/api/admin/analytics/users").param("size", "1").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.content[0].username").value("owner"))
+                .andExpect(jsonPath("$.content[0].completionRatio").value(0.5))
+                .andExpect(jsonPath("$.nextCursor").value(String.valueOf(owner.getId())));
+        perform(get("/api/admin/analytics/users").param("size", "1").param("cursor", String.valueOf(owner.getId()))
+                .header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.content[0].username").value("other"))
+                .andExpect(jsonPath("$.hasNext").value(false));
+
+        perform(patch("/api/tasks/" + openTaskId + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+
+        // Tổng đã cache được cộng theo sự kiện, không đọc lại bảng bộ đếm
+        ResultActions summary = perform(get("/api/admin/analytics/summary").header("Authorization", adminBearer()));
+        summary.andExpect(jsonPath("$.pending").value(2))
+                .andExpect(jsonPath("$.completed").value(2));
+        assertEquals(0, statementsFor(summary));
+    }
+
+    @Test
+    void timeseries_RollsUpTransitionsAndReadsOnlyDailyRows() throws Exception {
+        java.time.LocalDate today = java.time.LocalDate.now();
+        List<Long> ids = new ArrayList<>();
+        for (String body : List.of("{\"title\":\"A\"}", "{\"title\":\"B\"}",
+                "{\"title\":\"C\",\"status\":\"COMPLETED\"}")) {
+            String response = perform(post("/api/tasks")
+                    .header("Authorization", bearer)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                    .andExpect(status().isCreated())
+                    .andReturn().getResponse().getContentAsString();
+            ids.add(com.jayway.jsonpath.JsonPath.parse(response).read("$.data.id", Long.class));
+        }
+        perform(patch("/api/tasks/" + ids.get(0) + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+        // Mở lại rồi hoàn thành lần nữa: hai lần hoàn thành, completedAt theo lần sau
+        perform(patch("/api/tasks/" + ids.get(2) + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"PENDING\"}"))
+                .andExpect(status().isOk());
+        assertNull(taskRepository.findById(ids.get(2)).orElseThrow().getCompletedAt());
+        perform(patch("/api/tasks/" + ids.get(2) + "/status")
+                .header("Authorization", bearer)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"status\":\"COMPLETED\"}"))
+                .andExpect(status().isOk());
+        assertNotNull(taskRepository.findById(ids.get(2)).orElseThrow().getCompletedAt());
+        // Ngày cũ đã có trong bảng tổng hợp
+        jdbcTemplate.update("insert into task_daily_stats (user_id, stat_date, created, completed, open_delta) "
+                + "values (?, ?, 4, 1, 3)", owner.getId(), java.sql.Date.valueOf(today.minusDays(3)));
+
+        // Chưa gom: endpoint không đọc outbox
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.minusDays(6).toString())
+                .param("to", today.toString())
+                .header("Authorization", bearer))
+                .andExpect(jsonPath("$.points[6].created").value(0));
+        assertEquals(6, taskTimeseriesService.aggregate());
+        assertEquals(0, taskTimeseriesService.aggregate());
+
+        ResultActions result = perform(get("/api/tasks/timeseries")
+                .param("from", today.minusDays(6).toString())
+                .param("to", today.toString())
+                .header("Authorization", bearer));
+
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.granularity").value("day"))
+                .andExpect(jsonPath("$.points.length()").value(7))
+                .andExpect(jsonPath("$.points[0].created").value(0))
+                .andExpect(jsonPath("$.points[3].created").value(4))
+                .andExpect(jsonPath("$.points[6].start").value(today.toString()))
+                .andExpect(jsonPath("$.points[6].created").value(3))
+                .andExpect(jsonPath("$.points[6].completed").value(3))
+                .andExpect(jsonPath("$.points[6].openDelta").value(1));
+        // Một câu quét khóa chính (user_id, stat_date) của task_daily_stats
+        assertEquals(1, statementsFor(result));
+
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.minusDays(6).toString())
+                .param("to", today.toString())
+                .param("granularity", "month")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.points[0].start").value(today.minusDays(6).toString()))
+                .andExpect(jsonPath("$.points.length()").value(today.minusDays(6).getMonth() == today.getMonth()
+                        ? 1 : 2));
+    }
+
+    @Test
+    void deleteUser_DropsPendingActivitySoAggregateLeavesNoOrphanStats() throws Exception {
+        java.time.LocalDate today = java.time.LocalDate.now();
+        // Dòng outbox chưa gom của user (task của user đã bị xóa trước đó)
+        jdbcTemplate.update("insert into task_activity (user_id, stat_date, created, completed, open_delta) "
+                + "values (?, ?, 1, 0, 1)", owner.getId(), java.sql.Date.valueOf(today));
+        jdbcTemplate.update("insert into task_daily_stats (user_id, stat_date, created, completed, open_delta) "
+                + "values (?, ?, 2, 1, 1)", owner.getId(), java.sql.Date.valueOf(today.minusDays(1)));
+
+        mockMvc.perform(delete("/api/admin/users/" + owner.getId()).header("Authorization", adminBearer()))
+                .andExpect(status().isNoContent());
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from task_activity where user_id = ?",
+                Integer.class, owner.getId()));
+        taskTimeseriesService.aggregate();
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from task_daily_stats where user_id = ?",
+                Integer.class, owner.getId()));
+    }
+
+    @Test
+    void timeseries_RejectsInvalidRange() throws Exception {
+        java.time.LocalDate today = java.time.LocalDate.now();
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.toString())
+                .param("to", today.minusDays(1).toString())
+                .header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.minusDays(400).toString())
+                .param("to", today.toString())
+                .header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.minusDays(400).toString())
+                .param("to", today.toString())
+                .param("granularity", "week")
+                .header("Authorization", bearer))
+                .andExpect(status().isOk());
+        perform(get("/api/tasks/timeseries")
+                .param("from", today.toString())
+                .param("to", today.toString())
+                .param("granularity", "hour")
+                .header("Authorization", bearer))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportTasks_StreamsOwnTasksAsCsvInOneQuery() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        taskRepository.save(Task.builder().title("Plain").status(TaskStatus.PENDING).assignedTo(owner).build());
+        taskRepository.save(Task.builder().title("Comma, \"quoted\"").description("two\nlines")
+                .status(TaskStatus.COMPLETED).assignedTo(owner).build());
+        seedTask(other, TaskStatus.PENDING, null);
+
+        ResultActions result = perform(get("/api/tasks/export").param("format", "csv").header("Authorization", bearer));
+
+        String body = result.andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"tasks.csv\""))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(1, statementsFor(result));
+        String[] lines = body.split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,title,description,status,dueDate,createdAt,assignedToId,assignedToUsername,version", lines[0]);
+        // Mới nhất trước; ô có dấu phẩy/ngoặc kép/xuống dòng được bọc trong ngoặc kép
+        assertTrue(lines[1].contains(",\"Comma, \"\"quoted\"\"\",\"two\nlines\",COMPLETED,"));
+        assertTrue(lines[2].contains(",Plain,,PENDING,,"));
+        assertTrue(lines[2].endsWith("," + owner.getId() + ",owner,0"));
+    }
+
+    @Test
+    void exportAllTasksForAdmin_StreamsNdjsonAndHonoursFilters() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        for (int i = 0; i < 3; i++) {
+            seedTask();
+        }
+        seedTask(other, TaskStatus.COMPLETED, null);
+
+        String all = perform(get("/api/admin/tasks/export").header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = all.split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("other", com.jayway.jsonpath.JsonPath.parse(lines[0]).read("$.assignedToUsername"));
+
+        String completed = perform(get("/api/admin/tasks/export")
+                .param("status", "COMPLETED")
+                .header("Authorization", adminBearer()))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(1, completed.split("\n").length);
+
+        perform(get("/api/admin/tasks/export").param("format", "xml").header("Authorization", adminBearer()))
+                .andExpect(status().isBadRequest());
+        perform(get("/api/tasks/export").header("Authorization", bearer)
+                .param("dueFrom", "2024-02-01").param("dueTo", "2024-01-01"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+    }
+
+    // import.batch-size=2 trong profile test
+    @Test
+    void importTasks_CsvWritesEachBatchInOneTransactionAndReportsRowErrors() throws Exception {
+        User other = userRepository.save(User.builder()
+                .username("other")
+                .email("other@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        String csv = "title,description,status,dueDate,assignee\r\n"
+                + "Alpha,\"Has, comma\",PENDING,2030-01-01,owner\r\n"
+                + "Beta,,COMPLETED,,other\r\n"
+                + ",missing title,,,owner\r\n"
+                + "Gamma,,DONE,,owner\r\n"
+                + "Delta,,,,ghost\r\n"
+                + "\"Multi\nline\",,,,\r\n";
+
+        String body = perform(post("/api/admin/tasks/import")
+                .param("format", "csv")
+                .contentType("text/csv")
+                .content(csv)
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson;charset=UTF-8"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(List.of(
+                "{\"type\":\"progress\",\"rows\":2,\"imported\":2,\"failed\":0}",
+                "{\"type\":\"error\",\"line\":4,\"message\":\"Title cannot be empty\"}",
+                "{\"type\":\"error\",\"line\":5,\"message\":\"Invalid value for status\"}",
+                "{\"type\":\"error\",\"line\":6,\"message\":\"Assigned user not found: ghost\"}",
+                "{\"type\":\"progress\",\"rows\":6,\"imported\":3,\"failed\":3}",
+                "{\"type\":\"done\",\"rows\":6,\"imported\":3,\"failed\":3}"), List.of(lines));
+
+        List<Task> tasks = taskRepository.findAll();
+        assertEquals(3, tasks.size());
+        Task alpha = tasks.stream().filter(task -> task.getTitle().equals("Alpha")).findFirst().orElseThrow();
+        assertEquals("Has, comma", alpha.getDescription());
+        assertEquals(java.time.LocalDate.of(2030, 1, 1), alpha.getDueDate());
+        assertTrue(tasks.stream().anyMatch(task -> task.getTitle().equals("Multi\nline")
+                && task.getAssignedTo() == null && task.getStatus() == TaskStatus.PENDING));
+        assertStats(owner, 1, 0, 0);
+        assertStats(other, 0, 1, 0);
+        taskSearchIndex.refresh();
+        assertEquals(1, taskSearchIndex.search("alpha", null, 0, 10).getTotal());
+    }
+
+    @Test
+    void importTasks_ReloadsNdjsonExportAndRejectsBadRequests() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            seedTask();
+        }
+        String export = perform(get("/api/tasks/export").header("Authorization", bearer))
+                .andReturn().getResponse().getContentAsString();
+        String ndjson = export + "\n{\"title\":\"Bad\",\"status\":\"NOPE\"}\n{not json\n";
+
+        String body = perform(post("/api/admin/tasks/import")
+                .contentType("application/x-ndjson")
+                .content(ndjson)
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("{\"type\":\"error\",\"line\":5,\"message\":\"Invalid value for status\"}"), body);
+        assertTrue(body.contains("{\"type\":\"error\",\"line\":6,\"message\":\"Malformed JSON\"}"), body);
+        assertTrue(body.endsWith("{\"type\":\"done\",\"rows\":5,\"imported\":3,\"failed\":2}\n"), body);
+        // assignedToUsername của file export được đọc như assignee; task seed không đi qua bộ đếm
+        assertEquals(6, taskRepository.count());
+        assertStats(owner, 3, 0, 0);
+
+        perform(post("/api/admin/tasks/import")
+                .param("format", "csv")
+                .content("description,status\r\nx,PENDING\r\n")
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_JSON_VALUE));
+        perform(post("/api/admin/tasks/import").param("format", "xml").content("")
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isBadRequest());
+        perform(post("/api/admin/tasks/import").content("{\"title\":\"Mine\"}").header("Authorization", bearer))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void connectionLimiter_ReturnsPermitAfterEveryRequest() throws Exception {
+        ConnectionLimiter limiter = (ConnectionLimiter) dataSource;
+        Task task = seedTask();
+        assertEquals(0, limiter.getActive());
+
+        perform(get("/api/tasks").header("Authorization", bearer)).andExpect(status().isOk());
+        perform(get("/api/tasks/" + (task.getId() + 1000)).header("Authorization", bearer))
+                .andExpect(status().isNotFound());
+        // Lỗi ném ra giữa transaction (rollback)
+        perform(put("/api/tasks/" + task.getId()).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Stale\"}").header("If-Match", "\"5\"").header("Authorization", bearer))
+                .andExpect(status().isPreconditionFailed());
+        // Import ghi qua StatelessSession trên connection của transaction
+        perform(post("/api/admin/tasks/import").content("{\"title\":\"Imported\",\"assignee\":\"owner\"}\n")
+                .header("Authorization", adminBearer()))
+                .andExpect(status().isOk());
+        assertEquals(0, limiter.getActive());
+        assertEquals(0, limiter.getWaiting());
+    }
+
+    @Test
+    void admissionControl_ShedsTaskRequestsAtLimitWithoutBlockingOtherGroups() throws Exception {
+        AdaptiveLimit tasks = admissionControlFilter.getLimit(AdmissionControlFilter.RouteGroup.TASKS);
+        int held = 0;
+        while (tasks.tryAcquire()) {
+            held++;
+        }
+        try {
+            ResultActions result = perform(get("/api/tasks").header("Authorization", bearer));
+
+            result.andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"))
+                    .andExpect(jsonPath("$.status").value(503))
+                    .andExpect(jsonPath("$.path").value("uri=/api/tasks"));
+            // Bị từ chối trước khi xác thực: không chạm DB
+            assertEquals(0, statementsFor(result));
+            perform(get("/api/admin/tasks/all").header("Authorization", adminBearer())).andExpect(status().isOk());
+        } finally {
+            for (int i = 0; i < held; i++) {
+                tasks.release();
+            }
+        }
+        perform(get("/api/tasks").header("Authorization", bearer)).andExpect(status().isOk());
+        assertEquals(0, tasks.getInFlight());
+    }
+
+    @Test
+    void readPaths_ShareOneReadOnlyConnectionPerRequest() throws Exception {
+        seedTask();
+        seedTask();
+
+        // Trang slice và COUNT(*) của bộ đếm chạy trong cùng một transaction readOnly
+        ResultActions slice = perform(get("/api/tasks/slice").param("withTotal", "true")
+                .header("Authorization", bearer));
+        slice.andExpect(status().isOk()).andExpect(jsonPath("$.totalElements").value(2));
+        // ETag (list_version) + trang slice + COUNT(*) của bộ đếm
+        assertEquals(3, statementsFor(slice));
+        assertEquals(1, statistics.getConnectCount());
+        assertEquals(0, statistics.getFlushCount());
+
+        ResultActions stats = perform(get("/api/admin/tasks/user/" + owner.getId() + "/stats")
+                .header("Authorization", adminBearer()));
+        stats.andExpect(status().isOk());
+        assertEquals(1, statistics.getConnectCount());
+        assertEquals(0, statistics.getFlushCount());
+
+        Timer hold = meterRegistry.find("datasource.connection.hold")
+                .tag("method", "TaskService.getTaskSliceForCurrentUser")
+                .timer();
+        assertNotNull(hold);
+        assertEquals(1, hold.count());
+    }
+
+    @Test
+    void userSecondLevelCache_ServesRepeatedLoadsAndForgetsDeletedUser() throws Exception {
+        userService.getUserById(owner.getId());
+
+        // Transaction mới, persistence context trống: user và roles đều lấy từ cache cấp 2
+        statistics.clear();
+        User loaded = userService.getUserById(owner.getId()).orElseThrow();
+        assertEquals(Set.of(Role.USER), loaded.getRoles());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 2);
+        Gauge hitRatio = meterRegistry.find("cache.hit.ratio").tag("cache", "hibernate." + User.CACHE_REGION).gauge();
+        assertNotNull(hitRatio);
+        assertTrue(hitRatio.value() > 0);
+
+        mockMvc.perform(delete("/api/admin/users/" + owner.getId()).header("Authorization", adminBearer()))
+                .andExpect(status().isNoContent());
+
+        org.hibernate.Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        assertFalse(secondLevelCache.containsEntity(User.class, owner.getId()));
+        assertFalse(secondLevelCache.containsCollection(User.ROLES_COLLECTION, owner.getId()));
+        assertTrue(userService.getUserById(owner.getId()).isEmpty());
+    }
+
+    @Test
+    void taskCountQueries_AreServedFromQueryCacheUntilTaskTableChanges() {
+        seedTask();
+        assertEquals(1, taskRepository.countByAssignedToId(owner.getId()));
+
+        statistics.clear();
+        assertEquals(1, taskRepository.countByAssignedToId(owner.getId()));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        // Ghi vào bảng task làm mọi kết quả đã cache của bảng đó mất hiệu lực
+        seedTask();
+        statistics.clear();
+        assertEquals(2, taskRepository.countByAssignedToId(owner.getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
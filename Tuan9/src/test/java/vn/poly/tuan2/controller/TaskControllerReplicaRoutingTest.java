@@ -0,0 +1,239 @@
+package vn.poly.tuan2.controller;
+
+import jakarta.servlet.http.Cookie;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.request.RequestContextHolder;
+import vn.poly.tuan2.AppConfig.ReplicaRoutingDataSource;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.TaskRepository;
+import vn.poly.tuan2.repository.TaskStatsRepository;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+import vn.poly.tuan2.service.UserDetailsServiceImpl;
+
+import javax.sql.DataSource;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Định tuyến đọc/ghi với hai H2 in-memory đóng vai primary và replica. Replica không được đồng bộ: dòng chỉ có trên
+ * replica cho biết request đã đọc từ đâu.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:primarydb;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+        "application.datasource.replica.urls=" + TaskControllerReplicaRoutingTest.REPLICA_URL,
+        "application.datasource.replica.lag-query=select lag_seconds from replication_lag",
+        "application.datasource.replica.health-check-interval=3600000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class TaskControllerReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replicadb;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+
+    private static JdbcTemplate replica;
+    // Mỗi test một username: cache user-details còn giữ user cùng tên của test trước
+    private static final AtomicInteger users = new AtomicInteger();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private ReplicaRoutingDataSource routing;
+    private User owner;
+    private String bearer;
+
+    // Chạy trước khi context khởi động để lần health check đầu tiên đã thấy schema
+    @BeforeAll
+    static void migrateReplica() {
+        DriverManagerDataSource replicaDataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(replicaDataSource).load().migrate();
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table if not exists replication_lag (lag_seconds double)");
+        replica.update("delete from replication_lag");
+        replica.update("insert into replication_lag values (0)");
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Thread test mang request giả của ServletTestExecutionListener: bỏ đi để lần ghi dưới đây và các lần đọc
+        // gọi thẳng trong test không bị tính là cùng một request
+        RequestContextHolder.resetRequestAttributes();
+        routing = (ReplicaRoutingDataSource) dataSource;
+        String username = "owner-" + users.incrementAndGet();
+        owner = userRepository.save(User.builder()
+                .username(username)
+                .email(username + "@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        copyUserToReplica(owner.getId(), username);
+        UserDetailsImpl principal = UserDetailsImpl.build(owner);
+        bearer = "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAll();
+        taskStatsRepository.deleteAll();
+        jdbcTemplate.update("delete from task_activity");
+        userRepository.deleteAll();
+        replica.update("delete from task");
+        replica.update("delete from user_roles");
+        replica.update("delete from user");
+        replica.update("update replication_lag set lag_seconds = 0");
+        routing.checkReplicas();
+    }
+
+    private void copyUserToReplica(Long id, String username) {
+        replica.update("insert into user (id, email, password, username) values (?, ?, ?, ?)",
+                id, username + "@example.com", "password", username);
+        replica.update("insert into user_roles (user_id, roles) values (?, 'USER')", id);
+    }
+
+    private void insertReplicaOnlyTask(String title) {
+        replica.update("insert into task (id, title, status, created_at, version, assigned_to_user_id) "
+                + "values (?, ?, 'PENDING', current_timestamp, 0, ?)", 900_000L, title, owner.getId());
+    }
+
+    private String adminBearer() {
+        UserDetailsImpl admin = UserDetailsImpl.build(99L, "admin", "admin@example.com", java.util.List.of("ROLE_ADMIN"));
+        return "Bearer " + jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+    }
+
+    @Test
+    void readOnlyPaths_AreServedByReplica() throws Exception {
+        insertReplicaOnlyTask("Replica only");
+        copyUserToReplica(owner.getId() + 1000, "replica-user");
+
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+        mockMvc.perform(get("/api/admin/tasks/all").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+        mockMvc.perform(get("/api/admin/tasks/user/" + owner.getId()).header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+        mockMvc.perform(get("/api/admin/users").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$[*].username").value(hasItem("replica-user")));
+        assertEquals("replica-user", userDetailsService.loadUserByUsername("replica-user").getUsername());
+
+        // Ghi vẫn vào primary
+        mockMvc.perform(post("/api/tasks").header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Mine\",\"status\":\"PENDING\"}"))
+                .andExpect(status().isCreated());
+        // JdbcTemplate ngoài transaction không readOnly nên đọc primary; taskRepository.count() sẽ đọc replica
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from task where title = 'Mine'", Long.class));
+        assertEquals(0, replica.queryForObject("select count(*) from task where title = 'Mine'", Long.class));
+    }
+
+    @Test
+    void ownWrite_IsReadFromPrimaryUntilReplicaCatchesUp() throws Exception {
+        insertReplicaOnlyTask("Replica only");
+
+        Cookie lastWrite = mockMvc.perform(post("/api/tasks").header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Mine\",\"status\":\"PENDING\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().httpOnly(ReplicaRoutingDataSource.LAST_WRITE_COOKIE, true))
+                .andReturn().getResponse().getCookie(ReplicaRoutingDataSource.LAST_WRITE_COOKIE);
+        assertNotNull(lastWrite);
+
+        // Cookie là trạng thái duy nhất: instance nào nhận request cũng đọc primary
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer).cookie(lastWrite))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Mine")))
+                .andExpect(jsonPath("$.content[*].title").value(not(hasItem("Replica only"))));
+        // Không có cookie (client khác, hoặc cùng user trên thiết bị khác): đọc replica
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+        mockMvc.perform(get("/api/admin/tasks/all").header("Authorization", adminBearer()))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")))
+                .andExpect(jsonPath("$.content[*].title").value(not(hasItem("Mine"))));
+
+        // Health check bắt đầu sau lần ghi (đồng hồ theo ms), lag 0: replica đã có lần ghi đó nên lại được dùng dù
+        // request còn cookie
+        Thread.sleep(5);
+        routing.checkReplicas();
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer).cookie(lastWrite))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+    }
+
+    @Test
+    void laggingOrStoppedReplica_FallsBackToPrimary() throws Exception {
+        insertReplicaOnlyTask("Replica only");
+        taskRepository.save(Task.builder().title("Primary").status(TaskStatus.PENDING).assignedTo(owner).build());
+        ReplicaRoutingDataSource.Replica replicaState = routing.getReplicas().get(0);
+
+        replica.update("update replication_lag set lag_seconds = 30");
+        routing.checkReplicas();
+        assertTrue(replicaState.isHealthy());
+        assertEquals(30_000, replicaState.getLagMs());
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Primary")))
+                .andExpect(jsonPath("$.content[*].title").value(not(hasItem("Replica only"))));
+
+        // NULL: replication đang dừng
+        replica.update("update replication_lag set lag_seconds = null");
+        routing.checkReplicas();
+        assertFalse(replicaState.isHealthy());
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Primary")));
+
+        replica.update("update replication_lag set lag_seconds = 0.2");
+        routing.checkReplicas();
+        assertTrue(replicaState.isHealthy());
+        mockMvc.perform(get("/api/tasks").header("Authorization", bearer))
+                .andExpect(jsonPath("$.content[*].title").value(hasItem("Replica only")));
+    }
+}
@@ -0,0 +1,153 @@
+package vn.poly.tuan2.repository;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import vn.poly.tuan2.entity.Task;
+import vn.poly.tuan2.entity.TaskActivity;
+import vn.poly.tuan2.entity.TaskChange;
+import vn.poly.tuan2.entity.TaskDailyStats;
+import vn.poly.tuan2.entity.TaskStats;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.entity.UserChange;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nâng cấp database có từ trước Flyway như lúc chạy thật (baseline-on-migrate, baseline-version=1): V1 bị bỏ qua,
+ * V2 trở đi phải đưa schema về đúng như entity cần, dù Hibernate (ddl-auto=update) đã tạo sẵn một phần hay chưa.
+ */
+class SchemaUpgradeTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    // Schema Hibernate tạo từ các entity ban đầu (Task còn dùng IDENTITY, chưa có version)
+    private static final List<String> ORIGINAL_SCHEMA = List.of(
+            "create table user (id bigint not null auto_increment, email varchar(255) not null, "
+                    + "password varchar(255) not null, username varchar(255) not null, primary key (id)) engine=InnoDB",
+            "create table user_roles (user_id bigint not null, roles enum ('ADMIN','USER')) engine=InnoDB",
+            "create table task (due_date date, assigned_to_user_id bigint, created_at datetime(6) not null, "
+                    + "id bigint not null auto_increment, description varchar(255), title varchar(255), "
+                    + "status enum ('COMPLETED','PENDING'), primary key (id)) engine=InnoDB",
+            "alter table user add constraint UKob8kqyqqgmefl0aco34akdtpe unique (email)",
+            "alter table user add constraint UKsb8bbouer5wak8vyiiy4pf2bx unique (username)",
+            "alter table task add constraint FKcprx52d891r6afk3sr5uaxcxr foreign key (assigned_to_user_id) references user (id)",
+            "alter table user_roles add constraint FK55itppkw3i07do3h7qoclqd4k foreign key (user_id) references user (id)");
+
+    // Những gì ddl-auto=update đã thêm từ @Index, @TableGenerator và @Version trước khi chuyển sang Flyway
+    private static final List<String> HIBERNATE_UPDATES = List.of(
+            "create index idx_task_assignee_created on task (assigned_to_user_id, created_at, id)",
+            "create index idx_task_assignee_status_created on task (assigned_to_user_id, status, created_at, id)",
+            "create index idx_task_status_created on task (status, created_at, id)",
+            "create index idx_task_created on task (created_at, id)",
+            "create table id_generator (next_val bigint, sequence_name varchar(255) not null, "
+                    + "primary key (sequence_name)) engine=InnoDB",
+            "alter table task add column version bigint default 0 not null");
+
+    @Test
+    void migrate_UpgradesOriginalSchema() {
+        JdbcTemplate jdbc = upgrade(ORIGINAL_SCHEMA);
+
+        assertEquals(0L, jdbc.queryForObject("select version from task where title = 'Old'", Long.class));
+    }
+
+    @Test
+    void migrate_UpgradesSchemaAlreadyExtendedByHibernate() {
+        JdbcTemplate jdbc = upgrade(concat(ORIGINAL_SCHEMA, HIBERNATE_UPDATES));
+
+        assertEquals(0L, jdbc.queryForObject("select version from task where title = 'Old'", Long.class));
+    }
+
+    @Test
+    void migrate_CreatesSameSchemaOnEmptyDatabase() {
+        String url = url();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertTaskIndexes(new JdbcTemplate(dataSource));
+        validateEntities(url);
+    }
+
+    private JdbcTemplate upgrade(List<String> existingSchema) {
+        String url = url();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        existingSchema.forEach(jdbc::execute);
+        jdbc.update("insert into user (email, password, username) values ('old@example.com', 'password', 'old')");
+        jdbc.update("insert into task (title, status, created_at, assigned_to_user_id) "
+                + "select 'Old', 'PENDING', current_timestamp, id from user");
+        jdbc.update("insert into task (title, status, created_at, assigned_to_user_id) "
+                + "select 'Done', 'COMPLETED', timestamp '2024-01-01 00:00:00', id from user");
+
+        MigrateResult result = Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+
+        assertTrue(result.success);
+        assertEquals("9", result.targetSchemaVersion);
+        assertTaskIndexes(jdbc);
+        validateEntities(url);
+        // V3 khởi tạo bộ đếm từ các task đã có
+        assertEquals(1L, jdbc.queryForObject("select pending from task_stats", Long.class));
+        // V8: task hoàn thành trước khi có completed_at lấy created_at làm mốc dọn dẹp
+        assertEquals(java.sql.Timestamp.valueOf("2024-01-01 00:00:00"),
+                jdbc.queryForObject("select completed_at from task where title = 'Done'", java.sql.Timestamp.class));
+        return jdbc;
+    }
+
+    private static void assertTaskIndexes(JdbcTemplate jdbc) {
+        List<String> indexes = jdbc.queryForList(
+                "select lower(index_name) from information_schema.indexes where table_name = 'TASK'", String.class);
+        assertTrue(indexes.containsAll(List.of("idx_task_assignee_status_created", "idx_task_assignee_created",
+                "idx_task_status_created", "idx_task_created", "idx_task_assignee_status_due",
+                "idx_task_status_completed", "idx_task_assignee_status_completed")), indexes.toString());
+    }
+
+    // Như ddl-auto=validate lúc khởi động, cùng naming strategy mặc định của Spring Boot
+    private static void validateEntities(String url) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.JAKARTA_JDBC_URL, url)
+                .applySetting(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .applySetting(AvailableSettings.JAKARTA_JDBC_PASSWORD, "")
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY,
+                        CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.IMPLICIT_NAMING_STRATEGY, SpringImplicitNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, false)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "validate")
+                .build();
+        try {
+            SessionFactory sessionFactory = new MetadataSources(registry)
+                    .addAnnotatedClasses(User.class, Task.class, TaskStats.class, TaskActivity.class,
+                            TaskDailyStats.class, UserChange.class, TaskChange.class)
+                    .buildMetadata()
+                    .buildSessionFactory();
+            sessionFactory.close();
+        } finally {
+            StandardServiceRegistryBuilder.destroy(registry);
+        }
+    }
+
+    private static String url() {
+        return "jdbc:h2:mem:upgrade" + databases.incrementAndGet() + ";MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1";
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return java.util.stream.Stream.concat(first.stream(), second.stream()).toList();
+    }
+}
@@ -0,0 +1,303 @@
+package vn.poly.tuan2.repository;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+import vn.poly.tuan2.entity.TaskStatus;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskCursor;
+import vn.poly.tuan2.util.TaskSorts;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Chạy mọi truy vấn của TaskRepository/UserRepository trên schema do Flyway tạo, rồi EXPLAIN từng câu SQL
+ * Hibernate sinh ra. Test fail nếu có bảng bị quét toàn bộ (table scan hoặc quét hết một index không điều kiện).
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "vn.poly.tuan2.repository.TaskRepositoryExplainTest$SqlRecorder",
+        "spring.jpa.database-platform=vn.poly.tuan2.repository.TaskRepositoryExplainTest$NamedOrderByH2Dialect"})
+@ActiveProfiles("test")
+class TaskRepositoryExplainTest {
+
+    // H2 ghi cách truy cập từng bảng thành comment: "/* PUBLIC.IDX_X: COL = ?1 */" là dò index theo điều kiện,
+    // "/* PUBLIC.IDX_X */" (không có điều kiện) hoặc "tableScan" là đọc hết bảng
+    private static final Pattern FULL_SCAN = Pattern.compile("/\\* PUBLIC\\.[\\w.]+ \\*/|tableScan");
+
+    private static final Pattern ORDER_BY = Pattern.compile("\\border by\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern DESC = Pattern.compile(" desc\\b");
+
+    private static final String ASSIGNEE_FK = "FKcprx52d891r6afk3sr5uaxcxr";
+
+    private static final Pattern LIMITED = Pattern.compile("FETCH (FIRST|NEXT) \\?\\d+ ROWS");
+
+    private static final int USERS = 50;
+    private static final int TASKS = 20_000;
+
+    public static class SqlRecorder implements StatementInspector {
+        static final List<String> STATEMENTS = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    /**
+     * Hibernate viết ORDER BY theo vị trí cột trong SELECT ("order by 4,6,1"). MySQL đổi chúng về cột trước khi
+     * tối ưu, còn H2 chỉ so ORDER BY viết bằng tên cột với các index khi tính cost, nên test dùng tên cột.
+     */
+    public static class NamedOrderByH2Dialect extends H2Dialect {
+        @Override
+        public boolean supportsOrdinalSelectItemReference() {
+            return false;
+        }
+    }
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TaskStatsRepository taskStatsRepository;
+
+    @Autowired
+    private TaskActivityRepository taskActivityRepository;
+
+    @Autowired
+    private TaskDailyStatsRepository taskDailyStatsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // MySQL tự bỏ index riêng của khóa ngoại task -> user khi V2 tạo các index bắt đầu bằng assigned_to_user_id,
+        // H2 thì giữ lại index một cột đó và luôn ưu tiên nó. Bỏ khóa ngoại trong lúc test để plan giống MySQL
+        jdbcTemplate.execute("alter table task drop constraint " + ASSIGNEE_FK);
+        // Cần đủ dữ liệu và thống kê để optimizer của H2 chọn plan như trên bảng thật
+        jdbcTemplate.update("insert into user (id, username, email, password) "
+                + "select x, 'user' || x, 'user' || x || '@example.com', 'password' from system_range(1, ?)", USERS);
+        jdbcTemplate.update("insert into task (id, title, status, due_date, created_at, completed_at, version, "
+                + "assigned_to_user_id) "
+                + "select x, 'Task ' || x, casewhen(mod(x, 3) = 0, 'COMPLETED', 'PENDING'), "
+                + "dateadd('DAY', mod(x, 60) - 30, current_date), "
+                + "dateadd('SECOND', x, timestamp '2024-01-01 00:00:00'), "
+                + "casewhen(mod(x, 3) = 0, dateadd('SECOND', x + 3600, timestamp '2024-01-01 00:00:00'), null), 0, "
+                + "mod(x, ?) + 1 "
+                + "from system_range(1, ?)", USERS, TASKS);
+        jdbcTemplate.update("insert into task_stats (user_id, pending, completed, overdue, overdue_as_of) "
+                + "select assigned_to_user_id, sum(casewhen(status = 'PENDING', 1, 0)), "
+                + "sum(casewhen(status = 'COMPLETED', 1, 0)), "
+                + "sum(casewhen(status = 'PENDING' and due_date < current_date, 1, 0)), current_date "
+                + "from task group by assigned_to_user_id");
+        // 200 ngày cho mỗi user
+        jdbcTemplate.update("insert into task_daily_stats (user_id, stat_date, created, completed, open_delta) "
+                + "select mod(x, ?) + 1, dateadd('DAY', -(x / ?), current_date), 3, 2, 1 from system_range(0, ?)",
+                USERS, USERS, USERS * 200 - 1);
+        jdbcTemplate.execute("analyze");
+        SqlRecorder.STATEMENTS.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from task");
+        jdbcTemplate.update("delete from task_stats");
+        jdbcTemplate.update("delete from task_activity");
+        jdbcTemplate.update("delete from task_daily_stats");
+        jdbcTemplate.update("delete from user_roles");
+        jdbcTemplate.update("delete from user");
+        jdbcTemplate.execute("alter table task add constraint " + ASSIGNEE_FK
+                + " foreign key (assigned_to_user_id) references user (id)");
+    }
+
+    @Test
+    void repositoryQueries_UseIndexes() {
+        runRepositoryQueries();
+
+        List<String> failures = new ArrayList<>();
+        Set<String> statements = new LinkedHashSet<>(SqlRecorder.STATEMENTS);
+        for (String sql : statements) {
+            String plan = explain(sql);
+            if (isFullScan(plan)) {
+                failures.add(sql + "\n" + plan);
+            }
+        }
+        assertTrue(statements.size() > 20, "Statement inspector did not see the repository queries");
+        if (!failures.isEmpty()) {
+            fail("Full scan in " + failures.size() + " statement(s):\n\n" + String.join("\n\n", failures));
+        }
+    }
+
+    @Test
+    void fullScanDetection_FlagsUnindexedPredicate() {
+        assertTrue(isFullScan(explain("select id from task where title = ?")));
+        assertFalse(isFullScan(explain("select id from task where status = ? order by created_at desc, id desc")));
+    }
+
+    @Test
+    void pagedQueries_ReadIndexInOrderForEverySortAndFilter() {
+        // Không có ?sort= thì dùng thứ tự mặc định, trùng với createdAt DESC
+        Set<Sort> sorts = new LinkedHashSet<>();
+        sorts.add(TaskSorts.checked(Sort.unsorted()));
+        for (String property : TaskSorts.SORTABLE.keySet()) {
+            for (Sort.Direction direction : Sort.Direction.values()) {
+                sorts.add(TaskSorts.checked(Sort.by(direction, property)));
+            }
+        }
+        for (TaskFilter filter : filterShapes()) {
+            for (Sort sort : sorts) {
+                taskRepository.findDtoPage(filter, PageRequest.of(2, 20, sort));
+                taskRepository.findDtoSlice(filter, PageRequest.of(2, 20, sort));
+            }
+        }
+
+        List<String> failures = new ArrayList<>();
+        int sorted = 0;
+        for (String sql : new LinkedHashSet<>(SqlRecorder.STATEMENTS)) {
+            if (!ORDER_BY.matcher(sql).find()) {
+                continue;
+            }
+            sorted++;
+            String plan = explain(sql);
+            String ascending = explain(ascending(sql));
+            if (isFullScan(plan) || !ascending.contains("/* index sorted */")) {
+                failures.add(sql + "\n" + plan + "\n" + ascending);
+            }
+        }
+        // Nhiều cặp (bộ lọc, sort) ra cùng một câu SQL, vd. lọc một status thì sort theo status trùng với createdAt
+        assertTrue(sorted >= filterShapes().size() * 2, "Statement inspector did not see the page queries");
+        if (!failures.isEmpty()) {
+            fail("Sorted without index in " + failures.size() + " statement(s):\n\n" + String.join("\n\n", failures));
+        }
+    }
+
+    // Không lọc, theo status, theo user, theo user và status, và mọi điều kiện cùng lúc
+    private static List<TaskFilter> filterShapes() {
+        LocalDateTime now = LocalDateTime.now();
+        TaskFilter byStatus = TaskFilter.builder().status(TaskStatus.PENDING).build();
+        TaskFilter byAssignee = TaskFilter.builder().assigneeId(7L).build();
+        TaskFilter byAssigneeStatus = byAssignee.toBuilder().status(TaskStatus.PENDING).build();
+        TaskFilter everything = byAssignee.toBuilder()
+                .statuses(Set.of(TaskStatus.PENDING, TaskStatus.COMPLETED))
+                .dueFrom(LocalDate.now().minusDays(3)).dueTo(LocalDate.now())
+                .createdFrom(now.minusYears(5)).createdTo(now)
+                .overdue(true)
+                .titlePrefix("Task 1")
+                .build();
+        return List.of(TaskFilter.empty(), byStatus, byAssignee, byAssigneeStatus, everything);
+    }
+
+    private void runRepositoryQueries() {
+        LocalDateTime now = LocalDateTime.now();
+        TaskCursor cursor = new TaskCursor(now, (long) TASKS);
+        for (TaskFilter filter : filterShapes()) {
+            taskRepository.findDtos(filter, null, TaskCursor.SORT, 21);
+            taskRepository.findDtos(filter, cursor, TaskCursor.SORT, 21);
+            taskRepository.findDtoPage(filter, PageRequest.of(2, 20, TaskCursor.SORT));
+            taskRepository.findDtoSlice(filter, PageRequest.of(2, 20, TaskCursor.SORT));
+            taskRepository.countMatching(filter);
+        }
+        taskRepository.count();
+        taskRepository.countByStatus(TaskStatus.PENDING);
+        taskRepository.countByAssignedToId(7L);
+        taskRepository.countByAssignedToIdAndStatus(7L, TaskStatus.PENDING);
+        taskRepository.findById(5L);
+        taskRepository.findDtoById(5L);
+        taskRepository.findDtosByIdIn(List.of(5L, 6L, 7L));
+        taskRepository.countByAssigneeStatusDueBetween(7L, TaskStatus.PENDING, LocalDate.now().minusDays(3),
+                LocalDate.now());
+        taskRepository.countByStatusCompletedBeforeGroupByAssignee(TaskStatus.COMPLETED,
+                LocalDateTime.of(2024, 1, 1, 1, 5));
+        taskStatsRepository.findById(7L);
+        // summarize() đọc cả bảng task_stats (một dòng mỗi user) có chủ đích nên không nằm trong danh sách này
+        taskStatsRepository.findUserStatsAfter(10L, PageRequest.of(0, 21));
+        taskStatsRepository.findTopOverdue(PageRequest.of(0, 10));
+        taskDailyStatsRepository.findRange(7L, LocalDate.now().minusDays(89), LocalDate.now());
+
+        userRepository.findById(1L);
+        userRepository.findByUsername("user1");
+        userRepository.findByEmail("user1@example.com");
+        userRepository.existsByUsername("user1");
+        userRepository.existsByEmail("user1@example.com");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            taskRepository.updateOverdueStatus(7L, TaskStatus.PENDING, TaskStatus.COMPLETED, LocalDate.now(),
+                    LocalDateTime.now());
+            taskRepository.deleteByStatusCompletedBefore(TaskStatus.COMPLETED, LocalDateTime.of(2024, 1, 1, 1, 5));
+            taskRepository.deleteByAssigneeStatusCompletedBefore(7L, TaskStatus.COMPLETED,
+                    LocalDateTime.of(2024, 1, 1, 1, 10));
+            taskRepository.reassignAll(8L, userRepository.getReferenceById(9L));
+            taskRepository.changeStatusOwned(5L, 6L, TaskStatus.COMPLETED, LocalDateTime.now());
+            taskRepository.existsOwned(5L, 6L);
+            taskRepository.lockOwned(5L, 6L);
+            taskRepository.updateLocked(5L, "Title", null, null, TaskStatus.PENDING, null);
+            taskRepository.deleteLocked(5L);
+            taskStatsRepository.addDelta(6L, -1, 1, LocalDate.now().minusDays(1), null, -1, LocalDate.now());
+            taskStatsRepository.addStatusChange(6L, 5L, -1);
+            taskStatsRepository.insertStatusChange(6L, 5L, -1, LocalDate.now());
+            taskStatsRepository.addCounts(9L, 3, 1, 0, LocalDate.now());
+            taskStatsRepository.touch(6L, LocalDate.now());
+            taskStatsRepository.findListVersion(6L);
+            taskStatsRepository.lockByUserId(8L);
+            taskStatsRepository.completeOverdue(7L, 2);
+            taskStatsRepository.removeCompleted(7L, 1);
+            taskStatsRepository.clear(8L);
+            taskActivityRepository.append(7L, LocalDate.now(), 1, 0, 1);
+            taskDailyStatsRepository.deleteByUserId(8L);
+        });
+    }
+
+    /**
+     * Cost của H2 chỉ tính việc index khớp ORDER BY khi đọc xuôi, nên với sort DESC nó có thể chọn index khác rồi tự
+     * sắp xếp. Đọc ngược index thì thứ tự cũng như đọc xuôi, nên kiểm tra dạng ASC của cùng câu truy vấn.
+     */
+    private static String ascending(String sql) {
+        int orderBy = sql.toLowerCase().lastIndexOf(" order by ");
+        return sql.substring(0, orderBy) + DESC.matcher(sql.substring(orderBy)).replaceAll("");
+    }
+
+    private String explain(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+    }
+
+    private static boolean isFullScan(String plan) {
+        // COUNT(*) không điều kiện được H2 trả thẳng từ số dòng của bảng
+        if (plan.contains("/* direct lookup */")) {
+            return false;
+        }
+        // Đọc index theo đúng thứ tự ORDER BY rồi dừng sau LIMIT (+ OFFSET): không đọc hết bảng
+        if (plan.contains("/* index sorted */") && LIMITED.matcher(plan).find()) {
+            return false;
+        }
+        return FULL_SCAN.matcher(plan).find();
+    }
+}
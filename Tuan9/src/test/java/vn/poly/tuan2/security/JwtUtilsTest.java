@@ -0,0 +1,95 @@
+package vn.poly.tuan2.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtUtilsTest {
+
+    private static final String SECRET = "dGVzdC1zZWNyZXQta2V5LWZvci1qd3QtdXRpbHMtdW5pdC10ZXN0cy0xMjM0NTY=";
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        ReflectionTestUtils.setField(jwtUtils, "claimsAuthEnabled", true);
+        ReflectionTestUtils.setField(jwtUtils, "claimsMaxStalenessMs", 300000L);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheTtlMs", 600000L);
+        jwtUtils.init();
+    }
+
+    private String tokenFor(Long id, String username, String email, String... authorities) {
+        List<GrantedAuthority> granted = java.util.Arrays.stream(authorities)
+                .map(a -> (GrantedAuthority) new SimpleGrantedAuthority(a))
+                .toList();
+        UserDetailsImpl principal = new UserDetailsImpl(id, username, email, "secret", granted);
+        Authentication authentication = new UsernamePasswordAuthenticationToken(principal, null, granted);
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Test
+    void getUserDetailsFromJwtToken_BuildsPrincipalFromClaims() {
+        String token = tokenFor(7L, "alice", "alice@example.com", "ROLE_USER", "ROLE_ADMIN");
+
+        UserDetailsImpl userDetails = jwtUtils.getUserDetailsFromJwtToken(token);
+
+        assertNotNull(userDetails);
+        assertEquals(7L, userDetails.getId());
+        assertEquals("alice", userDetails.getUsername());
+        assertEquals("alice@example.com", userDetails.getEmail());
+        assertNull(userDetails.getPassword());
+        assertEquals(java.util.Set.of("ROLE_USER", "ROLE_ADMIN"),
+                userDetails.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(java.util.stream.Collectors.toSet()));
+    }
+
+    @Test
+    void getUserDetailsFromJwtToken_ReturnsNullWhenTokenIsStale() {
+        String token = tokenFor(7L, "alice", "alice@example.com", "ROLE_USER");
+        ReflectionTestUtils.setField(jwtUtils, "claimsMaxStalenessMs", -1L);
+
+        assertNull(jwtUtils.getUserDetailsFromJwtToken(token));
+        assertEquals("alice", jwtUtils.getUserNameFromJwtToken(token));
+    }
+
+    @Test
+    void getUserDetailsFromJwtToken_ReturnsNullWhenClaimsModeDisabled() {
+        String token = tokenFor(7L, "alice", "alice@example.com", "ROLE_USER");
+        ReflectionTestUtils.setField(jwtUtils, "claimsAuthEnabled", false);
+
+        assertNull(jwtUtils.getUserDetailsFromJwtToken(token));
+    }
+
+    @Test
+    void verifyAndExtract_ServesRepeatedTokenFromCache() {
+        String token = tokenFor(7L, "alice", "alice@example.com", "ROLE_USER");
+
+        assertNotNull(jwtUtils.verifyAndExtract(token));
+        assertNotNull(jwtUtils.verifyAndExtract(token));
+        assertNotNull(jwtUtils.verifyAndExtract(token));
+
+        assertEquals(1, jwtUtils.getVerifiedCacheMissCount());
+        assertEquals(2, jwtUtils.getVerifiedCacheHitCount());
+    }
+
+    @Test
+    void verifyAndExtract_RejectsTamperedToken() {
+        String token = tokenFor(7L, "alice", "alice@example.com", "ROLE_USER");
+
+        assertNotNull(jwtUtils.verifyAndExtract(token));
+        assertNull(jwtUtils.verifyAndExtract(token.substring(0, token.length() - 2) + "xx"));
+        assertFalse(jwtUtils.validateJwtToken("not-a-jwt"));
+        assertNull(jwtUtils.verifyAndExtract(null));
+    }
+}
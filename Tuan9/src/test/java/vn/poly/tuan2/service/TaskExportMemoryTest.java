@@ -0,0 +1,139 @@
+package vn.poly.tuan2.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.request.TaskFilter;
+import vn.poly.tuan2.util.TaskExportFormat;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Export 1.000.000 task và đo heap còn sống (sau full GC) ở dòng thứ 100.000 và ở dòng cuối, trong cùng một lần
+ * export khi con trỏ vẫn đang mở. Nếu có chỗ nào giữ lại các dòng đã ghi thì 900.000 dòng giữa hai mốc làm heap
+ * tăng hàng trăm MB; test cho phép chênh lệch nhỏ do GC. TaskExportBenchmark đo cùng điều đó ở 5 triệu dòng.
+ * DB là file H2 (hệ file async như TaskExportBenchmark) để dữ liệu và kết quả lớn của H2 không nằm trên heap đang đo.
+ * Seed mất cả phút nên không chạy trong mvn test mặc định: mvn -Pslow-tests test.
+ */
+@Tag("slow")
+class TaskExportMemoryTest {
+
+    private static final int USERS = 100;
+    private static final int TASKS = 1_000_000;
+    private static final int CHUNK = 250_000;
+    private static final long FIRST_CHECKPOINT = 100_000;
+    private static final long MAX_GROWTH = 16L << 20;
+    private static final File DB_DIR = new File("target/export-memory-test");
+
+    private static ConfigurableApplicationContext context;
+
+    /**
+     * Đếm dòng đi qua (mỗi dòng kết thúc bằng '\n', kể cả dòng tiêu đề CSV) và chụp heap còn sống
+     * khi dòng thứ FIRST_CHECKPOINT và dòng cuối được ghi ra.
+     */
+    private static class CheckpointStream extends OutputStream {
+        private final long lastLine;
+        private long lines;
+        private long liveAtFirst = -1;
+        private long liveAtLast = -1;
+
+        CheckpointStream(long lastLine) {
+            this.lastLine = lastLine;
+        }
+
+        @Override
+        public void write(int b) {
+            if (b != '\n') {
+                return;
+            }
+            lines++;
+            if (lines == FIRST_CHECKPOINT) {
+                liveAtFirst = liveHeap();
+            } else if (lines == lastLine) {
+                liveAtLast = liveHeap();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+
+    @BeforeAll
+    static void seed() {
+        FileSystemUtils.deleteRecursively(DB_DIR);
+        context = new SpringApplicationBuilder(Tuan2Application.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                // Tham số dòng lệnh đè được application-test.properties, còn properties() của builder thì không
+                .run("--spring.datasource.url=jdbc:h2:async:" + DB_DIR.getAbsolutePath() + "/db;MODE=MySQL;NON_KEYWORDS=USER",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        // Export chỉ đi theo idx_task_created; bỏ các index còn lại cho seed nhanh
+        for (String index : new String[]{"idx_task_assignee_status_created", "idx_task_assignee_created",
+                "idx_task_status_created", "idx_task_assignee_status_due", "idx_task_status_completed",
+                "idx_task_assignee_status_completed"}) {
+            jdbcTemplate.execute("DROP INDEX " + index);
+        }
+        jdbcTemplate.update("INSERT INTO user (id, username, email, password) "
+                + "SELECT X, 'user' || X, 'user' || X || '@example.com', 'password' FROM SYSTEM_RANGE(1, ?)", USERS);
+        for (int from = 1; from <= TASKS; from += CHUNK) {
+            jdbcTemplate.update("INSERT INTO task (id, title, description, status, due_date, created_at, version, "
+                            + "assigned_to_user_id) "
+                            + "SELECT X, 'Task ' || X, 'Description, with a comma, for task ' || X, "
+                            + "CASEWHEN(MOD(X, 3) = 0, 'COMPLETED', 'PENDING'), "
+                            + "DATEADD('DAY', MOD(X, 60) - 30, CURRENT_DATE), "
+                            + "DATEADD('SECOND', X, TIMESTAMP '2024-01-01 00:00:00'), 0, MOD(X, ?) + 1 "
+                            + "FROM SYSTEM_RANGE(?, ?)",
+                    USERS, from, Math.min(TASKS, from + CHUNK - 1));
+        }
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    static void dropDatabase() {
+        if (context != null) {
+            context.close();
+        }
+        FileSystemUtils.deleteRecursively(DB_DIR);
+    }
+
+    @ParameterizedTest
+    @EnumSource(TaskExportFormat.class)
+    void exportAll_KeepsLiveHeapFlatAsRowsAreWritten(TaskExportFormat format) throws Exception {
+        long lastLine = format == TaskExportFormat.CSV ? TASKS + 1 : TASKS;
+        CheckpointStream out = new CheckpointStream(lastLine);
+
+        long rows = context.getBean(TaskExporter.class).export(new TaskFilter(), format, out);
+
+        assertEquals(TASKS, rows);
+        assertTrue(out.liveAtFirst > 0 && out.liveAtLast > 0, "Checkpoints were not reached");
+        long growth = out.liveAtLast - out.liveAtFirst;
+        assertTrue(growth < MAX_GROWTH, "Live heap grew by " + (growth >> 20) + " MB between row "
+                + FIRST_CHECKPOINT + " and row " + TASKS + " (" + (out.liveAtFirst >> 20) + " MB -> "
+                + (out.liveAtLast >> 20) + " MB)");
+    }
+
+    // System.gc() là full GC với G1/Serial mặc định, nên phần heap còn dùng sau đó là dữ liệu còn sống
+    private static long liveHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,124 @@
+package vn.poly.tuan2.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Hai instance của ứng dụng dùng chung một database, mỗi instance một chỉ mục tìm kiếm: task được tạo/sửa/xóa trên
+ * instance này hiện ra (hoặc biến mất) trong chỉ mục của instance kia sau lần đọc task_change kế tiếp.
+ */
+class TaskSearchIndexMultiInstanceTest {
+
+    // Tham số dòng lệnh đè được application-test.properties, còn properties() của builder thì không
+    private static final String[] ARGS = {
+            "--spring.datasource.url=jdbc:h2:mem:searchmultiinstance;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+            "--server.port=0",
+            // Test tự gọi pollTaskChanges thay cho lịch chạy
+            "--application.tasks.search.changes.poll-interval=3600000"
+    };
+
+    private static ConfigurableApplicationContext writer;
+    private static ConfigurableApplicationContext reader;
+
+    @BeforeAll
+    static void startInstances() {
+        writer = start();
+        reader = start();
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(Tuan2Application.class)
+                .profiles("test")
+                .run(ARGS);
+    }
+
+    @Test
+    void taskWrittenOnOneInstance_IsSearchableOnTheOther() throws Exception {
+        User user = writer.getBean(UserRepository.class).save(User.builder()
+                .username("indexer")
+                .email("indexer@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        String bearer = bearer(UserDetailsImpl.build(user));
+        MockMvc writerMvc = mockMvc(writer);
+        TaskSearchIndex readerIndex = reader.getBean(TaskSearchIndex.class);
+
+        String created = writerMvc.perform(post("/api/tasks")
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Kiểm kê kho\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long taskId = new ObjectMapper().readTree(created).path("data").path("id").asLong();
+        assertEquals(0, search(readerIndex, "kiem ke"));
+
+        readerIndex.pollTaskChanges();
+        assertEquals(1, search(readerIndex, "kiem ke"));
+
+        writerMvc.perform(put("/api/tasks/" + taskId)
+                        .header("Authorization", bearer)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Đối soát công nợ\",\"status\":\"PENDING\"}"))
+                .andExpect(status().isOk());
+        readerIndex.pollTaskChanges();
+        assertEquals(0, search(readerIndex, "kiem ke"));
+        assertEquals(1, search(readerIndex, "doi soat"));
+
+        writerMvc.perform(delete("/api/tasks/" + taskId).header("Authorization", bearer))
+                .andExpect(status().isOk());
+        readerIndex.pollTaskChanges();
+        assertEquals(0, search(readerIndex, "doi soat"));
+    }
+
+    private static long search(TaskSearchIndex index, String text) {
+        index.refresh();
+        return index.search(text, null, 0, 10).getTotal();
+    }
+
+    private static MockMvc mockMvc(ConfigurableApplicationContext context) {
+        return MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    private static String bearer(UserDetailsImpl principal) {
+        return "Bearer " + writer.getBean(JwtUtils.class).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
@@ -0,0 +1,104 @@
+package vn.poly.tuan2.service;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.event.UserChangedEvent;
+import vn.poly.tuan2.repository.UserRepository;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDetailsServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private SessionFactory entityManagerFactory;
+
+    @Mock
+    private Cache secondLevelCache;
+
+    @InjectMocks
+    private UserDetailsServiceImpl userDetailsService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(userDetailsService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userDetailsService, "cacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(userDetailsService, "replicaUrls", "");
+        userDetailsService.init();
+        testUser = User.builder()
+                .id(1L)
+                .username("testuser")
+                .email("test@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build();
+    }
+
+    @Test
+    void loadUserByUsername_CachesResult() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+        UserDetails second = userDetailsService.loadUserByUsername("testuser");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByUsername("testuser");
+    }
+
+    @Test
+    void loadUserByUsername_SharesAuthorityListsBetweenUsers() {
+        User otherUser = User.builder().id(2L).username("other").email("o@example.com")
+                .password("password").roles(Set.of(Role.USER)).build();
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(userRepository.findByUsername("other")).thenReturn(Optional.of(otherUser));
+
+        assertSame(userDetailsService.loadUserByUsername("testuser").getAuthorities(),
+                userDetailsService.loadUserByUsername("other").getAuthorities());
+    }
+
+    @Test
+    void onUserChanged_EvictsCachedEntryById() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(entityManagerFactory);
+        when(entityManagerFactory.getCache()).thenReturn(secondLevelCache);
+        userDetailsService.loadUserByUsername("testuser");
+
+        userDetailsService.onUserChanged(new UserChangedEvent(1L, null));
+        userDetailsService.loadUserByUsername("testuser");
+
+        verify(userRepository, times(2)).findByUsername("testuser");
+        verify(secondLevelCache).evictEntityData(User.class, 1L);
+        verify(secondLevelCache).evictCollectionData(User.ROLES_COLLECTION, 1L);
+    }
+
+    @Test
+    void loadUserByUsername_ThrowsWhenUserMissing() {
+        when(userRepository.findByUsername("ghost")).thenReturn(Optional.empty());
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("ghost"));
+    }
+}
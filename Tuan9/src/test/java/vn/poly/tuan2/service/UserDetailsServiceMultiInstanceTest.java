@@ -0,0 +1,104 @@
+package vn.poly.tuan2.service;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import vn.poly.tuan2.Tuan2Application;
+import vn.poly.tuan2.entity.Role;
+import vn.poly.tuan2.entity.User;
+import vn.poly.tuan2.repository.UserRepository;
+import vn.poly.tuan2.security.JwtUtils;
+import vn.poly.tuan2.security.UserDetailsImpl;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Hai instance của ứng dụng dùng chung một database: user bị xóa trên instance này không còn được xác thực trên
+ * instance kia sau lần đọc user_change kế tiếp, dù instance kia đã cache user đó hoặc token còn dựng được từ claims.
+ */
+class UserDetailsServiceMultiInstanceTest {
+
+    // Tham số dòng lệnh đè được application-test.properties, còn properties() của builder thì không
+    private static final String[] ARGS = {
+            "--spring.datasource.url=jdbc:h2:mem:multiinstance;MODE=MySQL;NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1",
+            "--server.port=0",
+            // Test tự gọi pollUserChanges thay cho lịch chạy
+            "--application.security.user-changes.poll-interval=3600000"
+    };
+
+    private static ConfigurableApplicationContext writer;
+    private static ConfigurableApplicationContext reader;
+
+    @BeforeAll
+    static void startInstances() {
+        writer = start();
+        reader = start();
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(Tuan2Application.class)
+                .profiles("test")
+                .run(ARGS);
+    }
+
+    @Test
+    void deletedUser_StopsAuthenticatingOnOtherInstance() throws Exception {
+        User user = writer.getBean(UserRepository.class).save(User.builder()
+                .username("leaving")
+                .email("leaving@example.com")
+                .password("password")
+                .roles(Set.of(Role.USER))
+                .build());
+        String bearer = bearer(UserDetailsImpl.build(user));
+        MockMvc readerMvc = mockMvc(reader);
+        UserDetailsServiceImpl readerUsers = reader.getBean(UserDetailsServiceImpl.class);
+
+        // Instance đọc đã có user trong cache user-details và cache cấp 2, token được xác thực từ claims
+        readerUsers.loadUserByUsername("leaving");
+        readerMvc.perform(get("/api/tasks").header("Authorization", bearer)).andExpect(status().isOk());
+
+        UserDetailsImpl admin = UserDetailsImpl.build(99L, "admin", "admin@example.com", List.of("ROLE_ADMIN"));
+        mockMvc(writer).perform(delete("/api/admin/users/" + user.getId()).header("Authorization", bearer(admin)))
+                .andExpect(status().isNoContent());
+
+        readerUsers.pollUserChanges();
+
+        readerMvc.perform(get("/api/tasks").header("Authorization", bearer)).andExpect(status().isUnauthorized());
+        assertThrows(UsernameNotFoundException.class, () -> readerUsers.loadUserByUsername("leaving"));
+    }
+
+    private static MockMvc mockMvc(ConfigurableApplicationContext context) {
+        return MockMvcBuilders.webAppContextSetup((WebApplicationContext) context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    private static String bearer(UserDetailsImpl principal) {
+        return "Bearer " + writer.getBean(JwtUtils.class).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
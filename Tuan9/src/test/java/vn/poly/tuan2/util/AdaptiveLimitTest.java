@@ -0,0 +1,93 @@
+package vn.poly.tuan2.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void tryAcquire_RejectsAboveLimitWithoutWaiting() {
+        AdaptiveLimit limit = AdaptiveLimit.fixed(2);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(FAST, 0);
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void release_GrowsLimitWhileLatencyIsStable() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 100, 50);
+
+        runSaturated(limit, FAST, 0, 50);
+
+        assertTrue(limit.getLimit() > 10, "limit = " + limit.getLimit());
+        assertTrue(limit.getLimit() <= 100);
+    }
+
+    @Test
+    void release_ShrinksLimitWhenLatencyRises() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 2, 100, 50);
+        runSaturated(limit, FAST, 0, 20);
+        int before = limit.getLimit();
+
+        runSaturated(limit, SLOW, 0, 20);
+
+        assertTrue(limit.getLimit() < before, before + " -> " + limit.getLimit());
+        assertTrue(limit.getLimit() >= 2);
+    }
+
+    @Test
+    void release_BacksOffWhenPoolWaitExceedsThreshold() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 5, 100, 50);
+
+        runSaturated(limit, FAST, TimeUnit.MILLISECONDS.toNanos(100), 100);
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void release_KeepsLimitWhenMostlyIdle() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 2, 100, 50);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(i % 2 == 0 ? FAST : SLOW, 0);
+        }
+
+        assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    void getRetryAfterSeconds_IsAtLeastOneSecond() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 2, 100, 50);
+        assertEquals(1, limit.getRetryAfterSeconds());
+
+        limit.tryAcquire();
+        limit.release(TimeUnit.MILLISECONDS.toNanos(2500), 0);
+        assertEquals(3, limit.getRetryAfterSeconds());
+    }
+
+    // Mỗi vòng lấp đầy limit rồi trả hết với cùng một RTT
+    private static void runSaturated(AdaptiveLimit limit, long rttNanos, long poolWaitNanos, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            int acquired = 0;
+            while (limit.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limit.release(rttNanos, poolWaitNanos);
+            }
+        }
+    }
+}